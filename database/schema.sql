@@ -161,3 +161,23 @@ ADD COLUMN `vertical` VARCHAR(32) NULL AFTER `owner_email`;
 
 ALTER TABLE `communication_engine`.`templates`
 ADD COLUMN `meta_data` json DEFAULT NULL AFTER `owner_email`;
+
+CREATE TABLE IF NOT EXISTS `message_acknowledgement_outbox` (
+  `id` bigint(20) NOT NULL AUTO_INCREMENT,
+  `reference_id` varchar(36) DEFAULT NULL,
+  `topic` varchar(128) NOT NULL,
+  `payload` mediumblob NOT NULL,
+  `published_at` timestamp NULL DEFAULT NULL,
+  `created_at` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+  PRIMARY KEY (`id`),
+  KEY `message_acknowledgement_outbox_published_index` (`published_at`,`id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE IF NOT EXISTS `outbox_relay_leases` (
+  `name` varchar(64) NOT NULL,
+  `owner` varchar(128) DEFAULT NULL,
+  `lease_until` timestamp NULL DEFAULT NULL,
+  PRIMARY KEY (`name`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT IGNORE INTO `outbox_relay_leases`(`name`) VALUES ('message_acknowledgement_outbox');
@@ -28,19 +28,31 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.cache.MobileAppDetailsCache;
+import farm.nurture.communication.engine.cache.ReferenceDataSnapshot;
 import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.event.ActorAppTokenEventHandler;
 import farm.nurture.communication.engine.event.ActorCommunicationDetailsEventHandler;
 import farm.nurture.communication.engine.event.CommunicationEventHandler;
+import farm.nurture.communication.engine.event.TemplateChangeEventHandler;
 import farm.nurture.communication.engine.grpc.CommunicationEngine;
+import farm.nurture.communication.engine.grpc.GrpcHandlerExecutor;
 import farm.nurture.communication.engine.grpc.GrpcService;
+import farm.nurture.communication.engine.kafka.AcknowledgementEventPublisher;
+import farm.nurture.communication.engine.kafka.MessageAcknowledgementOutboxRelay;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.metric.ExecutorMetrics;
+import farm.nurture.communication.engine.metric.HttpPoolMetrics;
 import farm.nurture.communication.engine.resource.CommunicationServiceCallbackResource;
 import farm.nurture.communication.engine.resource.MissCallResource;
 import farm.nurture.communication.engine.resource.WhatsAppResource;
+import farm.nurture.communication.engine.service.KarixSmsBatcher;
 import farm.nurture.communication.engine.utils.ExecutorServiceImpl;
 import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.FcmAccessTokenProvider;
 import farm.nurture.communication.engine.vendor.GupShupVendor;
 import farm.nurture.communication.engine.vendor.KarixVendor;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
 import farm.nurture.infra.metrics.HealthInfoServerFactory;
 import farm.nurture.infra.metrics.prometheus.ServerStatus;
 import farm.nurture.infra.util.ApplicationConfiguration;
@@ -63,6 +75,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.glassfish.jersey.netty.httpserver.NettyHttpContainerProvider;
 import org.glassfish.jersey.server.ResourceConfig;
 
+import java.net.InetAddress;
 import java.net.URI;
 import java.time.Duration;
 import java.util.Arrays;
@@ -82,12 +95,19 @@ public class Application {
         initializeLoadBalancer(injector);
         initializeInMemoryCache(injector);
         startPrometheusServer();
+        startAcknowledgementEventPublisher(injector);
         startKafkaConsumers(injector);
         startTemporalWorker(injector);
         startExecutorService(injector);
         startGrpcServer(injector);
     }
 
+    private static void startAcknowledgementEventPublisher(Injector injector) {
+        log.info("Starting acknowledgement event publisher");
+        injector.getInstance(AcknowledgementEventPublisher.class).init();
+        injector.getInstance(MessageAcknowledgementOutboxRelay.class).init();
+    }
+
     private static void startExecutorService(Injector injector) {
         injector.getInstance(ExecutorServiceImpl.class).init();
     }
@@ -156,6 +176,44 @@ public class Application {
         startActorCommDetailsEventConsumer(injector, groupId);
         startActorAppTokenEventConsumer(injector, groupId);
         startSendCommunicationEventConsumer(injector, groupId);
+        startTemplateChangeEventConsumer(injector, groupId);
+    }
+
+    /**
+     * Every replica has to see every template change, so this consumer uses a group of its own per instance
+     * and starts from the latest offset; the template cache snapshot covers earlier changes. The group is named
+     * after the instance (kafka.template.change.instance.id, else the host name, i.e. the pod name), so restarts
+     * reuse it instead of leaving a new group behind each time.
+     */
+    private static void startTemplateChangeEventConsumer(Injector injector, String groupId) {
+        ApplicationConfiguration appConfig = ApplicationConfiguration.getInstance();
+        if (!appConfig.getBoolean("kafka.template.change.enabled", false)) return;
+
+        Properties props = new Properties();
+        props.put("bootstrap.servers", appConfig.get("kafka.bootstrap.servers", "localhost:9092"));
+        props.put("group.id", groupId + "_template_changes_" + instanceId(appConfig));
+        props.put("enable.auto.commit", false);
+        props.put("auto.offset.reset", "latest");
+        props.put("max.poll.records", appConfig.getInt("kafka.max.poll.records", 5));
+        props.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        props.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+
+        TemplateChangeEventHandler handler = injector.getInstance(TemplateChangeEventHandler.class);
+        KafkaConsumerConfig config = new KafkaConsumerConfig(Arrays.asList(appConfig.get("kafka.template.change.topic", "communication_template_changes")),
+                true, Duration.ofMillis(Long.MAX_VALUE), props);
+        Consumer<String, String> consumer = new KafkaConsumer<>(config, handler);
+        consumer.start();
+    }
+
+    private static String instanceId(ApplicationConfiguration appConfig) {
+        String instanceId = appConfig.get("kafka.template.change.instance.id", null);
+        if (!StringUtils.isEmpty(instanceId)) return instanceId;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            log.error("Unable to resolve host name for template change consumer group", e);
+            throw new NFException(e);
+        }
     }
 
     private static void startSendCommunicationEventConsumer(Injector injector, String groupId) {
@@ -166,6 +224,7 @@ public class Application {
         props.put("enable.auto.commit", appConfig.getBoolean("kafka.enable.auto.commit", false));
         props.put("auto.offset.reset", appConfig.get("kafka.auto.offset.reset", "latest"));
         props.put("max.poll.records", appConfig.getInt("kafka.max.poll.records", 5));
+        props.put("max.poll.interval.ms", appConfig.getInt("kafka.max.poll.interval.ms", 300000));
         props.put("key.deserializer", appConfig.get("kafka.communication.event.key.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer"));
         props.put("value.deserializer", appConfig.get("kafka.communication.event.value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer"));
 
@@ -238,6 +297,25 @@ public class Application {
     }
 
     private static void initializeInMemoryCache(Injector injector) {
+        ReferenceDataSnapshot referenceDataSnapshot = injector.getInstance(ReferenceDataSnapshot.class);
+        if (referenceDataSnapshot.restore()) {
+            log.info("Serving reference data from snapshot, reconciling with database in background");
+            Thread reconciler = new Thread(() -> {
+                initializeReferenceDataCache(injector);
+                referenceDataSnapshot.save();
+            }, "reference-data-reconcile");
+            reconciler.setDaemon(true);
+            reconciler.start();
+        } else {
+            initializeReferenceDataCache(injector);
+            referenceDataSnapshot.save();
+        }
+
+        log.info("Initializing In-Memory WhatsappUsersStatusIndex");
+        injector.getInstance(WhatsappUsersStatusIndex.class).init();
+    }
+
+    private static void initializeReferenceDataCache(Injector injector) {
         log.info("Initializing In-Memory LanguageCache");
         injector.getInstance(LanguageCache.class).init();
 
@@ -255,6 +333,9 @@ public class Application {
         try {
             int port = config.getInt("server.prometheus.port", 8000);
             HealthInfoServerFactory.start(port, 1, false, TimeUnit.MILLISECONDS, 300, 5);
+            CacheMetrics.getInstance().start();
+            HttpPoolMetrics.getInstance().start();
+            ExecutorMetrics.getInstance().start();
             log.info("Communication engine prometheus server started");
 
         } catch (Exception e) {
@@ -267,8 +348,10 @@ public class Application {
 
         ApplicationConfiguration config = ApplicationConfiguration.getInstance();
         GrpcService grpcService = injector.getInstance(GrpcService.class);
+        GrpcHandlerExecutor grpcHandlerExecutor = injector.getInstance(GrpcHandlerExecutor.class);
         int port = config.getInt("grpcServer.port", 8010);
-        io.grpc.Server server = ServerBuilder.forPort(port).addService(grpcService).build().start();
+        io.grpc.Server server = ServerBuilder.forPort(port).executor(grpcHandlerExecutor.getServerExecutor())
+                .addService(grpcService).build().start();
         log.info("Communication Engine grpc server started, listening on " + port);
         server.awaitTermination();
     }
@@ -301,6 +384,9 @@ public class Application {
     public static void initializeLoadBalancer(Injector injector){
         injector.getInstance(KarixVendor.class).init();
         injector.getInstance(GupShupVendor.class).init();
+        injector.getInstance(VendorRateLimiter.class).init();
+        injector.getInstance(KarixSmsBatcher.class).init();
+        injector.getInstance(FcmAccessTokenProvider.class).init();
         VendorLoadBalancer loadBalancer = injector.getInstance(VendorLoadBalancer.class);
         ObjectMapper mapper = injector.getInstance(ObjectMapper.class);
         String whatsappVendorConfig = System.getenv("whatsapp_vendor_config");
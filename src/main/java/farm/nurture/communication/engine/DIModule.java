@@ -20,42 +20,56 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategy;
 import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.cache.ActorAppTokenCache;
+import farm.nurture.communication.engine.cache.ActorCommunicationDetailsCache;
+import farm.nurture.communication.engine.cache.AttachmentCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
+import farm.nurture.communication.engine.cache.MediaHandleCache;
 import farm.nurture.communication.engine.cache.MobileAppDetailsCache;
+import farm.nurture.communication.engine.cache.ReferenceDataSnapshot;
 import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.event.ActorAppTokenEventHandler;
 import farm.nurture.communication.engine.event.ActorCommunicationDetailsEventHandler;
 import farm.nurture.communication.engine.event.CommunicationEventHandler;
+import farm.nurture.communication.engine.event.TemplateChangeEventHandler;
 import farm.nurture.communication.engine.grpc.CommunicationEngine;
 import farm.nurture.communication.engine.grpc.CommunicationEngineImpl;
+import farm.nurture.communication.engine.grpc.GrpcHandlerExecutor;
 import farm.nurture.communication.engine.grpc.GrpcService;
 import farm.nurture.communication.engine.helper.RequestMapper;
 import farm.nurture.communication.engine.helper.RequestValidator;
 import farm.nurture.communication.engine.helper.ResponseMapper;
 import farm.nurture.communication.engine.helper.TemplateHelper;
+import farm.nurture.communication.engine.kafka.AcknowledgementEventPublisher;
 import farm.nurture.communication.engine.kafka.KafkaProducerWrapperService;
 import farm.nurture.communication.engine.kafka.KafkaProducerWrapperServiceImpl;
+import farm.nurture.communication.engine.kafka.MessageAcknowledgementOutboxRelay;
+import farm.nurture.communication.engine.kafka.TemplateChangePublisher;
 import farm.nurture.communication.engine.repository.*;
 import farm.nurture.communication.engine.resource.MissCallResource;
 import farm.nurture.communication.engine.service.*;
 import farm.nurture.communication.engine.utils.ExecutorServiceImpl;
 import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.FcmAccessTokenProvider;
 import farm.nurture.communication.engine.vendor.GupShupVendor;
 import farm.nurture.communication.engine.vendor.KarixVendor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
 import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.kafka.config.KafkaProducerConfig;
 import farm.nurture.kafka.impl.KafkaProducer;
-import farm.nurture.util.http.AsyncHttpClientFactory;
 import farm.nurture.util.http.HttpClientConfig;
 import farm.nurture.util.http.HttpClientFactory;
 import farm.nurture.util.http.TimeOutConfig;
-import farm.nurture.util.http.client.NFAsyncHttpClient;
 import farm.nurture.util.http.client.NFHttpClient;
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 
 import java.util.Properties;
 
@@ -65,7 +79,9 @@ public class DIModule extends AbstractModule {
     protected void configure() {
 
         bind(GrpcService.class).in(Singleton.class);
-        bind(CommunicationEngine.class).toInstance(new CommunicationEngineImpl());
+        bind(GrpcHandlerExecutor.class).in(Singleton.class);
+        bind(CommunicationEngineImpl.class).in(Singleton.class);
+        bind(CommunicationEngine.class).to(CommunicationEngineImpl.class);
 
 //      Initialize repositories
         bind(LanguageRepository.class).in(Singleton.class);
@@ -74,11 +90,18 @@ public class DIModule extends AbstractModule {
         bind(ActorCommunicationDetailsRepository.class).in(Singleton.class);
         bind(ActorAppTokenRepository.class).in(Singleton.class);
         bind(MessageAcknowledgementRepository.class).in(Singleton.class);
+        bind(MessageAcknowledgementOutboxRepository.class).in(Singleton.class);
 
 //      Initialize caches
         bind(LanguageCache.class).in(Singleton.class);
         bind(MobileAppDetailsCache.class).in(Singleton.class);
+        bind(ReferenceDataSnapshot.class).in(Singleton.class);
         bind(TemplateCache.class).in(Singleton.class);
+        bind(WhatsappUsersStatusIndex.class).in(Singleton.class);
+        bind(ActorCommunicationDetailsCache.class).in(Singleton.class);
+        bind(ActorAppTokenCache.class).in(Singleton.class);
+        bind(AttachmentCache.class).in(Singleton.class);
+        bind(MediaHandleCache.class).in(Singleton.class);
 
 //      Initialize Load balancer
         bind(VendorLoadBalancer.class).in(Singleton.class);
@@ -91,6 +114,8 @@ public class DIModule extends AbstractModule {
         bind(CommunicationEventHandler.class).in(Singleton.class);
         bind(ActorCommunicationDetailsEventHandler.class).in(Singleton.class);
         bind(ActorAppTokenEventHandler.class).in(Singleton.class);
+        bind(TemplateChangeEventHandler.class).in(Singleton.class);
+        bind(TemplateChangePublisher.class).in(Singleton.class);
 
 //      Initialize resources
         bind(MissCallResource.class).in(Singleton.class);
@@ -110,12 +135,21 @@ public class DIModule extends AbstractModule {
         bind(TemplateManagementService.class).in(Singleton.class);
 //      Initialize external libraries
         bind(ObjectMapper.class).toInstance(buildObjectMapper());
-        bind(NFAsyncHttpClient.class).toInstance(buildAsyncHttpClient());
+        bind(VendorHttpClients.class).in(Singleton.class);
+        bind(CallbackExecutor.class).in(Singleton.class);
+        bind(VendorRateLimiter.class).in(Singleton.class);
+        bind(KarixSmsBatcher.class).in(Singleton.class);
+        bind(SmsHedger.class).in(Singleton.class);
+        bind(AcknowledgementCompletions.class).in(Singleton.class);
+        bind(FcmAccessTokenProvider.class).in(Singleton.class);
+        bind(RetryScheduler.class).in(Singleton.class);
         bind(NFHttpClient.class).toInstance(buildHttpClient());
         bind(CloseableHttpClient.class).toInstance(buildCloseableHttpClient());
         bind(Producer.class).toInstance(buildKafkaProducer());
         bind(TimeOutConfig.class).toInstance(new TimeOutConfig());
         bind(KafkaProducerWrapperService.class).toInstance(new KafkaProducerWrapperServiceImpl());
+        bind(AcknowledgementEventPublisher.class).in(Singleton.class);
+        bind(MessageAcknowledgementOutboxRelay.class).in(Singleton.class);
 
 //     Initialize Executor Service
         bind(ExecutorServiceImpl.class).in(Singleton.class);
@@ -139,6 +173,25 @@ public class DIModule extends AbstractModule {
         return producer;
     }
 
+    @Provides
+    @Singleton
+    org.apache.kafka.clients.producer.Producer<byte[], byte[]> buildAcknowledgementKafkaProducer() {
+
+        ApplicationConfiguration configuration = ApplicationConfiguration.getInstance();
+        Properties props = new Properties();
+        props.put("bootstrap.servers", configuration.get("kafka.bootstrap.servers", "localhost:9092"));
+        props.put("acks", "all");
+        props.put("enable.idempotence", configuration.getBoolean("kafka.ack.producer.enable.idempotence", true));
+        props.put("compression.type", configuration.get("kafka.ack.producer.compression.type", "lz4"));
+        props.put("max.in.flight.requests.per.connection", configuration.getInt("kafka.ack.producer.max.in.flight.requests.per.connection", 5));
+        props.put("batch.size", configuration.getInt("kafka.ack.producer.batch.size", 65536));
+        props.put("linger.ms", configuration.getInt("kafka.ack.producer.linger.ms", 20));
+        props.put("delivery.timeout.ms", configuration.getInt("kafka.ack.producer.delivery.timeout.ms", 120000));
+        props.put("max.block.ms", configuration.getInt("kafka.ack.producer.max.block.ms", 5000));
+
+        return new org.apache.kafka.clients.producer.KafkaProducer<>(props, new ByteArraySerializer(), new ByteArraySerializer());
+    }
+
     private ObjectMapper buildObjectMapper() {
         ObjectMapper mapper = new ObjectMapper();
         mapper.setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE);
@@ -146,12 +199,6 @@ public class DIModule extends AbstractModule {
         return mapper;
     }
 
-    private NFAsyncHttpClient buildAsyncHttpClient() {
-        HttpClientConfig config = createAsyncHttpClientConfig();
-        CloseableHttpAsyncClient httpClient = new AsyncHttpClientFactory(config).createClient();
-        return new NFAsyncHttpClient(httpClient);
-    }
-
     private NFHttpClient buildHttpClient() {
         HttpClientConfig config = createHttpClientConfig();
         HttpClient httpClient = new HttpClientFactory(config).createClient();
@@ -163,21 +210,6 @@ public class DIModule extends AbstractModule {
         return new HttpClientFactory(config).createClient();
     }
 
-    private HttpClientConfig createAsyncHttpClientConfig() {
-        ApplicationConfiguration configuration = ApplicationConfiguration.getInstance();
-        HttpClientConfig config = new HttpClientConfig();
-
-        config.setMaxTotalConnections(configuration.getInt("httpClientConfig.maxConnections", 150));
-        config.setMaxConnectionsPerRoute(configuration.getInt("httpClientConfig.maxConnectionsPerRoute", 50));
-        config.setConnectionTimeout(configuration.getInt("httpClientConfig.connectionTimeout", 7000));
-        config.setSoTimeout(configuration.getInt("httpClientConfig.requestTimeout", 60000));
-        config.setSoReuseAddress(configuration.getBoolean("httpClientConfig.soReuseAddress", true));
-        config.setSoLinger(configuration.getInt("httpClientConfig.soLinger", 0));
-        config.setSoKeepAlive(configuration.getBoolean("httpClientConfig.keepAlive", false));
-        config.setTcpNoDelay(configuration.getBoolean("httpClientConfig.tcpNoDelay", false));
-        return config;
-    }
-
     private HttpClientConfig createHttpClientConfig() {
         ApplicationConfiguration configuration = ApplicationConfiguration.getInstance();
         HttpClientConfig config = new HttpClientConfig();
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.event.ActorAppTokenEventHandler;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.ActorAppToken;
+import farm.nurture.communication.engine.repository.ActorAppTokenRepository;
+import farm.nurture.core.contracts.common.enums.ActorType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of active FCM tokens per (actor, mobile app details id), packed into a single long key. Apps for
+ * which the actor has no active token are cached as well, for a shorter TTL.
+ *
+ * Entries are invalidated by {@link ActorAppTokenEventHandler} when this instance consumes a token change,
+ * and evicted when FCM reports the cached token as no longer registered.
+ */
+@Slf4j
+@Singleton
+public class ActorAppTokenCache {
+
+    private static final int APP_DETAILS_BITS = 16;
+    private static final int ACTOR_TYPE_BITS = 8;
+    private static final int ACTOR_ID_SHIFT = APP_DETAILS_BITS + ACTOR_TYPE_BITS;
+    private static final long MAX_ACTOR_ID = Long.MAX_VALUE >>> ACTOR_ID_SHIFT;
+
+    /* Marks an app for which the actor has no active token */
+    private static final ActorAppToken NO_TOKEN = ActorAppToken.builder().build();
+
+    @Inject
+    private ActorAppTokenRepository repository;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Cache<Long, ActorAppToken> cache = Caffeine.newBuilder()
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("actor.app.token.cache.max.size", 100000))
+            .expireAfter(new Expiry<Long, ActorAppToken>() {
+                private final long tokenTtlNanos = TimeUnit.SECONDS.toNanos(
+                        ApplicationConfiguration.getInstance().getInt("actor.app.token.cache.ttl.seconds", 600));
+                private final long noTokenTtlNanos = TimeUnit.SECONDS.toNanos(
+                        ApplicationConfiguration.getInstance().getInt("actor.app.token.cache.no.token.ttl.seconds", 60));
+
+                @Override
+                public long expireAfterCreate(Long key, ActorAppToken value, long currentTime) {
+                    return value == NO_TOKEN ? noTokenTtlNanos : tokenTtlNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(Long key, ActorAppToken value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(Long key, ActorAppToken value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public ActorAppTokenCache() {
+        CacheMetrics.getInstance().addCache("actor_app_token", cache);
+    }
+
+    /**
+     * Active tokens of the actor for the given apps, in the order of mobileAppDetailsIds. Apps missing from the
+     * cache are loaded with a single query; returns null when that query fails, like the repository.
+     */
+    public List<ActorAppToken> getByActorAndMobileApp(long actorId, ActorType actorType, List<Short> mobileAppDetailsIds) {
+        Map<Short, ActorAppToken> resolved = new HashMap<>();
+        List<Short> missing = null;
+        for (Short mobileAppDetailsId : mobileAppDetailsIds) {
+            long key = key(actorId, actorType, mobileAppDetailsId);
+            if (key < 0) {
+                return repository.getByActorAndMobileApp(actorId, actorType, mobileAppDetailsIds);
+            }
+            ActorAppToken token = cache.getIfPresent(key);
+            if (token == null) {
+                if (missing == null) missing = new ArrayList<>();
+                missing.add(mobileAppDetailsId);
+            } else {
+                resolved.put(mobileAppDetailsId, token);
+            }
+        }
+
+        if (missing == null) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_APP_TOKEN_CACHE, "hit");
+        } else {
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_APP_TOKEN_CACHE, "miss");
+            List<ActorAppToken> tokens = repository.getByActorAndMobileApp(actorId, actorType, missing);
+            if (tokens == null) return null;
+            for (ActorAppToken token : tokens) {
+                if (token != null && token.getMobileAppDetailsId() != null && !resolved.containsKey(token.getMobileAppDetailsId())) {
+                    resolved.put(token.getMobileAppDetailsId(), token);
+                }
+            }
+            for (Short mobileAppDetailsId : missing) {
+                cache.put(key(actorId, actorType, mobileAppDetailsId), resolved.getOrDefault(mobileAppDetailsId, NO_TOKEN));
+            }
+        }
+
+        List<ActorAppToken> activeTokens = new ArrayList<>();
+        for (Short mobileAppDetailsId : mobileAppDetailsIds) {
+            ActorAppToken token = resolved.get(mobileAppDetailsId);
+            if (token != null && token != NO_TOKEN) activeTokens.add(token);
+        }
+        return activeTokens;
+    }
+
+    public void invalidate(long actorId, ActorType actorType, Short mobileAppDetailsId) {
+        long key = key(actorId, actorType, mobileAppDetailsId);
+        if (key >= 0) {
+            cache.invalidate(key);
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_APP_TOKEN_CACHE, "invalidate");
+        }
+    }
+
+    /**
+     * Evicts the cached token of the actor for the app if it still is fcmToken, e.g. after FCM responded
+     * with NotRegistered for it.
+     */
+    public void evict(long actorId, ActorType actorType, Short mobileAppDetailsId, String fcmToken) {
+        long key = key(actorId, actorType, mobileAppDetailsId);
+        if (key < 0 || fcmToken == null) return;
+        ActorAppToken token = cache.getIfPresent(key);
+        if (token != null && fcmToken.equals(token.getFcmToken()) && cache.asMap().remove(key, token)) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_APP_TOKEN_CACHE, "evict_unregistered");
+        }
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Packs (actorId, actorType, mobileAppDetailsId) as actorId << 24 | actorType number << 16 | app details id,
+     * or -1 when they do not fit and the lookup should bypass the cache.
+     */
+    static long key(long actorId, ActorType actorType, Short mobileAppDetailsId) {
+        if (actorType == null || actorType == ActorType.UNRECOGNIZED || mobileAppDetailsId == null || mobileAppDetailsId < 0) return -1;
+        if (actorId < 0 || actorId > MAX_ACTOR_ID) return -1;
+        int type = actorType.getNumber();
+        if (type < 0 || type >= (1 << ACTOR_TYPE_BITS)) return -1;
+        return (actorId << ACTOR_ID_SHIFT) | ((long) type << APP_DETAILS_BITS) | mobileAppDetailsId;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.event.ActorCommunicationDetailsEventHandler;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.ActorCommunicationDetails;
+import farm.nurture.communication.engine.repository.ActorCommunicationDetailsRepository;
+import farm.nurture.core.contracts.common.enums.ActorType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near-cache of actor_communication_details for recipients looked up by actor, keyed by the actor id and
+ * actor type packed into a single long.
+ *
+ * Entries are invalidated by {@link ActorCommunicationDetailsEventHandler} when this instance consumes a
+ * change. Changes consumed by other instances of the consumer group are only picked up once the entry
+ * expires, so the write TTL bounds how stale a recipient can be. Missing actors are not cached.
+ */
+@Slf4j
+@Singleton
+public class ActorCommunicationDetailsCache {
+
+    private static final int ACTOR_TYPE_BITS = 8;
+    private static final long MAX_ACTOR_ID = Long.MAX_VALUE >>> ACTOR_TYPE_BITS;
+
+    @Inject
+    private ActorCommunicationDetailsRepository repository;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Cache<Long, ActorCommunicationDetails> cache = Caffeine.newBuilder()
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("actor.comm.details.cache.max.size", 100000))
+            .expireAfterWrite(ApplicationConfiguration.getInstance().getInt("actor.comm.details.cache.ttl.seconds", 600), TimeUnit.SECONDS)
+            .build();
+
+    public ActorCommunicationDetailsCache() {
+        CacheMetrics.getInstance().addCache("actor_comm_details", cache);
+    }
+
+    public ActorCommunicationDetails get(long actorId, ActorType actorType) {
+        long key = key(actorId, actorType);
+        if (key < 0) {
+            return repository.getByActorIdAndActorType(actorId, actorType);
+        }
+
+        ActorCommunicationDetails details = cache.getIfPresent(key);
+        if (details != null) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_COMM_DETAILS_CACHE, "hit");
+            return details;
+        }
+
+        metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_COMM_DETAILS_CACHE, "miss");
+        details = repository.getByActorIdAndActorType(actorId, actorType);
+        if (details != null) {
+            cache.put(key, details);
+        }
+        return details;
+    }
+
+    public void invalidate(long actorId, ActorType actorType) {
+        long key = key(actorId, actorType);
+        if (key >= 0) {
+            cache.invalidate(key);
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACTOR_COMM_DETAILS_CACHE, "invalidate");
+        }
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    /**
+     * Packs (actorId, actorType) as actorId << 8 | actorType number, or -1 when the pair does not fit and
+     * the lookup should bypass the cache.
+     */
+    static long key(long actorId, ActorType actorType) {
+        if (actorType == null || actorType == ActorType.UNRECOGNIZED || actorId < 0 || actorId > MAX_ACTOR_ID) return -1;
+        int type = actorType.getNumber();
+        if (type < 0 || type >= (1 << ACTOR_TYPE_BITS)) return -1;
+        return (actorId << ACTOR_TYPE_BITS) | type;
+    }
+}
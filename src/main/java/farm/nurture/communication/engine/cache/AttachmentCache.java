@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.cache;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Email attachments by url, downloaded once to local disk instead of once per email.
+ *
+ * Files are kept in attachment.cache.dir up to attachment.cache.max.bytes in total, least recently used first
+ * out. An attachment older than attachment.cache.revalidate.seconds is revalidated in the background with its
+ * ETag, and replaced only when the server returns a new version. Concurrent requests for the same url share one
+ * download. Contents are read by memory mapping the file, so they are not copied onto the heap; a mapping stays
+ * valid even if the file is evicted while an email is being written.
+ */
+@Slf4j
+@Singleton
+public class AttachmentCache {
+
+    @Inject
+    CloseableHttpClient httpClient;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Path directory;
+
+    private final ExecutorService executor;
+
+    private final LoadingCache<String, Attachment> attachments;
+
+    public AttachmentCache() {
+        this(Paths.get(ApplicationConfiguration.getInstance().get("attachment.cache.dir",
+                        Paths.get(System.getProperty("java.io.tmpdir"), "communication-engine-attachments").toString())),
+                ApplicationConfiguration.getInstance().getInt("attachment.cache.max.mb", 512) * 1024L * 1024L,
+                ApplicationConfiguration.getInstance().getInt("attachment.cache.revalidate.seconds", 300),
+                ApplicationConfiguration.getInstance().getInt("attachment.cache.download.threads", 4));
+    }
+
+    AttachmentCache(Path directory, long maxBytes, int revalidateSeconds, int downloadThreads) {
+        this.directory = directory;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(downloadThreads, runnable -> {
+            Thread thread = new Thread(runnable, "attachment-download-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.attachments = Caffeine.newBuilder()
+                .recordStats()
+                .maximumWeight(maxBytes)
+                .weigher((String url, Attachment attachment) -> (int) Math.min(Integer.MAX_VALUE, attachment.getSize()))
+                .refreshAfterWrite(revalidateSeconds, TimeUnit.SECONDS)
+                .executor(executor)
+                .removalListener(this::onRemoval)
+                .build(new CacheLoader<String, Attachment>() {
+                    @Override
+                    public Attachment load(String url) throws IOException {
+                        return download(url, null);
+                    }
+
+                    @Override
+                    public Attachment reload(String url, Attachment cached) throws IOException {
+                        return download(url, cached);
+                    }
+                });
+        clearDirectory();
+        CacheMetrics.getInstance().addCache("attachments", attachments);
+    }
+
+    /**
+     * Attachment at the url, downloading it unless it is cached or already being downloaded.
+     */
+    public Attachment get(String url) {
+        return attachments.get(url);
+    }
+
+    /**
+     * Starts downloading the url in the background, for a later {@link #get(String)}.
+     */
+    public CompletableFuture<Attachment> prefetch(String url) {
+        return CompletableFuture.supplyAsync(() -> attachments.get(url), executor);
+    }
+
+    public List<CompletableFuture<Attachment>> prefetch(Collection<String> urls) {
+        return urls.stream().distinct().map(this::prefetch).collect(Collectors.toList());
+    }
+
+    /**
+     * Drops the attachment when its file turned out to be gone, so the next {@link #get(String)} downloads it
+     * again. An attachment that was already replaced for the url is left alone.
+     */
+    public void invalidate(String url, Attachment attachment) {
+        if (attachments.asMap().remove(url, attachment)) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_ATTACHMENT_CACHE, "invalidated");
+        }
+    }
+
+    private Attachment download(String url, Attachment cached) throws IOException {
+        HttpGet request = new HttpGet(url);
+        if (cached != null && cached.getEtag() != null) {
+            request.setHeader(HttpHeaders.IF_NONE_MATCH, cached.getEtag());
+        }
+        try (CloseableHttpResponse response = httpClient.execute(request)) {
+            int statusCode = response.getStatusLine().getStatusCode();
+            if (statusCode == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                metrics.onIncrement(MetricGroupNames.NF_CE_ATTACHMENT_CACHE, "not_modified");
+                return cached;
+            }
+            HttpEntity entity = response.getEntity();
+            if (statusCode != HttpStatus.SC_OK || entity == null) {
+                metrics.onIncrement(MetricGroupNames.NF_CE_ATTACHMENT_CACHE, "download_failed");
+                throw new IOException("Got status code " + statusCode + " in downloading attachment " + url);
+            }
+
+            Path file = Files.createTempFile(directory, "attachment-", ".bin");
+            try (InputStream inputStream = entity.getContent()) {
+                Files.copy(inputStream, file, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+            Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+            metrics.onIncrement(MetricGroupNames.NF_CE_ATTACHMENT_CACHE, "downloaded");
+            return new Attachment(file, Files.size(file), etag == null ? null : etag.getValue());
+        }
+    }
+
+    private void onRemoval(String url, Attachment attachment, RemovalCause cause) {
+        /* A revalidated attachment that was not modified replaces itself */
+        if (attachment == null || (cause == RemovalCause.REPLACED && attachments.asMap().get(url) == attachment)) return;
+        try {
+            Files.deleteIfExists(attachment.getFile());
+        } catch (IOException e) {
+            log.error("Unable to delete cached attachment : {}", attachment.getFile(), e);
+        }
+    }
+
+    /**
+     * Files left by a previous run have no ETag on record, so they are dropped rather than trusted.
+     */
+    private void clearDirectory() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "attachment-*.bin")) {
+                for (Path file : files) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Unable to prepare attachment cache directory : {}", directory, e);
+        }
+    }
+
+    @Getter
+    public static final class Attachment {
+        private final Path file;
+        private final long size;
+        private final String etag;
+
+        Attachment(Path file, long size, String etag) {
+            this.file = file;
+            this.size = size;
+            this.etag = etag;
+        }
+
+        /**
+         * Read only mapping of the file, which outlives the file being evicted from the cache.
+         */
+        public MappedByteBuffer map() throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+        }
+    }
+}
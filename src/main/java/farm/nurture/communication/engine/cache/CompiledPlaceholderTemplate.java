@@ -0,0 +1,168 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-split form of a template that only uses plain variable tags ({{name}}, {{{name}}} and {{&name}}).
+ * Rendering walks the segment array once into a presized StringBuilder and looks placeholders up
+ * directly in the map, producing the same output as Mustache including its HTML escaping.
+ *
+ * Templates with sections, inverted sections, partials, comments, delimiter changes or dotted names
+ * are not compiled here; {@link #compile(String)} returns null and the Mustache template is used.
+ */
+public final class CompiledPlaceholderTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final String TRIPLE_CLOSE = "}}}";
+
+    private static final char[][] ESCAPES = new char[97][];
+
+    static {
+        for (int c = 0; c <= 13; c++) {
+            ESCAPES[c] = ("&#" + c + ";").toCharArray();
+        }
+        ESCAPES['&'] = "&amp;".toCharArray();
+        ESCAPES['<'] = "&lt;".toCharArray();
+        ESCAPES['>'] = "&gt;".toCharArray();
+        ESCAPES['"'] = "&quot;".toCharArray();
+        ESCAPES['\''] = "&#39;".toCharArray();
+        ESCAPES['`'] = "&#96;".toCharArray();
+        ESCAPES['='] = "&#61;".toCharArray();
+    }
+
+    /* Literal text for even indexes, placeholder names for odd ones */
+    private final String[] segments;
+
+    private final boolean[] escaped;
+
+    private final int literalLength;
+
+    private CompiledPlaceholderTemplate(String[] segments, boolean[] escaped, int literalLength) {
+        this.segments = segments;
+        this.escaped = escaped;
+        this.literalLength = literalLength;
+    }
+
+    public static CompiledPlaceholderTemplate compile(String source) {
+        if (source == null) return null;
+
+        List<String> segments = new ArrayList<>();
+        List<Boolean> escaped = new ArrayList<>();
+        int literalLength = 0;
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            if (open < 0) {
+                String literal = source.substring(position);
+                segments.add(literal);
+                literalLength += literal.length();
+                break;
+            }
+            String literal = source.substring(position, open);
+            segments.add(literal);
+            literalLength += literal.length();
+
+            boolean escape = true;
+            int nameStart = open + OPEN.length();
+            int close;
+            if (source.startsWith("{", nameStart)) {
+                escape = false;
+                nameStart++;
+                close = source.indexOf(TRIPLE_CLOSE, nameStart);
+                if (close < 0) return null;
+                position = close + TRIPLE_CLOSE.length();
+            } else {
+                close = source.indexOf(CLOSE, nameStart);
+                if (close < 0) return null;
+                if (source.startsWith("&", nameStart)) {
+                    escape = false;
+                    nameStart++;
+                }
+                position = close + CLOSE.length();
+            }
+
+            String name = source.substring(nameStart, close).trim();
+            if (!isPlainName(name)) return null;
+            segments.add(name);
+            escaped.add(escape);
+        }
+
+        boolean[] escapedArray = new boolean[escaped.size()];
+        for (int i = 0; i < escapedArray.length; i++) {
+            escapedArray[i] = escaped.get(i);
+        }
+        return new CompiledPlaceholderTemplate(segments.toArray(new String[0]), escapedArray, literalLength);
+    }
+
+    private static boolean isPlainName(String name) {
+        if (name.isEmpty()) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-')) return false;
+        }
+        return true;
+    }
+
+    public String render(Map<String, String> placeholders) {
+        int capacity = literalLength;
+        if (placeholders != null) {
+            for (int i = 1; i < segments.length; i += 2) {
+                String value = placeholders.get(segments[i]);
+                if (value != null) capacity += value.length();
+            }
+        }
+
+        StringBuilder builder = new StringBuilder(capacity + (capacity >> 4));
+        builder.append(segments[0]);
+        for (int i = 1; i < segments.length; i += 2) {
+            String value = placeholders == null ? null : placeholders.get(segments[i]);
+            if (value != null) {
+                if (escaped[i >> 1]) {
+                    appendEscaped(builder, value);
+                } else {
+                    builder.append(value);
+                }
+            }
+            builder.append(segments[i + 1]);
+        }
+        return builder.toString();
+    }
+
+    int placeholderCount() {
+        return escaped.length;
+    }
+
+    private static void appendEscaped(StringBuilder builder, String value) {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            char[] escape;
+            if (c < ESCAPES.length && (escape = ESCAPES[c]) != null) {
+                builder.append(value, start, i).append(escape);
+                start = i + 1;
+            }
+        }
+        builder.append(value, start, length);
+    }
+}
@@ -20,37 +20,167 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.CacheMetrics;
 import farm.nurture.communication.engine.models.Language;
 import farm.nurture.communication.engine.repository.LanguageRepository;
+import farm.nurture.core.contracts.common.enums.LanguageCode;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Languages are served from an immutable snapshot: an array indexed by language id, a map by code and an
+ * EnumMap by {@link LanguageCode}. The snapshot is rebuilt periodically and swapped in with a single volatile
+ * write, so lookups neither lock nor allocate. Keys missing from the snapshot fall back to the database.
+ */
+@Slf4j
 @Singleton
 public class LanguageCache {
 
+    /* Ids above this are served from the fallback cache instead of the array */
+    private static final int MAX_INDEXED_ID = 1024;
+
     @Inject
     private LanguageRepository languageRepository;
 
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private ScheduledExecutorService refreshExecutor;
+
     private LoadingCache<String, Language> languageByCodeCache = Caffeine.newBuilder()
-            .maximumSize(50)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("language.cache.max.size", 50))
             .refreshAfterWrite(1, TimeUnit.HOURS)
             .build(code -> languageRepository.getLanguageByCode(code));
 
     private LoadingCache<Short, Language> languageByIdCache = Caffeine.newBuilder()
-            .maximumSize(50)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("language.cache.max.size", 50))
             .refreshAfterWrite(1, TimeUnit.HOURS)
             .build(id -> languageRepository.getLanguageById(id));
 
+    public LanguageCache() {
+        CacheMetrics.getInstance().addCache("language_by_code", languageByCodeCache);
+        CacheMetrics.getInstance().addCache("language_by_id", languageByIdCache);
+    }
+
     public void init() {
-        languageRepository.getAll().forEach(language -> languageByCodeCache.put(language.getCode(), language));
-        languageRepository.getAll().forEach(language -> languageByIdCache.put(language.getId(), language));
+        refresh();
+        if (refreshExecutor == null) {
+            int refreshIntervalSeconds = ApplicationConfiguration.getInstance().getInt("reference.data.refresh.interval.seconds", 3600);
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "language-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    void refresh() {
+        try {
+            List<Language> languages = languageRepository.getAll();
+            if (languages == null) return;
+            snapshot = Snapshot.of(languages);
+        } catch (Exception e) {
+            log.error("Error in refreshing LanguageCache", e);
+        }
+    }
+
+    /**
+     * Serves the given rows, e.g. from a warm-start snapshot, until the next refresh from the database.
+     */
+    public void restore(List<Language> languages) {
+        snapshot = Snapshot.of(languages);
+    }
+
+    public List<Language> getAll() {
+        return snapshot.all;
     }
 
     public Language getLanguageByCode(String code) {
-        return languageByCodeCache.get(code);
+        Language language = snapshot.byCode.get(code);
+        return language != null ? language : languageByCodeCache.get(code);
     }
 
     public Language getLanguageById(Short id) {
+        Snapshot current = snapshot;
+        if (id != null && id >= 0 && id < current.byId.length) {
+            Language language = current.byId[id];
+            if (language != null) return language;
+        }
         return languageByIdCache.get(id);
     }
+
+    /**
+     * Same as {@link #getLanguageByCode(String)} with the code derived from the contract enum (EN_US to en-us),
+     * without building that string on the hot path.
+     */
+    public Language getLanguageByLanguageCode(LanguageCode languageCode) {
+        Language language = snapshot.byLanguageCode.get(languageCode);
+        return language != null ? language : getLanguageByCode(toCode(languageCode));
+    }
+
+    private static String toCode(LanguageCode languageCode) {
+        return languageCode.name().toLowerCase().replace('_', '-');
+    }
+
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), new Language[0], Collections.emptyMap(),
+                new EnumMap<>(LanguageCode.class));
+
+        private final List<Language> all;
+
+        private final Language[] byId;
+
+        private final Map<String, Language> byCode;
+
+        private final Map<LanguageCode, Language> byLanguageCode;
+
+        private Snapshot(List<Language> all, Language[] byId, Map<String, Language> byCode, Map<LanguageCode, Language> byLanguageCode) {
+            this.all = all;
+            this.byId = byId;
+            this.byCode = byCode;
+            this.byLanguageCode = byLanguageCode;
+        }
+
+        private static Snapshot of(List<Language> languages) {
+            int maxId = -1;
+            for (Language language : languages) {
+                if (language != null && language.getId() != null && language.getId() <= MAX_INDEXED_ID) {
+                    maxId = Math.max(maxId, language.getId());
+                }
+            }
+
+            Language[] byId = new Language[maxId + 1];
+            Map<String, Language> byCode = new HashMap<>();
+            for (Language language : languages) {
+                if (language == null) continue;
+                if (language.getId() != null && language.getId() >= 0 && language.getId() <= maxId) {
+                    byId[language.getId()] = language;
+                }
+                if (language.getCode() != null) {
+                    byCode.put(language.getCode(), language);
+                }
+            }
+
+            Map<LanguageCode, Language> byLanguageCode = new EnumMap<>(LanguageCode.class);
+            for (LanguageCode languageCode : LanguageCode.values()) {
+                if (languageCode == LanguageCode.UNRECOGNIZED) continue;
+                Language language = byCode.get(toCode(languageCode));
+                if (language != null) byLanguageCode.put(languageCode, language);
+            }
+            return new Snapshot(Collections.unmodifiableList(new ArrayList<>(languages)), byId, Collections.unmodifiableMap(byCode), Collections.unmodifiableMap(byLanguageCode));
+        }
+    }
 }
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Handles of sample media uploaded to a vendor for template registration, by vendor and SHA-256 of the file,
+ * so that the same sample is uploaded once per media.handle.cache.ttl.hours instead of once per template.
+ * Failed uploads are not cached.
+ */
+@Slf4j
+@Singleton
+public class MediaHandleCache {
+
+    @Value
+    static class Key {
+        VendorType vendor;
+        String checksum;
+    }
+
+    private final Cache<Key, String> handles = Caffeine.newBuilder()
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("media.handle.cache.max.size", 100))
+            .expireAfterWrite(ApplicationConfiguration.getInstance().getInt("media.handle.cache.ttl.hours", 24), TimeUnit.HOURS)
+            .build();
+
+    public MediaHandleCache() {
+        CacheMetrics.getInstance().addCache("media_handles", handles);
+    }
+
+    /**
+     * Handle of the file on the vendor, calling upload only when it is not cached. Concurrent calls for the same
+     * file wait for one upload.
+     */
+    public String get(VendorType vendor, File file, Function<File, String> upload) {
+        String checksum = checksum(file);
+        if (checksum == null) return upload.apply(file);
+        return handles.get(new Key(vendor, checksum), key -> upload.apply(file));
+    }
+
+    static String checksum(File file) {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+
+        } catch (IOException | NoSuchAlgorithmException e) {
+            log.error("Unable to compute checksum of media file : {}", file, e);
+            return null;
+        }
+    }
+}
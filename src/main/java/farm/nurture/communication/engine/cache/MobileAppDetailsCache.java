@@ -20,54 +20,185 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.CacheMetrics;
 import farm.nurture.communication.engine.models.MobileAppDetails;
 import farm.nurture.communication.engine.repository.MobileAppDetailsRepository;
+import farm.nurture.core.contracts.common.enums.AppID;
+import farm.nurture.core.contracts.common.enums.AppType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Mobile app details are served from an immutable snapshot: arrays indexed by id and AFS app id, and
+ * EnumMaps by the contract {@link AppID} / {@link AppType}. The snapshot is rebuilt periodically and swapped
+ * in with a single volatile write; keys missing from it fall back to the database.
+ */
+@Slf4j
 @Singleton
 public class MobileAppDetailsCache {
 
+    /* Ids above this are served from the fallback caches instead of the arrays */
+    private static final int MAX_INDEXED_ID = 1024;
+
     @Inject
     private MobileAppDetailsRepository appDetailsRepository;
 
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    private ScheduledExecutorService refreshExecutor;
+
     private LoadingCache<Short, MobileAppDetails> mobileAppDetailsCache = Caffeine.newBuilder()
-            .maximumSize(20)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("mobile.app.details.cache.max.size", 20))
             .refreshAfterWrite(1, TimeUnit.HOURS)
             .build(id -> appDetailsRepository.getMobileAppDetailsById(id));
 
     private LoadingCache<Short, MobileAppDetails> mobileAppDetailsByAFSAppIdCache = Caffeine.newBuilder()
-            .maximumSize(20)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("mobile.app.details.cache.max.size", 20))
             .refreshAfterWrite(1, TimeUnit.HOURS)
             .build(afsAppId -> appDetailsRepository.getMobileAppDetailsByAFSAppId(afsAppId));
 
     private LoadingCache<MobileAppDetailsCacheKey, MobileAppDetails> mobileAppDetailsByAppIdandAppTypeCache = Caffeine.newBuilder()
-            .maximumSize(20)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("mobile.app.details.cache.max.size", 20))
             .refreshAfterWrite(1, TimeUnit.HOURS)
             .build(key -> appDetailsRepository.getMobileAppDetailsByAppIdandAppName(key.getAppId(), key.getAppType()));
 
+    public MobileAppDetailsCache() {
+        CacheMetrics.getInstance().addCache("mobile_app_details_by_id", mobileAppDetailsCache);
+        CacheMetrics.getInstance().addCache("mobile_app_details_by_afs_app_id", mobileAppDetailsByAFSAppIdCache);
+        CacheMetrics.getInstance().addCache("mobile_app_details_by_app_id_and_type", mobileAppDetailsByAppIdandAppTypeCache);
+    }
+
     public void init() {
-        appDetailsRepository.getAll().forEach(appDetails -> mobileAppDetailsCache.put(appDetails.getId(), appDetails));
-        appDetailsRepository.getAll().forEach(appDetails -> {
-            String appId = appDetails.getAppId();
-            String appType = appDetails.getAppType().name();
-            MobileAppDetailsCacheKey mobileAppDetailsCacheKey = new MobileAppDetailsCacheKey(appId, appType);
-            mobileAppDetailsByAppIdandAppTypeCache.put(mobileAppDetailsCacheKey, appDetails);
-            mobileAppDetailsByAFSAppIdCache.put(appDetails.getAfsAppId(), appDetails);
-        });
+        refresh();
+        if (refreshExecutor == null) {
+            int refreshIntervalSeconds = ApplicationConfiguration.getInstance().getInt("reference.data.refresh.interval.seconds", 3600);
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "mobile-app-details-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    void refresh() {
+        try {
+            List<MobileAppDetails> appDetails = appDetailsRepository.getAll();
+            if (appDetails == null) return;
+            snapshot = Snapshot.of(appDetails);
+        } catch (Exception e) {
+            log.error("Error in refreshing MobileAppDetailsCache", e);
+        }
+    }
+
+    /**
+     * Serves the given rows, e.g. from a warm-start snapshot, until the next refresh from the database.
+     */
+    public void restore(List<MobileAppDetails> appDetails) {
+        snapshot = Snapshot.of(appDetails);
+    }
+
+    public List<MobileAppDetails> getAll() {
+        return snapshot.all;
     }
 
     public MobileAppDetails getMobileAppDetailsById(Short id) {
         if(id == null) return null;
-        return mobileAppDetailsCache.get(id);
+        MobileAppDetails appDetails = Snapshot.get(snapshot.byId, id);
+        return appDetails != null ? appDetails : mobileAppDetailsCache.get(id);
     }
 
     public MobileAppDetails getMobileAppDetailsByAFSAppId(Short afsAppId) {
-        return mobileAppDetailsByAFSAppIdCache.get(afsAppId);
+        MobileAppDetails appDetails = afsAppId == null ? null : Snapshot.get(snapshot.byAfsAppId, afsAppId);
+        return appDetails != null ? appDetails : mobileAppDetailsByAFSAppIdCache.get(afsAppId);
     }
 
     public MobileAppDetails getMobileAppDetailsByAppIdandAppType(MobileAppDetailsCacheKey key) {
-        return mobileAppDetailsByAppIdandAppTypeCache.get(key);
+        MobileAppDetails appDetails = snapshot.byKey.get(key);
+        return appDetails != null ? appDetails : mobileAppDetailsByAppIdandAppTypeCache.get(key);
+    }
+
+    public MobileAppDetails getMobileAppDetailsByAppIdandAppType(AppID appId, AppType appType) {
+        Map<AppType, MobileAppDetails> byAppType = snapshot.byAppId.get(appId);
+        MobileAppDetails appDetails = byAppType == null ? null : byAppType.get(appType);
+        return appDetails != null ? appDetails : getMobileAppDetailsByAppIdandAppType(new MobileAppDetailsCacheKey(appId.name(), appType.name()));
     }
 
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), new MobileAppDetails[0], new MobileAppDetails[0],
+                Collections.emptyMap(), new EnumMap<>(AppID.class));
+
+        private final List<MobileAppDetails> all;
+
+        private final MobileAppDetails[] byId;
+
+        private final MobileAppDetails[] byAfsAppId;
+
+        private final Map<MobileAppDetailsCacheKey, MobileAppDetails> byKey;
+
+        private final Map<AppID, Map<AppType, MobileAppDetails>> byAppId;
+
+        private Snapshot(List<MobileAppDetails> all, MobileAppDetails[] byId, MobileAppDetails[] byAfsAppId,
+                         Map<MobileAppDetailsCacheKey, MobileAppDetails> byKey, Map<AppID, Map<AppType, MobileAppDetails>> byAppId) {
+            this.all = all;
+            this.byId = byId;
+            this.byAfsAppId = byAfsAppId;
+            this.byKey = byKey;
+            this.byAppId = byAppId;
+        }
+
+        private static MobileAppDetails get(MobileAppDetails[] array, short index) {
+            return index >= 0 && index < array.length ? array[index] : null;
+        }
+
+        private static MobileAppDetails[] index(List<MobileAppDetails> appDetailsList, boolean byAfsAppId) {
+            int max = -1;
+            for (MobileAppDetails appDetails : appDetailsList) {
+                Short id = appDetails == null ? null : byAfsAppId ? appDetails.getAfsAppId() : appDetails.getId();
+                if (id != null && id <= MAX_INDEXED_ID) max = Math.max(max, id);
+            }
+            MobileAppDetails[] array = new MobileAppDetails[max + 1];
+            for (MobileAppDetails appDetails : appDetailsList) {
+                Short id = appDetails == null ? null : byAfsAppId ? appDetails.getAfsAppId() : appDetails.getId();
+                if (id != null && id >= 0 && id <= max) array[id] = appDetails;
+            }
+            return array;
+        }
+
+        private static Snapshot of(List<MobileAppDetails> appDetailsList) {
+            Map<MobileAppDetailsCacheKey, MobileAppDetails> byKey = new HashMap<>();
+            for (MobileAppDetails appDetails : appDetailsList) {
+                if (appDetails == null || appDetails.getAppType() == null) continue;
+                byKey.put(new MobileAppDetailsCacheKey(appDetails.getAppId(), appDetails.getAppType().name()), appDetails);
+            }
+
+            Map<AppID, Map<AppType, MobileAppDetails>> byAppId = new EnumMap<>(AppID.class);
+            for (AppID appId : AppID.values()) {
+                if (appId == AppID.UNRECOGNIZED) continue;
+                Map<AppType, MobileAppDetails> byAppType = new EnumMap<>(AppType.class);
+                for (AppType appType : AppType.values()) {
+                    if (appType == AppType.UNRECOGNIZED) continue;
+                    MobileAppDetails appDetails = byKey.get(new MobileAppDetailsCacheKey(appId.name(), appType.name()));
+                    if (appDetails != null) byAppType.put(appType, appDetails);
+                }
+                if (!byAppType.isEmpty()) byAppId.put(appId, Collections.unmodifiableMap(byAppType));
+            }
+            return new Snapshot(Collections.unmodifiableList(new ArrayList<>(appDetailsList)), index(appDetailsList, false),
+                    index(appDetailsList, true), Collections.unmodifiableMap(byKey), Collections.unmodifiableMap(byAppId));
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.models.Language;
+import farm.nurture.communication.engine.models.MobileAppDetails;
+import farm.nurture.communication.engine.models.Template;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Local disk snapshot of the raw rows behind {@link LanguageCache}, {@link MobileAppDetailsCache} and
+ * {@link TemplateCache}, so a restarting instance can serve from the snapshot right away and reconcile
+ * with the database in the background instead of blocking startup on it.
+ *
+ * The file is a fixed header (magic, format version, CRC32 and length of the payload) followed by the
+ * rows as JSON. It is memory-mapped for reading and replaced atomically on write; a snapshot with a
+ * different format version or a checksum mismatch is ignored.
+ */
+@Slf4j
+@Singleton
+public class ReferenceDataSnapshot {
+
+    static final int MAGIC = 0x4E464345;
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+
+    @Inject
+    private LanguageCache languageCache;
+
+    @Inject
+    private MobileAppDetailsCache mobileAppDetailsCache;
+
+    @Inject
+    private TemplateCache templateCache;
+
+    @Inject
+    private ObjectMapper mapper;
+
+    private final ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+
+    public boolean isEnabled() {
+        return config.getBoolean("reference.data.snapshot.enabled", false);
+    }
+
+    Path path() {
+        return Paths.get(config.get("reference.data.snapshot.path", "/var/tmp/communication-engine/reference-data.snapshot"));
+    }
+
+    /**
+     * Loads the caches from the snapshot file. Returns false when snapshots are disabled or there is no
+     * usable snapshot, in which case the caches must be loaded from the database before serving.
+     */
+    public boolean restore() {
+        if (!isEnabled()) return false;
+        Path path = path();
+        if (!Files.isReadable(path)) {
+            log.info("No reference data snapshot found at : {}", path);
+            return false;
+        }
+
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_REFERENCE_DATA_SNAPSHOT, "restore");
+        try {
+            Contents contents = read(path);
+            if (contents == null) return false;
+
+            languageCache.restore(contents.getLanguages());
+            mobileAppDetailsCache.restore(contents.getMobileAppDetails());
+            templateCache.restore(contents.getTemplates());
+            success = true;
+            log.info("Restored reference data snapshot created at : {}, languages : {}, mobile apps : {}, templates : {}",
+                    contents.getCreatedAt(), contents.getLanguages().size(), contents.getMobileAppDetails().size(),
+                    contents.getTemplates().size());
+
+        } catch (Exception e) {
+            log.error("Error in restoring reference data snapshot from : {}", path, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return success;
+    }
+
+    /**
+     * Writes the current contents of the caches, replacing the previous snapshot.
+     */
+    public void save() {
+        if (!isEnabled()) return;
+        Path path = path();
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_REFERENCE_DATA_SNAPSHOT, "save");
+        try {
+            List<Language> languages = languageCache.getAll();
+            List<MobileAppDetails> mobileAppDetails = mobileAppDetailsCache.getAll();
+            List<Template> templates = templateCache.getAll();
+            if (languages.isEmpty() || mobileAppDetails.isEmpty() || templates.isEmpty()) {
+                log.warn("Not saving reference data snapshot, caches are not loaded");
+                return;
+            }
+            write(path, new Contents(System.currentTimeMillis(), languages, mobileAppDetails, templates));
+            success = true;
+            log.info("Saved reference data snapshot to : {}", path);
+
+        } catch (Exception e) {
+            log.error("Error in saving reference data snapshot to : {}", path, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+    }
+
+    Contents read(Path path) throws Exception {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                log.warn("Ignoring truncated reference data snapshot : {}", path);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int magic = buffer.getInt();
+            int formatVersion = buffer.getInt();
+            long checksum = buffer.getLong();
+            int length = buffer.getInt();
+            if (magic != MAGIC || formatVersion != FORMAT_VERSION || length != buffer.remaining()) {
+                log.warn("Ignoring reference data snapshot with format version : {}, length : {}", formatVersion, length);
+                return null;
+            }
+
+            ByteBuffer payload = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if (crc.getValue() != checksum) {
+                log.warn("Ignoring reference data snapshot with checksum mismatch : {}", path);
+                return null;
+            }
+
+            byte[] bytes = new byte[length];
+            payload.get(bytes);
+            Contents contents = mapper.readerFor(Contents.class)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                    .readValue(bytes);
+            if (contents.getLanguages() == null || contents.getMobileAppDetails() == null || contents.getTemplates() == null) {
+                log.warn("Ignoring incomplete reference data snapshot : {}", path);
+                return null;
+            }
+            return contents;
+        }
+    }
+
+    void write(Path path, Contents contents) throws Exception {
+        byte[] payload = mapper.writeValueAsBytes(contents);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(crc.getValue()).putInt(payload.length).put(payload);
+        buffer.flip();
+
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class Contents {
+
+        private long createdAt;
+
+        private List<Language> languages;
+
+        private List<MobileAppDetails> mobileAppDetails;
+
+        private List<Template> templates;
+    }
+}
@@ -23,13 +23,26 @@ import com.github.mustachejava.Mustache;
 import com.github.mustachejava.MustacheFactory;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.CacheMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.Template;
 import farm.nurture.communication.engine.repository.TemplateRepository;
+import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.infra.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.StringReader;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Singleton
@@ -39,54 +52,201 @@ public class TemplateCache {
     private TemplateRepository templateRepository;
 
     private LoadingCache<TemplateCacheKey, TemplateCacheValue> languageByCodeCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .refreshAfterWrite(30, TimeUnit.MINUTES)
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("template.cache.max.size", 1000))
             .build(key -> getTemplateDetails(key.getName(), key.getLanguageId()));
 
+    private final Metrics metrics = Metrics.getInstance();
+
+    private volatile Timestamp lastSeenUpdatedAt = new Timestamp(0);
+
+    /* Bumped whenever cached templates change, so lookups derived from the cache know to resolve again */
+    private final AtomicLong version = new AtomicLong();
+
+    private ScheduledExecutorService refreshExecutor;
+
+    public TemplateCache() {
+        CacheMetrics.getInstance().addCache("template", languageByCodeCache);
+    }
+
+    /**
+     * Compiles the snapshot of active templates from a single query, then keeps it current by polling
+     * templates changed since the newest updated_at seen so far. Templates cached earlier, e.g. restored
+     * from a warm-start snapshot, that are no longer active are evicted.
+     */
     public void init() {
-        templateRepository.getAll().forEach(template -> {
-            if(template!=null){
-             String name = template.getName();
-             Short languageId = template.getLanguageId();
-             TemplateCacheKey templateCacheKey = new TemplateCacheKey(name, languageId);
-             languageByCodeCache.put(templateCacheKey, getTemplateDetails(name, languageId));
+        List<Template> templates = templateRepository.getAll();
+        if (templates != null) {
+            Map<TemplateCacheKey, TemplateCacheValue> snapshot = load(templates);
+            languageByCodeCache.asMap().keySet().retainAll(snapshot.keySet());
+            log.info("Loaded {} templates in TemplateCache", snapshot.size());
+        }
+
+        if (refreshExecutor == null) {
+            int refreshIntervalSeconds = ApplicationConfiguration.getInstance().getInt("template.cache.refresh.interval.seconds", 60);
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "template-cache-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Serves the given rows, e.g. from a warm-start snapshot, until {@link #init()} reconciles with the database.
+     */
+    public void restore(List<Template> templates) {
+        Map<TemplateCacheKey, TemplateCacheValue> snapshot = load(templates);
+        log.info("Restored {} templates in TemplateCache", snapshot.size());
+    }
+
+    /**
+     * Raw rows of the templates currently cached.
+     */
+    public List<Template> getAll() {
+        List<Template> templates = new ArrayList<>();
+        for (TemplateCacheValue value : languageByCodeCache.asMap().values()) {
+            if (value != null && value.getTemplate() != null) templates.add(value.getTemplate());
+        }
+        return templates;
+    }
+
+    private Map<TemplateCacheKey, TemplateCacheValue> load(List<Template> templates) {
+        Map<TemplateCacheKey, TemplateCacheValue> snapshot = new HashMap<>();
+        for (Template template : templates) {
+            if (template == null) continue;
+            TemplateCacheValue value = compile(template);
+            if (value != null) {
+                snapshot.put(new TemplateCacheKey(template.getName(), template.getLanguageId()), value);
             }
-        });
+            advanceLastSeen(template);
+        }
+        languageByCodeCache.putAll(snapshot);
+        version.incrementAndGet();
+        return snapshot;
     }
 
-    public TemplateCacheValue getTemplateDetails(String name, Short languageId) {
-        Template template = templateRepository.getTemplateByNameAndLanguage(name, languageId);
-        if(template == null) return null;
-        MustacheFactory mf = new DefaultMustacheFactory();
+    /**
+     * Recompiles templates updated since the last refresh and swaps them in; templates that were deactivated
+     * are evicted. Rows of the last seen second are read again, as updated_at only has second precision, so rows
+     * equal to the cached template are skipped and the version only moves when something actually changed.
+     */
+    void refresh() {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_TEMPLATE_CACHE, "delta_refresh");
         try {
-            Mustache mustacheTemplate = mf.compile(new StringReader(template.getContent()), template.getName() + "_" + template.getLanguageId());
-            Mustache mustacheTitleTemplate = null;
-            if (StringUtils.isNonEmpty(template.getTitle())) {
-                mustacheTitleTemplate = mf.compile(new StringReader(template.getTitle()), template.getName() + "_" + template.getLanguageId());
+            List<Template> templates = templateRepository.getTemplatesUpdatedSince(lastSeenUpdatedAt);
+            if (templates == null) return;
+            Map<TemplateCacheKey, TemplateCacheValue> changed = new HashMap<>();
+            List<TemplateCacheKey> deactivated = new ArrayList<>();
+            for (Template template : templates) {
+                if (template == null) continue;
+                advanceLastSeen(template);
+                TemplateCacheKey key = new TemplateCacheKey(template.getName(), template.getLanguageId());
+                TemplateCacheValue cached = languageByCodeCache.getIfPresent(key);
+                if (Boolean.TRUE.equals(template.getActive())) {
+                    if (cached != null && template.equals(cached.getTemplate())) continue;
+                    TemplateCacheValue value = compile(template);
+                    if (value != null) changed.put(key, value);
+                } else if (cached != null) {
+                    deactivated.add(key);
+                }
             }
-            return new TemplateCacheValue(template, mustacheTemplate, mustacheTitleTemplate);
-        }catch (Exception exp){
-            log.error("Error in parsing templates {} ", exp.getMessage());
-            return null;
+            languageByCodeCache.putAll(changed);
+            languageByCodeCache.invalidateAll(deactivated);
+            if (!changed.isEmpty() || !deactivated.isEmpty()) {
+                version.incrementAndGet();
+            }
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in refreshing TemplateCache since : {}", lastSeenUpdatedAt, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+    }
+
+    /**
+     * Applies a change notification from another replica. Notifications older than the cached template are
+     * ignored, so out of order ones do not roll a template back. As updated_at only has second precision, a
+     * notification from the same second as the cached template is still read from the database; re-reading a
+     * template that did not change leaves the cache as it is.
+     */
+    public void applyChange(String name, Short languageId, long version) {
+        TemplateCacheValue cached = languageByCodeCache.getIfPresent(new TemplateCacheKey(name, languageId));
+        Timestamp cachedUpdatedAt = cached == null ? null : cached.getTemplate().getUpdatedAt();
+        if (cachedUpdatedAt != null && cachedUpdatedAt.getTime() > version) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "stale_change_ignored");
+            return;
+        }
+
+        Template template = templateRepository.getAllTemplateByNameAndLanguage(name, languageId);
+        if (template == null) {
+            log.error("Unable to fetch changed template : {}, languageId : {}", name, languageId);
+            return;
+        }
+        applyChange(template);
+    }
+
+    /**
+     * Swaps in the given template row, or evicts it when inactive.
+     */
+    public void applyChange(Template template) {
+        TemplateCacheKey key = new TemplateCacheKey(template.getName(), template.getLanguageId());
+        TemplateCacheValue cached = languageByCodeCache.getIfPresent(key);
+        if (cached != null && template.equals(cached.getTemplate())) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "unchanged");
+            return;
+        }
+        TemplateCacheValue value = Boolean.TRUE.equals(template.getActive()) ? compile(template) : null;
+        if (value != null) {
+            languageByCodeCache.put(key, value);
+        } else {
+            languageByCodeCache.invalidate(key);
         }
+        version.incrementAndGet();
+        metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "applied");
+    }
+
+    private void advanceLastSeen(Template template) {
+        Timestamp updatedAt = template.getUpdatedAt();
+        if (updatedAt != null && updatedAt.after(lastSeenUpdatedAt)) {
+            lastSeenUpdatedAt = updatedAt;
+        }
+    }
+
+    public TemplateCacheValue getTemplateDetails(String name, Short languageId) {
+        Template template = templateRepository.getTemplateByNameAndLanguage(name, languageId);
+        if(template == null) return null;
+        return compile(template);
     }
 
     public TemplateCacheValue getAllTemplateDetails(String name, Short languageId) {
         Template template = templateRepository.getAllTemplateByNameAndLanguage(name, languageId);
         if(template == null) return null;
+        return compile(template);
+    }
+
+    private TemplateCacheValue compile(Template template) {
         MustacheFactory mf = new DefaultMustacheFactory();
         try {
             Mustache mustacheTemplate = mf.compile(new StringReader(template.getContent()), template.getName() + "_" + template.getLanguageId());
             Mustache mustacheTitleTemplate = null;
+            CompiledPlaceholderTemplate placeholderTitleTemplate = null;
             if (StringUtils.isNonEmpty(template.getTitle())) {
                 mustacheTitleTemplate = mf.compile(new StringReader(template.getTitle()), template.getName() + "_" + template.getLanguageId());
+                placeholderTitleTemplate = CompiledPlaceholderTemplate.compile(template.getTitle());
             }
-            return new TemplateCacheValue(template, mustacheTemplate, mustacheTitleTemplate);
+            return new TemplateCacheValue(template, mustacheTemplate, mustacheTitleTemplate,
+                    CompiledPlaceholderTemplate.compile(template.getContent()), placeholderTitleTemplate);
         }catch (Exception exp){
             log.error("Error in parsing templates {} ", exp.getMessage());
             return null;
         }
     }
+
     public TemplateCacheValue getCompiledTemplateByCacheKey(TemplateCacheKey key) {
         return languageByCodeCache.get(key);
     }
@@ -94,4 +254,8 @@ public class TemplateCache {
     public void put(TemplateCacheKey key, TemplateCacheValue value){
         languageByCodeCache.put(key, value);
     }
+
+    public long getVersion() {
+        return version.get();
+    }
 }
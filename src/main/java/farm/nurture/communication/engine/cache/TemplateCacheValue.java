@@ -33,4 +33,13 @@ public class TemplateCacheValue {
 
     private Mustache compiledTitleTemplate;
 
+    /* Set only when the template is plain placeholder substitution, see CompiledPlaceholderTemplate */
+    private CompiledPlaceholderTemplate placeholderTemplate;
+
+    private CompiledPlaceholderTemplate placeholderTitleTemplate;
+
+    public TemplateCacheValue(Template template, Mustache compiledTemplate, Mustache compiledTitleTemplate) {
+        this(template, compiledTemplate, compiledTitleTemplate, null, null);
+    }
+
 }
@@ -0,0 +1,342 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.cache;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.WhatsappUsers;
+import farm.nurture.communication.engine.repository.WhatsappUsersRepository;
+import farm.nurture.communication.engine.service.WhatsappService;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory opt-in status of every row in whatsapp_users, so the WhatsApp send path does not need a
+ * database round trip per message.
+ *
+ * Mobile numbers are encoded into a long (digits plus digit count, so leading zeros survive) and kept
+ * in an open-addressing table of primitive arrays. Each slot stores the status ordinal together with
+ * the epoch millis of the last update, which is all {@link WhatsappService} needs to decide whether a
+ * user can be messaged. Lookups are lock-free in the common case and do not allocate.
+ *
+ * The index is bootstrapped from the table at startup, updated by the opt-in / opt-out write paths of
+ * this instance and periodically reconciled with rows updated by other instances. Until the bootstrap
+ * completes, or for numbers that cannot be encoded, callers get {@link Decision#UNKNOWN} and should
+ * fall back to the database.
+ */
+@Slf4j
+@Singleton
+public class WhatsappUsersStatusIndex {
+
+    public enum Decision {
+        VALID, INVALID, UNKNOWN
+    }
+
+    static final long NOT_ENCODABLE = 0L;
+
+    private static final int NOT_FOUND = -1;
+    private static final int STATUS_BITS = 2;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+    private static final int LENGTH_BITS = 5;
+    private static final int MAX_DIGITS = 17;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private static final int OPT_IN = WhatsappUsers.WhatsAppStatus.OPT_IN.ordinal();
+    private static final int NO_ACCNT = WhatsappUsers.WhatsAppStatus.NO_ACCNT.ordinal();
+
+    @Inject
+    private WhatsappUsersRepository whatsappUsersRepository;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final StampedLock lock = new StampedLock();
+
+    private Table table = new Table(INITIAL_CAPACITY);
+
+    private volatile boolean loaded = false;
+
+    private volatile long noAccntCutoffMillis;
+
+    private Timestamp lastUpdatedAt = new Timestamp(0);
+
+    private long lastUpdatedId = 0;
+
+    private ScheduledExecutorService refreshExecutor;
+
+    public void init() {
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        if (!config.getBoolean("whatsapp.users.index.enabled", false)) {
+            log.info("WhatsappUsersStatusIndex is disabled, whatsapp users will be validated from database");
+            return;
+        }
+        int pageSize = config.getInt("whatsapp.users.index.page.size", 5000);
+        if (!load(pageSize)) {
+            return;
+        }
+
+        int refreshIntervalSeconds = config.getInt("whatsapp.users.index.refresh.interval.seconds", 30);
+        long overlapMillis = config.getInt("whatsapp.users.index.refresh.overlap.seconds", 5) * 1000L;
+        refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "whatsapp-users-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refreshExecutor.scheduleWithFixedDelay(() -> refresh(pageSize, overlapMillis), refreshIntervalSeconds,
+                refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    boolean load(int pageSize) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_WHATSAPP_USERS_INDEX, "load");
+        try {
+            refreshNoAccntCutoffMillis();
+            long afterId = 0;
+            while (true) {
+                List<WhatsappUsers> page = whatsappUsersRepository.getWhatsappUsersPage(afterId, pageSize);
+                if (page == null) {
+                    log.error("Unable to load whatsapp users page after id : {}, index will not be used", afterId);
+                    return false;
+                }
+                long lastId = afterId;
+                for (WhatsappUsers whatsappUsers : page) {
+                    if (whatsappUsers == null) continue;
+                    apply(whatsappUsers);
+                    lastId = Math.max(lastId, whatsappUsers.getId());
+                }
+                if (page.size() < pageSize || lastId == afterId) break;
+                afterId = lastId;
+            }
+            loaded = true;
+            success = true;
+            log.info("Loaded {} whatsapp users in WhatsappUsersStatusIndex", size());
+
+        } catch (Exception e) {
+            log.error("Error in loading WhatsappUsersStatusIndex", e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return success;
+    }
+
+    void refresh(int pageSize, long overlapMillis) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_WHATSAPP_USERS_INDEX, "refresh");
+        try {
+            refreshNoAccntCutoffMillis();
+            Timestamp since = new Timestamp(Math.max(0, lastUpdatedAt.getTime() - overlapMillis));
+            long afterId = 0;
+            while (true) {
+                List<WhatsappUsers> page = whatsappUsersRepository.getWhatsappUsersUpdatedSince(since, afterId, pageSize);
+                if (page == null) return;
+                for (WhatsappUsers whatsappUsers : page) {
+                    if (whatsappUsers == null) continue;
+                    apply(whatsappUsers);
+                    since = whatsappUsers.getUpdatedAt();
+                    afterId = whatsappUsers.getId();
+                }
+                if (page.size() < pageSize) break;
+            }
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in refreshing WhatsappUsersStatusIndex", e);
+
+        } finally {
+            tracker.stop(success);
+        }
+    }
+
+    /**
+     * Same rules as the database path of {@link WhatsappService}: opted in users are valid, users without a
+     * WhatsApp account are retried once their last update is older than {@link WhatsappService#EXPIREMONTHS}.
+     */
+    public Decision validate(String mobileNumber) {
+        if (!loaded) return Decision.UNKNOWN;
+        long key = encode(mobileNumber);
+        if (key == NOT_ENCODABLE) return Decision.UNKNOWN;
+
+        long value = get(key);
+        if (value == NOT_FOUND) return Decision.INVALID;
+        int status = (int) (value & STATUS_MASK);
+        if (status == OPT_IN) return Decision.VALID;
+        if (status == NO_ACCNT && (value >>> STATUS_BITS) < noAccntCutoffMillis) return Decision.VALID;
+        return Decision.INVALID;
+    }
+
+    public void record(String mobileNumber, WhatsappUsers.WhatsAppStatus status) {
+        long key = encode(mobileNumber);
+        if (key == NOT_ENCODABLE || status == null) return;
+        put(key, pack(status, System.currentTimeMillis()), false);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table.size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void apply(WhatsappUsers whatsappUsers) {
+        long key = encode(whatsappUsers.getMobileNumber());
+        if (key == NOT_ENCODABLE || whatsappUsers.getStatus() == null) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_WHATSAPP_USERS_INDEX, "skipped_records");
+            return;
+        }
+        Timestamp updatedAt = whatsappUsers.getUpdatedAt();
+        put(key, pack(whatsappUsers.getStatus(), updatedAt == null ? 0 : updatedAt.getTime()), true);
+
+        if (updatedAt != null && (updatedAt.after(lastUpdatedAt) ||
+                (updatedAt.equals(lastUpdatedAt) && whatsappUsers.getId() > lastUpdatedId))) {
+            lastUpdatedAt = updatedAt;
+            lastUpdatedId = whatsappUsers.getId();
+        }
+    }
+
+    private void refreshNoAccntCutoffMillis() {
+        noAccntCutoffMillis = LocalDate.now().minusMonths(WhatsappService.EXPIREMONTHS)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long pack(WhatsappUsers.WhatsAppStatus status, long epochMillis) {
+        return (epochMillis << STATUS_BITS) | status.ordinal();
+    }
+
+    /**
+     * Encodes a mobile number of up to {@value #MAX_DIGITS} digits as (number << 5 | digit count), or
+     * {@link #NOT_ENCODABLE} when it contains anything other than digits.
+     */
+    static long encode(String mobileNumber) {
+        if (mobileNumber == null) return NOT_ENCODABLE;
+        int length = mobileNumber.length();
+        if (length == 0 || length > MAX_DIGITS) return NOT_ENCODABLE;
+
+        long number = 0;
+        for (int i = 0; i < length; i++) {
+            char c = mobileNumber.charAt(i);
+            if (c < '0' || c > '9') return NOT_ENCODABLE;
+            number = number * 10 + (c - '0');
+        }
+        return (number << LENGTH_BITS) | length;
+    }
+
+    private long get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        long value = table.get(key);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = table.get(key);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Rows read from the database only replace an entry when they are not older than it, so a reconcile
+     * that raced with a local opt-in / opt-out does not roll the local write back.
+     */
+    private void put(long key, long value, boolean keepNewer) {
+        long stamp = lock.writeLock();
+        try {
+            if (table.size >= table.threshold) {
+                table = table.resize();
+            }
+            table.put(key, value, keepNewer);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final long[] values;
+        private final int mask;
+        private final int threshold;
+        private int size;
+
+        private Table(int capacity) {
+            keys = new long[capacity];
+            values = new long[capacity];
+            mask = capacity - 1;
+            threshold = (int) (capacity * LOAD_FACTOR);
+        }
+
+        private static int slot(long key, int mask) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        private long get(long key) {
+            int index = slot(key, mask);
+            long current;
+            while ((current = keys[index]) != NOT_ENCODABLE) {
+                if (current == key) return values[index];
+                index = (index + 1) & mask;
+            }
+            return NOT_FOUND;
+        }
+
+        private void put(long key, long value, boolean keepNewer) {
+            int index = slot(key, mask);
+            long current;
+            while ((current = keys[index]) != NOT_ENCODABLE) {
+                if (current == key) {
+                    if (!keepNewer || (value >>> STATUS_BITS) >= (values[index] >>> STATUS_BITS)) {
+                        values[index] = value;
+                    }
+                    return;
+                }
+                index = (index + 1) & mask;
+            }
+            values[index] = value;
+            keys[index] = key;
+            size++;
+        }
+
+        private Table resize() {
+            Table resized = new Table(keys.length << 1);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != NOT_ENCODABLE) {
+                    resized.put(keys[i], values[i], false);
+                }
+            }
+            return resized;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.dao;
+
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.MessageAcknowledgementOutbox;
+import farm.nurture.laminar.core.io.sql.dao.ReadBase;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+public class MessageAcknowledgementOutboxReadBase extends ReadBase<MessageAcknowledgementOutbox> {
+    public static final String ID = "id";
+    public static final String REFERENCE_ID = "reference_id";
+    public static final String TOPIC = "topic";
+    public static final String PAYLOAD = "payload";
+    public static final String PUBLISHED_AT = "published_at";
+    public static final String CREATED_AT = "created_at";
+    private List<MessageAcknowledgementOutbox> records = null;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    @Override
+    protected List<MessageAcknowledgementOutbox> populate() throws SQLException {
+        if ( null == this.rs) {
+            log.warn("MessageAcknowledgementOutbox ResultSet is not initialized.");
+            throw new SQLException("MessageAcknowledgementOutbox ResultSet is not initialized.");
+        }
+
+        if ( null == records) records = new ArrayList<MessageAcknowledgementOutbox>();
+        this.rs.setFetchSize(500);
+        while (this.rs.next()) {
+            recordsCount++;
+            records.add(populateMessageAcknowledgementOutbox());
+        }
+        return records;
+    }
+
+    private MessageAcknowledgementOutbox populateMessageAcknowledgementOutbox() {
+        MessageAcknowledgementOutbox outbox = null;
+        try {
+            MessageAcknowledgementOutbox.MessageAcknowledgementOutboxBuilder builder = MessageAcknowledgementOutbox.builder();
+            builder.id(rs.getLong(ID));
+            builder.referenceId(rs.getString(REFERENCE_ID));
+            builder.topic(rs.getString(TOPIC));
+            builder.payload(rs.getBytes(PAYLOAD));
+            builder.publishedAt(rs.getTimestamp(PUBLISHED_AT));
+            builder.createdAt(rs.getTimestamp(CREATED_AT));
+            outbox = builder.build();
+
+        } catch (Exception e) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_MESSAGE_ACKNOWLEDGEMENT_OUTBOX_READ_BASE, "populate_record_failed");
+            log.error("Unable to populate MessageAcknowledgementOutbox from resultSet : {}", rs, e);
+        }
+        return outbox;
+    }
+
+    @Override
+    protected MessageAcknowledgementOutbox getFirstRow() throws SQLException {
+        if ( null == this.rs) {
+            log.warn("MessageAcknowledgementOutbox ResultSet is not initialized.");
+            throw new SQLException("MessageAcknowledgementOutbox ResultSet is not initialized.");
+        }
+
+        MessageAcknowledgementOutbox outbox = null;
+        this.rs.setFetchSize(1);
+
+        while (this.rs.next()) {
+            recordsCount++;
+            outbox = populateMessageAcknowledgementOutbox();
+        }
+        return outbox;
+    }
+
+    @Override
+    protected int getRecordsCount() {
+        return recordsCount;
+    }
+}
@@ -27,6 +27,7 @@ import farm.nurture.kafka.EventHandler;
 import farm.nurture.util.http.NFException;
 import farm.nurture.communication.engine.models.ActorAppToken;
 import lombok.extern.slf4j.Slf4j;
+import farm.nurture.communication.engine.cache.ActorAppTokenCache;
 import farm.nurture.communication.engine.cache.MobileAppDetailsCache;
 import farm.nurture.communication.engine.event.ActorAppTokenEvent.Action;
 import farm.nurture.communication.engine.metric.MetricGroupNames;
@@ -48,6 +49,9 @@ public class ActorAppTokenEventHandler implements EventHandler<String, String> {
     @Inject
     private ActorAppTokenRepository repository;
 
+    @Inject
+    private ActorAppTokenCache actorAppTokenCache;
+
     private final Metrics metrics = Metrics.getInstance();
 
     @Override
@@ -67,6 +71,7 @@ public class ActorAppTokenEventHandler implements EventHandler<String, String> {
             } else {
                 repository.updateActorAppToken(appToken);
             }
+            actorAppTokenCache.invalidate(appToken.getActorId(), appToken.getActorType(), appToken.getMobileAppDetailsId());
 
             success = true;
             return Consumer.Status.success;
@@ -30,6 +30,7 @@ import farm.nurture.kafka.Consumer;
 import farm.nurture.kafka.Event;
 import farm.nurture.kafka.EventHandler;
 import lombok.extern.slf4j.Slf4j;
+import farm.nurture.communication.engine.cache.ActorCommunicationDetailsCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
@@ -48,6 +49,9 @@ public class ActorCommunicationDetailsEventHandler implements EventHandler<Strin
     @Inject
     private ActorCommunicationDetailsRepository repository;
 
+    @Inject
+    private ActorCommunicationDetailsCache actorCommunicationDetailsCache;
+
     private final Metrics metrics = Metrics.getInstance();
 
     @Override
@@ -73,6 +77,7 @@ public class ActorCommunicationDetailsEventHandler implements EventHandler<Strin
             } else {
                 repository.updateActorCommunicationDetails(details);
             }
+            actorCommunicationDetailsCache.invalidate(details.getActorId(), details.getActorType());
 
             success = true;
             return Consumer.Status.success;
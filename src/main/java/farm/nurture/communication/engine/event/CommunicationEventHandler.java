@@ -32,8 +32,6 @@ import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.*;
 import farm.nurture.communication.engine.models.Language;
-import farm.nurture.communication.engine.repository.ActorAppTokenRepository;
-import farm.nurture.communication.engine.repository.ActorCommunicationDetailsRepository;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
 import farm.nurture.communication.engine.service.*;
 import farm.nurture.communication.engine.utils.AESUtils;
@@ -65,9 +63,9 @@ public class CommunicationEventHandler implements EventHandler<byte[], byte[]> {
     private static final Map<ActorType, List<Short>> actorTypeToAppIdMapping = new HashMap<>(5);
 
     @Inject
-    private ActorCommunicationDetailsRepository actorCommDetailRepository;
+    private ActorCommunicationDetailsCache actorCommDetailsCache;
     @Inject
-    private ActorAppTokenRepository actorAppTokenRepository;
+    private ActorAppTokenCache actorAppTokenCache;
     @Inject
     private LanguageCache languageCache;
     @Inject
@@ -166,7 +164,7 @@ public class CommunicationEventHandler implements EventHandler<byte[], byte[]> {
 
             ActorCommunicationDetails commDetails = null;
             if (StringUtils.isEmpty(actorMobileNumber) && StringUtils.isEmpty(actorEmail) && StringUtils.isEmpty(actorFcmToken)) {
-                commDetails = actorCommDetailRepository.getByActorIdAndActorType(actorId, actorType);
+                commDetails = actorCommDetailsCache.get(actorId, actorType);
                     if (commDetails == null) {
                         log.error("Not able to fetch actor communication details for ActorId : {}, ActorType: {}, Template : {}",
                                 actorId, actorType, commEvent.getTemplateName());
@@ -179,17 +177,16 @@ public class CommunicationEventHandler implements EventHandler<byte[], byte[]> {
 
             if (!StringUtils.isEmpty(actorMobileNumber) || !StringUtils.isEmpty(actorEmail) || !StringUtils.isEmpty(actorFcmToken))
                 commDetails = new ActorCommunicationDetails(actorId, actorType, actorMobileNumber,
-                        languageCache.getLanguageByCode(actorDetails.getLanguageCode().name().toLowerCase().replace('_', '-')).getId(), true);
+                        languageCache.getLanguageByLanguageCode(actorDetails.getLanguageCode()).getId(), true);
 
             if (hasPnEvent) {
                 List<Short> mobileAppDetailsIds;
                 if (appId != AppID.NO_APP_ID && appType != AppType.NO_APP_TYPE) {
-                    MobileAppDetailsCacheKey key = new MobileAppDetailsCacheKey(appId.name(), appType.name());
-                    appDetails = appDetailsCache.getMobileAppDetailsByAppIdandAppType(key);
+                    appDetails = appDetailsCache.getMobileAppDetailsByAppIdandAppType(appId, appType);
                 } else {
                     mobileAppDetailsIds = actorTypeToAppIdMapping.get(actorType);
                     if (mobileAppDetailsIds != null && !mobileAppDetailsIds.isEmpty()) {
-                        List<ActorAppToken> tokens = actorAppTokenRepository.getByActorAndMobileApp(actorId, actorType, mobileAppDetailsIds);
+                        List<ActorAppToken> tokens = actorAppTokenCache.getByActorAndMobileApp(actorId, actorType, mobileAppDetailsIds);
                         token = tokens == null || tokens.isEmpty() ? null : tokens.get(0);
                         appDetails = appDetailsCache.getMobileAppDetailsById(token == null ? null : token.getMobileAppDetailsId());
 
@@ -217,7 +214,7 @@ public class CommunicationEventHandler implements EventHandler<byte[], byte[]> {
             Language secondaryLanguage = null;
 
             if (actorDetails.getSecondaryLanguageCode()!=null && actorDetails.getSecondaryLanguageCode()!=LanguageCode.NO_LANGUAGE_CODE) {
-                secondaryLanguage = languageCache.getLanguageByCode(actorDetails.getSecondaryLanguageCode().name().toLowerCase().replace('_', '-'));
+                secondaryLanguage = languageCache.getLanguageByLanguageCode(actorDetails.getSecondaryLanguageCode());
             }
 
             Map<String, String> placeholders = templateHelper.getPlaceHolders(commEvent.getPlaceholderList());
@@ -264,7 +261,7 @@ public class CommunicationEventHandler implements EventHandler<byte[], byte[]> {
                             PushNotificationType pushNotificationType = PushNotificationType.NO_PUSH_NOTIFICATION_TYPE;
                             if (commEvent.getChannelAttributes() != null)
                                 pushNotificationType = commEvent.getChannelAttributes().getPushNotificationType();
-                            derivedEvent.setPNAttributes(new PNAttributes(title, fcmToken, appDetails.getFcmApiKey(), pushNotificationType));
+                            derivedEvent.setPNAttributes(new PNAttributes(title, fcmToken, appDetails.getFcmApiKey(), pushNotificationType, appDetails.getId()));
                             derivedEvent.setVendor(VendorType.FIREBASE);
                             pushNotificationService.sendPushNotification(derivedEvent);
                             success = true;
@@ -27,7 +27,7 @@ import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class DerivedCommunicationEvent<K, V> {
@@ -52,6 +52,8 @@ public class DerivedCommunicationEvent<K, V> {
         private String apiKey;
 
         private PushNotificationType pushNotificationType;
+
+        private Short mobileAppDetailsId;
     }
 
     @Data
@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.event;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.kafka.Consumer;
+import farm.nurture.kafka.Event;
+import farm.nurture.kafka.EventHandler;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@Singleton
+public class TemplateChangeEventHandler implements EventHandler<String, String> {
+
+    @Inject
+    private ObjectMapper mapper;
+
+    @Inject
+    private TemplateCache templateCache;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    @Override
+    public Consumer.Status handle(String topic, Event<String, String> event) {
+        log.info("Got TemplateChange event. Key : {}, Message : {}, Timestamp : {}",
+                event.getPartitionKey(), event.getMessage(), event.getTimestamp());
+
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE, "template_change_event");
+
+        try {
+            TemplateChangeEvent changeEvent = mapper.readValue(event.getMessage(), TemplateChangeEvent.class);
+            if (changeEvent.getName() == null || changeEvent.getLanguageId() == null) {
+                log.error("Template name and language can not be null : {}", changeEvent);
+                metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "invalid_data");
+                return Consumer.Status.failure;
+            }
+
+            templateCache.applyChange(changeEvent.getName(), changeEvent.getLanguageId(), changeEvent.getVersion());
+            success = true;
+            return Consumer.Status.success;
+
+        } catch (JsonParseException | JsonMappingException e) {
+            log.error("Exception in deserializing template change event : {}", event, e);
+            metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "invalid_data");
+
+        } catch (Exception e) {
+            log.error("Exception in processing template change event : {}", event, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return Consumer.Status.failure;
+    }
+}
@@ -22,12 +22,14 @@ import com.google.protobuf.Timestamp;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.cache.TemplateCacheValue;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.dto.WhatsAppOptUserResponse;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
 import farm.nurture.communication.engine.helper.RequestMapper;
 import farm.nurture.communication.engine.helper.RequestValidator;
 import farm.nurture.communication.engine.helper.ResponseMapper;
 import farm.nurture.communication.engine.helper.TemplateHelper;
+import farm.nurture.communication.engine.kafka.TemplateChangePublisher;
 import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.models.Language;
@@ -37,6 +39,7 @@ import farm.nurture.communication.engine.models.WhatsappUsers;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
 import farm.nurture.communication.engine.repository.TemplateRepository;
 import farm.nurture.communication.engine.repository.WhatsappUsersRepository;
+import farm.nurture.communication.engine.service.AcknowledgementCompletions;
 import farm.nurture.communication.engine.service.OptUserService;
 import farm.nurture.communication.engine.service.SMSService;
 import farm.nurture.communication.engine.service.TemplateManagementService;
@@ -49,6 +52,7 @@ import farm.nurture.core.contracts.common.Attribs;
 import farm.nurture.core.contracts.common.RequestHeaders;
 import farm.nurture.core.contracts.common.enums.*;
 import farm.nurture.core.contracts.communication.engine.*;
+import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Event;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections.CollectionUtils;
@@ -56,6 +60,10 @@ import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import static farm.nurture.communication.engine.Constants.*;
@@ -78,6 +86,8 @@ public class CommunicationEngineImpl implements CommunicationEngine {
     @Inject
     private WhatsappUsersRepository whatsappUsersRepository;
     @Inject
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+    @Inject
     private OptUserService optUserService;
     @Inject
     private MessageAcknowledgementRepository messageAcknowledgementRepository;
@@ -99,6 +109,13 @@ public class CommunicationEngineImpl implements CommunicationEngine {
 
     @Inject
     private TemplateManagementService templateManagementService;
+    @Inject
+    private TemplateChangePublisher templateChangePublisher;
+    @Inject
+    private AcknowledgementCompletions acknowledgementCompletions;
+
+    private final ExecutorService activationExecutor = createActivationExecutor(
+            ApplicationConfiguration.getInstance().getInt("template.activation.threads", 4));
 
 
     @Override
@@ -154,6 +171,7 @@ public class CommunicationEngineImpl implements CommunicationEngine {
                 if (!whatsAppEntry) {
                     return responseMapper.mapToOptInRespone(ResponseStatus.ERROR, ResponseStatusCode.INTERNAL_SERVER_ERROR, null);
                 }
+                whatsappUsersStatusIndex.record(request.getMobileNumber(), WhatsappUsers.WhatsAppStatus.OPT_IN);
 //                if (validateOptInWhatsAppUser(whatsappUsers)) {
 //                    attributeMap.put("id", String.valueOf(whatsappUsers.getId()));
 //                    return whatsAppOptIn(request, optInUserResponse, attributeMap);
@@ -214,8 +232,8 @@ public class CommunicationEngineImpl implements CommunicationEngine {
 
         Event<byte[], byte[]> event = new Event<>(communicationEvent.getReferenceId().getBytes(), communicationEvent.toByteArray());
 
-        Language language = languageCache.getLanguageByCode(communicationEvent.getReceiverActorDetails()
-                .getLanguageCode().name().toLowerCase().replace('_', '-'));
+        Language language = languageCache.getLanguageByLanguageCode(communicationEvent.getReceiverActorDetails()
+                .getLanguageCode());
         log.info("Language:{} in sendSMSEvent for whatsOptIn using OptInRequest:{}", language, request);
 
         String content = aesUtils.getContent(communicationEvent, language);
@@ -305,24 +323,13 @@ public class CommunicationEngineImpl implements CommunicationEngine {
             template.setMetaData(metaDataMap);
 
             if(request.getChannel() == CommunicationChannel.WHATSAPP ){
-
-                if(!metaDataMap.containsKey(GUPSHUP_TEMPLATE_NAME)){
-                    log.info("Serving create template api gupshup request {} ", template);
-                    VendorResponse gupshupResponse  = templateManagementService.createTemplateInGupshup(template);
-                    vendorResponseList.add(gupshupResponse);
-                }
-
-                if(!metaDataMap.containsKey(KARIX_TEMPLATE_NAME)){
-                    log.info("Serving create template api karix request {} ", template);
-                    VendorResponse karixResponse = templateManagementService.createTemplateInKarix(template);
-                    vendorResponseList.add(karixResponse);
-                }
-
+                vendorResponseList.addAll(templateManagementService.createTemplateInVendors(template));
             }
             if(request.getChannel() == CommunicationChannel.APP_NOTIFICATION || request.getChannel() == CommunicationChannel.EMAIL){
                 template.setActive(true);
             }
             Integer id = templateRepository.insertTemplates(template);
+            templateChangePublisher.publish(template.getName(), template.getLanguageId());
             attributesMap.put("id", String.valueOf(id));
             log.info("Successfully served addTemplate request. Request: {}", request);
             success = true;
@@ -338,7 +345,7 @@ public class CommunicationEngineImpl implements CommunicationEngine {
     private Template mapRequestTemplate(AddTemplateRequest request) {
 
         return Template.builder().name(request.getName())
-                .languageId(languageCache.getLanguageByCode(request.getLanguageCode().name().toLowerCase().replace('_', '-')).getId())
+                .languageId(languageCache.getLanguageByLanguageCode(request.getLanguageCode()).getId())
                 .contentType(request.getTemplateContentType() == TemplateContentType.HTML ? Template.ContentType.HTML : Template.ContentType.STRING)
                 .content(request.getContent())
                 .active(false).ownerEmail(request.getOwner()).vertical(request.getVertical())
@@ -395,6 +402,7 @@ public class CommunicationEngineImpl implements CommunicationEngine {
                 if (!whatsAppEntry) {
                     return responseMapper.mapToOptOutRespone(ResponseStatus.ERROR, ResponseStatusCode.INTERNAL_SERVER_ERROR);
                 }
+                whatsappUsersStatusIndex.record(request.getMobileNumber(), WhatsappUsers.WhatsAppStatus.OPT_OUT);
             }
             attributeMap.put("optInId", optOutUserResponse.getResponse().getId());
             attributeMap.put("status", optOutUserResponse.getResponse().getStatus());
@@ -445,6 +453,9 @@ public class CommunicationEngineImpl implements CommunicationEngine {
         try {
 
             Integer id = templateRepository.updateTemplate(templateUpdateRequest);
+            if (id != null) {
+                templateChangePublisher.publish(templateUpdateRequest.getName(), (short) templateUpdateRequest.getLanguageCodeValue());
+            }
             Map<String, String> attributesMap = new HashMap<>();
             attributesMap.put("id", String.valueOf(id));
             log.info("Successfully served update Template request. Request: {}, attributesMap {}", templateUpdateRequest, attributesMap);
@@ -462,9 +473,8 @@ public class CommunicationEngineImpl implements CommunicationEngine {
 
     private String activationTest(ActivationRequest activationRequest,
                                   Language language,
-                                  TemplateCacheValue templateCacheValue, CommunicationVendor vendor, VendorType vendorType) throws IOException {
-
-        final String referenceId = UUID.randomUUID().toString();
+                                  TemplateCacheValue templateCacheValue, CommunicationVendor vendor, VendorType vendorType,
+                                  String referenceId) throws IOException {
 
         ActorDetails actorDetails = ActorDetails.newBuilder().
                     setMobileNumber(activationRequest.getMobileNumber()).
@@ -556,48 +566,85 @@ public class CommunicationEngineImpl implements CommunicationEngine {
 
     @Override
     public ActivationResponse activateTemplate(ActivationRequest activationRequest) {
+        return activateTemplateAsync(activationRequest).join();
+    }
+
+    /**
+     * Sends an activation test message through each vendor and completes as soon as both are resolved by their
+     * send or delivery callbacks, or after template.activation.timeout.millis, without holding a thread meanwhile.
+     * The vendor responses are then read from message_acknowledgements as before.
+     */
+    public CompletableFuture<ActivationResponse> activateTemplateAsync(ActivationRequest activationRequest) {
+        return activateTemplateAsync(activationRequest, ApplicationConfiguration.getInstance().getInt("template.activation.timeout.millis", 7000));
+    }
+
+    public CompletableFuture<ActivationResponse> activateTemplateAsync(ActivationRequest activationRequest, long timeoutMillis) {
         log.info("Serving activate Template request. Request: {}", activationRequest);
-        ActivationResponse activationResponse;
-        activationResponse = requestValidator.validate(activationRequest);
-        if (activationResponse != null) return activationResponse;
-        String vendorName = null;
-        boolean success = false;
+        ActivationResponse activationResponse = requestValidator.validate(activationRequest);
+        if (activationResponse != null) return CompletableFuture.completedFuture(activationResponse);
         MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE, "activate_template");
         try {
-            Language language = languageCache.getLanguageByCode(activationRequest.getLanguageCode().name().toLowerCase().replace('_', '-'));
+            Language language = languageCache.getLanguageByLanguageCode(activationRequest.getLanguageCode());
             TemplateCacheValue templateCacheValue = templateHelper.getAllTemplateFromNameAndLangId(activationRequest.getTemplateName(), language);
             if (templateCacheValue == null) {
                 log.error("Error in serving activateTemplate, TEMPLATE NOT FOUND for request {}", activationRequest);
-                VendorResponse.Builder vendorResponse = VendorResponse.newBuilder().setStatusCode(ResponseStatusCode.BAD_REQUEST)
-                        .setStatus(ResponseStatus.ERROR).setVendorName(vendorName);
-                return responseMapper.mapToActivationResponse(Collections.singletonList(vendorResponse.build()), false);
-            }
-            String referenceIdForGupshup = activationTest(activationRequest, language, templateCacheValue, CommunicationVendor.GUPSHUP, VendorType.GUPSHUP);
-            String referenceIdForKarix = activationTest(activationRequest, language, templateCacheValue,  CommunicationVendor.KARIX, VendorType.KARIX);
-            try{
-                Thread.sleep(7000); } catch (Exception e){
-                log.info("Thread Execution Error", e);
-            }
-            VendorResponse vendorResponse1 = getVendorResponse(referenceIdForGupshup, activationRequest.getChannel().name(), VendorType.GUPSHUP.name());
-            VendorResponse vendorResponse2 = getVendorResponse(referenceIdForKarix, activationRequest.getChannel().name(), VendorType.KARIX.name());
-            /**
-             *TODO: Once system is stable check template is whitelisted on both gupshup & karix
-             */
-            if(vendorResponse1.getStatus() == ResponseStatus.SUCCESSFUL) {
-                templateRepository.updateTemplateToActive(templateCacheValue.getTemplate().getName(), templateCacheValue.getTemplate().getLanguageId());
+                tracker.stop(false);
+                return CompletableFuture.completedFuture(getActivationErrorResponse());
             }
-            boolean active = vendorResponse1.getStatus() == ResponseStatus.SUCCESSFUL && vendorResponse2.getStatus() == ResponseStatus.SUCCESSFUL;
-            activationResponse = responseMapper.mapToActivationResponse(Arrays.asList(vendorResponse1, vendorResponse2), active);
-            success = true;
+            String referenceIdForGupshup = UUID.randomUUID().toString();
+            String referenceIdForKarix = UUID.randomUUID().toString();
+            CompletableFuture<MessageAcknowledgement.State> gupshupResolved = acknowledgementCompletions.await(referenceIdForGupshup, timeoutMillis);
+            CompletableFuture<MessageAcknowledgement.State> karixResolved = acknowledgementCompletions.await(referenceIdForKarix, timeoutMillis);
+            activationTest(activationRequest, language, templateCacheValue, CommunicationVendor.GUPSHUP, VendorType.GUPSHUP, referenceIdForGupshup);
+            activationTest(activationRequest, language, templateCacheValue, CommunicationVendor.KARIX, VendorType.KARIX, referenceIdForKarix);
+
+            return CompletableFuture.allOf(gupshupResolved, karixResolved)
+                    .thenApplyAsync(resolved -> completeActivation(activationRequest, templateCacheValue, referenceIdForGupshup, referenceIdForKarix), activationExecutor)
+                    .handle((response, e) -> {
+                        if (e != null) {
+                            log.error("Error in serving activationTemplate request : {}, error : {}", activationRequest, e);
+                            tracker.stop(false);
+                            return getActivationErrorResponse();
+                        }
+                        tracker.stop(true);
+                        return response;
+                    });
+
         } catch (Exception ex) {
             log.error("Error in serving activationTemplate request : {}, error : {}", activationRequest, ex);
-            VendorResponse.Builder vendorResponse = VendorResponse.newBuilder().setStatusCode(ResponseStatusCode.BAD_REQUEST)
-                    .setStatus(ResponseStatus.ERROR).setVendorName(vendorName);
-            activationResponse = responseMapper.mapToActivationResponse(Collections.singletonList(vendorResponse.build()), false);
-        } finally {
-            tracker.stop(success);
+            tracker.stop(false);
+            return CompletableFuture.completedFuture(getActivationErrorResponse());
         }
-        return activationResponse;
+    }
+
+    private ActivationResponse completeActivation(ActivationRequest activationRequest, TemplateCacheValue templateCacheValue,
+                                                  String referenceIdForGupshup, String referenceIdForKarix) {
+        VendorResponse vendorResponse1 = getVendorResponse(referenceIdForGupshup, activationRequest.getChannel().name(), VendorType.GUPSHUP.name());
+        VendorResponse vendorResponse2 = getVendorResponse(referenceIdForKarix, activationRequest.getChannel().name(), VendorType.KARIX.name());
+        /**
+         *TODO: Once system is stable check template is whitelisted on both gupshup & karix
+         */
+        if(vendorResponse1.getStatus() == ResponseStatus.SUCCESSFUL) {
+            templateRepository.updateTemplateToActive(templateCacheValue.getTemplate().getName(), templateCacheValue.getTemplate().getLanguageId());
+            templateChangePublisher.publish(templateCacheValue.getTemplate().getName(), templateCacheValue.getTemplate().getLanguageId());
+        }
+        boolean active = vendorResponse1.getStatus() == ResponseStatus.SUCCESSFUL && vendorResponse2.getStatus() == ResponseStatus.SUCCESSFUL;
+        return responseMapper.mapToActivationResponse(Arrays.asList(vendorResponse1, vendorResponse2), active);
+    }
+
+    private ActivationResponse getActivationErrorResponse() {
+        VendorResponse.Builder vendorResponse = VendorResponse.newBuilder().setStatusCode(ResponseStatusCode.BAD_REQUEST)
+                .setStatus(ResponseStatus.ERROR);
+        return responseMapper.mapToActivationResponse(Collections.singletonList(vendorResponse.build()), false);
+    }
+
+    private static ExecutorService createActivationExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "template-activation-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private Map<String, String> getPlaceholderMapFromList(List<Placeholder> placeholderList) {
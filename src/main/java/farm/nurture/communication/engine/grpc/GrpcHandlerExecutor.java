@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.grpc;
+
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.ExecutorMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import io.grpc.Context;
+import io.grpc.Deadline;
+import io.grpc.Status;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs gRPC handlers on a bounded pool instead of the unbounded cached pool grpc-java uses by default.
+ *
+ * Each method has its own concurrency limit (grpc.handler.concurrency.&lt;method&gt;, falling back to
+ * grpc.handler.concurrency.default), so a burst of slow searches or template activations cannot take every
+ * handler thread. Calls over the limit, or arriving while the queue is full, fail fast with RESOURCE_EXHAUSTED.
+ * Handlers run in the caller's gRPC {@link Context}, and calls whose deadline passed or which were cancelled while
+ * queued are not started. {@link #remainingMillis(long)} lets a handler bound its own waits by the deadline.
+ *
+ * The server transport itself gets a small fixed pool, which only hands calls over to this one.
+ */
+@Slf4j
+@Singleton
+public class GrpcHandlerExecutor {
+
+    private static final String[] REJECTED_LABELS = new String[]{"method", "reason"};
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final ThreadPoolExecutor executor;
+
+    private final Executor serverExecutor;
+
+    private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+
+    private final int defaultLimit;
+
+    public GrpcHandlerExecutor() {
+        this(ApplicationConfiguration.getInstance().getInt("grpc.handler.threads", 32),
+                ApplicationConfiguration.getInstance().getInt("grpc.handler.queue.size", 1000),
+                ApplicationConfiguration.getInstance().getInt("grpc.handler.concurrency.default", 16),
+                ApplicationConfiguration.getInstance().getInt("grpc.server.threads", 4));
+    }
+
+    GrpcHandlerExecutor(int threads, int queueSize, int defaultLimit, int serverThreads) {
+        this.defaultLimit = defaultLimit;
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                daemonThreadFactory("grpc-handler-"), new ThreadPoolExecutor.AbortPolicy());
+        ThreadPoolExecutor transport = (ThreadPoolExecutor) Executors.newFixedThreadPool(serverThreads, daemonThreadFactory("grpc-server-"));
+        serverExecutor = transport;
+        ExecutorMetrics.getInstance().addExecutor("grpc_handler", executor);
+        ExecutorMetrics.getInstance().addExecutor("grpc_server", transport);
+    }
+
+    public Executor getServerExecutor() {
+        return serverExecutor;
+    }
+
+    /**
+     * Runs the handler on the pool within the method's limit. The permit is held until the returned future of the
+     * handler completes, so asynchronous handlers are limited for as long as they are in flight.
+     */
+    public <T> CompletableFuture<T> submit(String method, Supplier<CompletableFuture<T>> handler) {
+        Semaphore limit = limits.computeIfAbsent(method, name -> new Semaphore(
+                ApplicationConfiguration.getInstance().getInt("grpc.handler.concurrency." + name, defaultLimit)));
+        if (!limit.tryAcquire()) {
+            return rejected(method, "concurrency_limit", Status.RESOURCE_EXHAUSTED.withDescription("Too many concurrent " + method + " calls"));
+        }
+
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_GRPC, method);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        result.whenComplete((response, e) -> {
+            limit.release();
+            tracker.stop(e == null);
+        });
+
+        Context context = Context.current();
+        try {
+            executor.execute(context.wrap(() -> run(method, context, handler, result)));
+        } catch (RejectedExecutionException e) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_GRPC, "rejected", REJECTED_LABELS, method, "queue_full");
+            result.completeExceptionally(Status.RESOURCE_EXHAUSTED.withDescription("gRPC handler queue is full").asRuntimeException());
+        }
+        return result;
+    }
+
+    private <T> void run(String method, Context context, Supplier<CompletableFuture<T>> handler, CompletableFuture<T> result) {
+        if (context.isCancelled()) {
+            Deadline deadline = context.getDeadline();
+            boolean expired = deadline != null && deadline.isExpired();
+            String reason = expired ? "deadline_exceeded" : "cancelled";
+            metrics.onIncrement(MetricGroupNames.NF_CE_GRPC, "rejected", REJECTED_LABELS, method, reason);
+            Status status = expired ? Status.DEADLINE_EXCEEDED : Status.CANCELLED;
+            result.completeExceptionally(status.withDescription(method + " was " + reason + " while queued").asRuntimeException());
+            return;
+        }
+        try {
+            handler.get().whenComplete((response, e) -> {
+                if (e != null) result.completeExceptionally(e);
+                else result.complete(response);
+            });
+
+        } catch (Exception e) {
+            log.error("Error in serving grpc method : {}", method, e);
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Time left before the deadline of the current gRPC call, capped at defaultMillis, or defaultMillis when the
+     * call has no deadline.
+     */
+    public static long remainingMillis(long defaultMillis) {
+        Deadline deadline = Context.current().getDeadline();
+        if (deadline == null) return defaultMillis;
+        return Math.max(0, Math.min(defaultMillis, deadline.timeRemaining(TimeUnit.MILLISECONDS)));
+    }
+
+    private <T> CompletableFuture<T> rejected(String method, String reason, Status status) {
+        metrics.onIncrement(MetricGroupNames.NF_CE_GRPC, "rejected", REJECTED_LABELS, method, reason);
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(status.asRuntimeException());
+        return future;
+    }
+
+    private static ThreadFactory daemonThreadFactory(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
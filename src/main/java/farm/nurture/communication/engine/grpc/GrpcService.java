@@ -18,59 +18,70 @@ package farm.nurture.communication.engine.grpc;
 
 import com.google.inject.Inject;
 import farm.nurture.core.contracts.communication.engine.*;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Handlers return as soon as the call is queued on {@link GrpcHandlerExecutor}, and respond from whichever thread
+ * completes it. Template activation does not hold a handler thread while it waits for the vendors.
+ */
 @Slf4j
 public class GrpcService extends CommunicationEnginePlatformGrpc.CommunicationEnginePlatformImplBase {
 
     @Inject
-    private CommunicationEngine communicationEngine;
+    private CommunicationEngineImpl communicationEngine;
 
-    public void optInUser(OptInRequest request, StreamObserver<OptInRespone> responseObserver) {
+    @Inject
+    private GrpcHandlerExecutor grpcHandlerExecutor;
 
-        OptInRespone response = communicationEngine.optInUser(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+    public void optInUser(OptInRequest request, StreamObserver<OptInRespone> responseObserver) {
+        respond(grpcHandlerExecutor.submit("opt_in_user",
+                () -> CompletableFuture.completedFuture(communicationEngine.optInUser(request))), responseObserver);
     }
 
     public void searchMessageAcknowledgements(MessageAcknowledgementRequest request, StreamObserver<MessageAcknowledgementResponse> responseObserver) {
-
-        MessageAcknowledgementResponse response = communicationEngine.searchMessageAcknowledgements(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("search_message_acknowledgements",
+                () -> CompletableFuture.completedFuture(communicationEngine.searchMessageAcknowledgements(request))), responseObserver);
     }
 
     public void addTemplate(AddTemplateRequest request, StreamObserver<AddTemplateResponse> responseObserver) {
-
-        AddTemplateResponse response = communicationEngine.addTemplate(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("add_template",
+                () -> CompletableFuture.completedFuture(communicationEngine.addTemplate(request))), responseObserver);
     }
 
     public void optOutUser(OptOutRequest request, StreamObserver<OptOutResponse> responseObserver) {
-
-        OptOutResponse response = communicationEngine.optOutUser(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("opt_out_user",
+                () -> CompletableFuture.completedFuture(communicationEngine.optOutUser(request))), responseObserver);
     }
 
     public void getAllTemplate(GetAllTemplateRequest request, StreamObserver<GetAllTemplateResponse> responseObserver) {
-        GetAllTemplateResponse response = communicationEngine.getAllTemplate(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("get_all_template",
+                () -> CompletableFuture.completedFuture(communicationEngine.getAllTemplate(request))), responseObserver);
     }
 
-
     public void updateTemplate(TemplateUpdateRequest request, StreamObserver<AddTemplateResponse> responseObserver) {
-        AddTemplateResponse response = communicationEngine.updateTemplate(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("update_template",
+                () -> CompletableFuture.completedFuture(communicationEngine.updateTemplate(request))), responseObserver);
     }
 
     public void activateTemplate(ActivationRequest request, StreamObserver<ActivationResponse> responseObserver) {
-        ActivationResponse response = communicationEngine.activateTemplate(request);
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+        respond(grpcHandlerExecutor.submit("activate_template", () -> communicationEngine.activateTemplateAsync(request,
+                GrpcHandlerExecutor.remainingMillis(ApplicationConfiguration.getInstance().getInt("template.activation.timeout.millis", 7000)))),
+                responseObserver);
+    }
+
+    private static <T> void respond(CompletableFuture<T> response, StreamObserver<T> responseObserver) {
+        response.whenComplete((result, e) -> {
+            if (e != null) {
+                responseObserver.onError(Status.fromThrowable(e).asRuntimeException());
+                return;
+            }
+            responseObserver.onNext(result);
+            responseObserver.onCompleted();
+        });
     }
 }
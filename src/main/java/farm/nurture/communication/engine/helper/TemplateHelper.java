@@ -16,6 +16,9 @@
 
 package farm.nurture.communication.engine.helper;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import farm.nurture.communication.engine.Constants;
@@ -23,11 +26,14 @@ import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.cache.TemplateCache;
 import farm.nurture.communication.engine.cache.TemplateCacheKey;
 import farm.nurture.communication.engine.cache.TemplateCacheValue;
+import farm.nurture.communication.engine.metric.CacheMetrics;
 import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.Language;
 import farm.nurture.core.contracts.communication.engine.Placeholder;
+import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.util.http.NFException;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 
@@ -36,6 +42,7 @@ import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -49,7 +56,40 @@ public class TemplateHelper {
     @Inject
     private LanguageCache languageCache;
 
+    private final Cache<ResolvedTemplateKey, ResolvedTemplate> resolvedTemplateCache = Caffeine.newBuilder()
+            .recordStats()
+            .maximumSize(ApplicationConfiguration.getInstance().getInt("template.resolved.cache.max.size", 10000))
+            .expireAfter(new Expiry<ResolvedTemplateKey, ResolvedTemplate>() {
+                private final long foundTtlNanos = TimeUnit.SECONDS.toNanos(
+                        ApplicationConfiguration.getInstance().getInt("template.resolved.cache.ttl.seconds", 600));
+                private final long notFoundTtlNanos = TimeUnit.SECONDS.toNanos(
+                        ApplicationConfiguration.getInstance().getInt("template.resolved.cache.not.found.ttl.seconds", 30));
+
+                @Override
+                public long expireAfterCreate(ResolvedTemplateKey key, ResolvedTemplate value, long currentTime) {
+                    return value.getValue() == null ? notFoundTtlNanos : foundTtlNanos;
+                }
+
+                @Override
+                public long expireAfterUpdate(ResolvedTemplateKey key, ResolvedTemplate value, long currentTime, long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(ResolvedTemplateKey key, ResolvedTemplate value, long currentTime, long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .build();
+
+    public TemplateHelper() {
+        CacheMetrics.getInstance().addCache("resolved_template", resolvedTemplateCache);
+    }
+
     public String getContent(TemplateCacheValue templateCacheValue, Map<String, String> placeholders) throws IOException {
+        if (templateCacheValue.getPlaceholderTemplate() != null) {
+            return templateCacheValue.getPlaceholderTemplate().render(placeholders);
+        }
         StringWriter writer = new StringWriter();
         templateCacheValue.getCompiledTemplate().execute(writer, placeholders).flush();
         return writer.toString();
@@ -69,6 +109,9 @@ public class TemplateHelper {
     }
 
     public String getTitle(TemplateCacheValue templateCacheValue, Map<String, String> placeholders) throws IOException {
+        if (templateCacheValue.getPlaceholderTitleTemplate() != null) {
+            return templateCacheValue.getPlaceholderTitleTemplate().render(placeholders);
+        }
         StringWriter writer = new StringWriter();
         if (templateCacheValue.getCompiledTitleTemplate() != null) {
             templateCacheValue.getCompiledTitleTemplate().execute(writer, placeholders).flush();
@@ -77,7 +120,32 @@ public class TemplateHelper {
         return StringUtils.EMPTY;
     }
 
+    /**
+     * Resolves the template for the primary language, falling back to the secondary and then the default language.
+     * The outcome of the fallback chain, including a missing template, is cached per (template, primary, secondary)
+     * and resolved again once the template cache changes; missing templates are only remembered for a short TTL.
+     */
     public TemplateCacheValue getTemplateFromNameAndLangId(String templateName, Language primaryLanguage,Language secondaryLanguage) {
+        ResolvedTemplateKey key = new ResolvedTemplateKey(templateName, primaryLanguage == null ? null : primaryLanguage.getId(),
+                secondaryLanguage == null ? null : secondaryLanguage.getId());
+        long version = templateCache.getVersion();
+        ResolvedTemplate resolved = resolvedTemplateCache.getIfPresent(key);
+        if (resolved == null || resolved.getVersion() != version) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_TEMPLATE_CACHE, "resolved_template_miss");
+            resolved = new ResolvedTemplate(resolveTemplate(templateName, primaryLanguage, secondaryLanguage), version);
+            resolvedTemplateCache.put(key, resolved);
+        }
+
+        TemplateCacheValue value = resolved.getValue();
+        if (value == null) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_SEND_COMM_EVENT, "template_not_found", Constants.LABEL_TEMPLATE_LANGUAGE_LIST, templateName, languageCache.getLanguageById(primaryLanguage.getId()).getName());
+            log.error("Unable to find template in database for primaryLanguage : {}, secondaryLanguage : {}, defaultLanguage : {},Template : {}", primaryLanguage,secondaryLanguage, languageCache.getLanguageByCode(DEFAULT_LANGUAGE_CODE),templateName);
+            throw new NFException("Unable to find template for Template : " + templateName + ", language : " + primaryLanguage.getId());
+        }
+        return value;
+    }
+
+    private TemplateCacheValue resolveTemplate(String templateName, Language primaryLanguage,Language secondaryLanguage) {
         TemplateCacheKey cacheKey;
         TemplateCacheValue value;
         if (primaryLanguage!=null) {
@@ -112,14 +180,7 @@ public class TemplateHelper {
 
         log.info("Unable to find template in cache for primaryLanguage : {},secondaryLanguage : {},Template : {}", primaryLanguage,secondaryLanguage, templateName);
         cacheKey = new TemplateCacheKey(templateName, languageCache.getLanguageByCode(DEFAULT_LANGUAGE_CODE).getId());
-        value = templateCache.getCompiledTemplateByCacheKey(cacheKey);
-
-         if (value == null) {
-             metrics.onIncrement(MetricGroupNames.NF_CE_SEND_COMM_EVENT, "template_not_found", Constants.LABEL_TEMPLATE_LANGUAGE_LIST, templateName, languageCache.getLanguageById(primaryLanguage.getId()).getName());
-             log.error("Unable to find template in database for primaryLanguage : {}, secondaryLanguage : {}, defaultLanguage : {},Template : {}", primaryLanguage,secondaryLanguage, languageCache.getLanguageByCode(DEFAULT_LANGUAGE_CODE),templateName);
-             throw new NFException("Unable to find template for Template : " + templateName + ", language : " + primaryLanguage.getId());
-        }
-        return value;
+        return templateCache.getCompiledTemplateByCacheKey(cacheKey);
     }
 
     public TemplateCacheValue getAllTemplateFromNameAndLangId(String templateName, Language language){
@@ -150,4 +211,16 @@ public class TemplateHelper {
         return value.getTemplate().getMetaData();
     }
 
+    @Value
+    private static class ResolvedTemplateKey {
+        String templateName;
+        Short primaryLanguageId;
+        Short secondaryLanguageId;
+    }
+
+    @Value
+    private static class ResolvedTemplate {
+        TemplateCacheValue value;
+        long version;
+    }
 }
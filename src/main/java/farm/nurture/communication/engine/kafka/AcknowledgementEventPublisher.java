@@ -0,0 +1,386 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.kafka;
+
+import com.google.inject.Inject;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes message acknowledgement events without blocking the caller.
+ *
+ * Events are put on a bounded queue and drained by a single thread into a batching, compressing,
+ * idempotent Kafka producer. Delivery callbacks feed the NF_ce_kafka_producer metrics. Events that
+ * cannot be delivered, or that do not fit in the queue, are appended to a local spill file and replayed
+ * once the broker accepts writes again. Failed deliveries are only queued by the producer callback and
+ * written to disk by the spill thread, so a broker outage does not stall the producer's I/O thread.
+ *
+ * Both the failed queue (kafka.ack.publisher.failed.capacity events) and the spill files
+ * (kafka.ack.publisher.spill.max.mb) are bounded, so a long outage drops events, counted as
+ * ack_publisher_dropped, instead of exhausting the heap or the disk.
+ */
+@Slf4j
+public class AcknowledgementEventPublisher {
+
+    private static final String SPILL_FILE_PREFIX = "ack-spill-";
+    private static final String SPILL_FILE_SUFFIX = ".log";
+    private static final int DEFAULT_RETRY_COUNT = 3;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Producer<byte[], byte[]> producer;
+
+    private final BlockingQueue<PendingEvent> queue;
+
+    private final BlockingQueue<PendingEvent> failed;
+
+    private final int drainBatchSize;
+
+    private final Path spillDirectory;
+
+    private final long replayIntervalMillis;
+
+    private final long spillIntervalMillis;
+
+    private final long maxSpillBytes;
+
+    private DataOutputStream spillStream;
+
+    /* Size of the spill files on disk, -1 until counted, guarded by this */
+    private long spilledBytes = -1;
+
+    private volatile long lastFailureMillis = 0;
+
+    private volatile boolean running = false;
+
+    private Thread drainThread;
+
+    private ScheduledExecutorService replayExecutor;
+
+    @Inject
+    public AcknowledgementEventPublisher(Producer<byte[], byte[]> producer) {
+        this(producer, ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.queue.capacity", 10000),
+                ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.drain.batch.size", 500),
+                Paths.get(ApplicationConfiguration.getInstance().get("kafka.ack.publisher.spill.dir", "/tmp/communication-engine/ack-spill")),
+                ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.replay.interval.seconds", 30) * 1000L,
+                ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.spill.interval.millis", 200),
+                ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.failed.capacity", 10000),
+                ApplicationConfiguration.getInstance().getInt("kafka.ack.publisher.spill.max.mb", 256) * 1024L * 1024L);
+    }
+
+    AcknowledgementEventPublisher(Producer<byte[], byte[]> producer, int queueCapacity, int drainBatchSize,
+                                  Path spillDirectory, long replayIntervalMillis, long spillIntervalMillis,
+                                  int failedCapacity, long maxSpillBytes) {
+        this.producer = producer;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.failed = new LinkedBlockingQueue<>(failedCapacity);
+        this.drainBatchSize = drainBatchSize;
+        this.spillDirectory = spillDirectory;
+        this.replayIntervalMillis = replayIntervalMillis;
+        this.spillIntervalMillis = spillIntervalMillis;
+        this.maxSpillBytes = maxSpillBytes;
+    }
+
+    public synchronized void init() {
+        if (running) return;
+        running = true;
+        drainThread = new Thread(this::drain, "ack-event-publisher");
+        drainThread.setDaemon(true);
+        drainThread.start();
+
+        replayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ack-event-spill-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replayExecutor.scheduleWithFixedDelay(this::spillFailed, spillIntervalMillis, spillIntervalMillis, TimeUnit.MILLISECONDS);
+        replayExecutor.scheduleWithFixedDelay(this::replaySpilled, replayIntervalMillis, replayIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close));
+        log.info("AcknowledgementEventPublisher started with spill directory : {}", spillDirectory);
+    }
+
+    /**
+     * Hands the event over for publishing. Returns false only when the event could neither be queued nor
+     * spilled to disk, i.e. when it is lost.
+     */
+    public boolean publish(String topic, byte[] partitionKey, byte[] message) {
+        PendingEvent event = new PendingEvent(topic, partitionKey, message);
+        if (queue.offer(event)) {
+            return true;
+        }
+        metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_queue_full");
+        return spill(event);
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    int pendingFailed() {
+        return failed.size();
+    }
+
+    private void drain() {
+        List<PendingEvent> batch = new ArrayList<>(drainBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, drainBatchSize - 1);
+                for (PendingEvent event : batch) {
+                    send(event);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Error in draining acknowledgement events", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void send(PendingEvent event) {
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publish");
+        try {
+            producer.send(event.toRecord(), (metadata, exception) -> onCompletion(event, tracker, exception));
+        } catch (Exception e) {
+            onCompletion(event, tracker, e);
+        }
+    }
+
+    private void onCompletion(PendingEvent event, MetricTracker tracker, Exception exception) {
+        tracker.stop(exception == null);
+        if (exception != null) {
+            lastFailureMillis = System.currentTimeMillis();
+            log.error("Unable to publish acknowledgement event to topic : {}", event.topic, exception);
+            metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "send_message_akg_event_failed");
+            if (!failed.offer(event)) {
+                log.error("Failed acknowledgement event queue is full, event for topic : {} is dropped", event.topic);
+                metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_dropped");
+            }
+        }
+    }
+
+    /**
+     * Writes the deliveries that failed since the last run to the spill file. Runs on the spill thread only.
+     */
+    void spillFailed() {
+        PendingEvent event;
+        while ((event = failed.poll()) != null) {
+            spill(event);
+        }
+    }
+
+    synchronized boolean spill(PendingEvent event) {
+        if (spilledBytes() >= maxSpillBytes) {
+            log.error("Acknowledgement spill files are full, event for topic : {} is dropped", event.topic);
+            metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_dropped");
+            return false;
+        }
+        try {
+            if (spillStream == null) {
+                Files.createDirectories(spillDirectory);
+                Path file = spillDirectory.resolve(SPILL_FILE_PREFIX + System.nanoTime() + SPILL_FILE_SUFFIX);
+                spillStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            }
+            int written = spillStream.size();
+            event.writeTo(spillStream);
+            spillStream.flush();
+            spilledBytes += spillStream.size() - written;
+            metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_spilled");
+            return true;
+
+        } catch (IOException e) {
+            log.error("Unable to spill acknowledgement event for topic : {}, event is dropped", event.topic, e);
+            metrics.onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_dropped");
+            return false;
+        }
+    }
+
+    private long spilledBytes() {
+        if (spilledBytes < 0) {
+            long bytes = 0;
+            try {
+                for (Path file : spillFiles()) {
+                    bytes += Files.size(file);
+                }
+            } catch (IOException e) {
+                log.error("Unable to size acknowledgement spill directory : {}", spillDirectory, e);
+            }
+            spilledBytes = bytes;
+        }
+        return spilledBytes;
+    }
+
+    private List<Path> spillFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(spillDirectory)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(spillDirectory, SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * Re-publishes spilled events once no delivery has failed for a full replay interval. The current spill
+     * file is closed first, so events failing again during the replay go to a new file.
+     */
+    void replaySpilled() {
+        spillFailed();
+        if (System.currentTimeMillis() - lastFailureMillis < replayIntervalMillis) return;
+        List<Path> files;
+        synchronized (this) {
+            closeSpillStream();
+            try {
+                files = spillFiles();
+            } catch (IOException e) {
+                log.error("Unable to list acknowledgement spill directory : {}", spillDirectory, e);
+                return;
+            }
+        }
+        files.sort(null);
+        for (Path file : files) {
+            int replayed = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                PendingEvent event;
+                while ((event = PendingEvent.readFrom(in)) != null) {
+                    send(event);
+                    replayed++;
+                }
+            } catch (IOException e) {
+                log.error("Stopped replaying truncated acknowledgement spill file : {} after {} events", file, replayed, e);
+            }
+            synchronized (this) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.error("Unable to delete replayed acknowledgement spill file : {}", file, e);
+                }
+                spilledBytes = -1;
+            }
+            metrics.onIncrementBy(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "ack_publisher_replayed", replayed);
+            log.info("Replayed {} acknowledgement events from spill file : {}", replayed, file);
+        }
+    }
+
+    public void close() {
+        running = false;
+        try {
+            if (drainThread != null) drainThread.join(TimeUnit.SECONDS.toMillis(10));
+            if (replayExecutor != null) replayExecutor.shutdownNow();
+            producer.flush();
+            producer.close();
+        } catch (Exception e) {
+            log.error("Error in closing AcknowledgementEventPublisher", e);
+        }
+        spillFailed();
+        PendingEvent event;
+        while ((event = queue.poll()) != null) {
+            spill(event);
+        }
+        synchronized (this) {
+            closeSpillStream();
+        }
+    }
+
+    private void closeSpillStream() {
+        if (spillStream == null) return;
+        try {
+            spillStream.close();
+        } catch (IOException e) {
+            log.error("Unable to close acknowledgement spill file", e);
+        }
+        spillStream = null;
+    }
+
+    static final class PendingEvent {
+        private final String topic;
+        private final byte[] partitionKey;
+        private final byte[] message;
+
+        PendingEvent(String topic, byte[] partitionKey, byte[] message) {
+            this.topic = topic;
+            this.partitionKey = partitionKey;
+            this.message = message;
+        }
+
+        private ProducerRecord<byte[], byte[]> toRecord() {
+            RecordHeaders headers = new RecordHeaders();
+            headers.add("serialization", topic.getBytes());
+            headers.add("retry", String.valueOf(DEFAULT_RETRY_COUNT).getBytes());
+            if (partitionKey != null) {
+                headers.add("partitionKey", partitionKey);
+            }
+            return new ProducerRecord<>(topic, null, System.currentTimeMillis(), partitionKey, message, headers);
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeUTF(topic);
+            out.writeInt(partitionKey == null ? -1 : partitionKey.length);
+            if (partitionKey != null) out.write(partitionKey);
+            out.writeInt(message.length);
+            out.write(message);
+        }
+
+        private static PendingEvent readFrom(DataInputStream in) throws IOException {
+            String topic;
+            try {
+                topic = in.readUTF();
+            } catch (EOFException e) {
+                return null;
+            }
+            int keyLength = in.readInt();
+            byte[] partitionKey = null;
+            if (keyLength >= 0) {
+                partitionKey = new byte[keyLength];
+                in.readFully(partitionKey);
+            }
+            byte[] message = new byte[in.readInt()];
+            in.readFully(message);
+            return new PendingEvent(topic, partitionKey, message);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.kafka;
+
+import com.google.inject.Inject;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.MessageAcknowledgementOutbox;
+import farm.nurture.communication.engine.repository.MessageAcknowledgementOutboxRepository;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.net.InetAddress;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tails message_acknowledgement_outbox and publishes the rows to Kafka in id order, keyed by reference id.
+ *
+ * A row is marked published only after the broker acknowledged it and every row before it in the batch,
+ * so a failure leaves the remaining rows for the next run (at-least-once, order preserved per reference id).
+ * Only the instance holding the relay lease publishes.
+ */
+@Slf4j
+public class MessageAcknowledgementOutboxRelay {
+
+    private static final int DEFAULT_RETRY_COUNT = 3;
+
+    @Inject
+    private MessageAcknowledgementOutboxRepository outboxRepository;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Producer<byte[], byte[]> producer;
+
+    private final String owner;
+
+    private int batchSize;
+
+    private int leaseSeconds;
+
+    private long sendTimeoutMillis;
+
+    private ScheduledExecutorService relayExecutor;
+
+    @Inject
+    public MessageAcknowledgementOutboxRelay(Producer<byte[], byte[]> producer) {
+        this.producer = producer;
+        this.owner = ownerId();
+    }
+
+    MessageAcknowledgementOutboxRelay(Producer<byte[], byte[]> producer, MessageAcknowledgementOutboxRepository outboxRepository,
+                                      int batchSize, int leaseSeconds, long sendTimeoutMillis) {
+        this(producer);
+        this.outboxRepository = outboxRepository;
+        this.batchSize = batchSize;
+        this.leaseSeconds = leaseSeconds;
+        this.sendTimeoutMillis = sendTimeoutMillis;
+    }
+
+    public void init() {
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        if (!config.getBoolean("kafka.ack.outbox.enabled", false)) {
+            log.info("MessageAcknowledgementOutboxRelay is disabled");
+            return;
+        }
+        batchSize = config.getInt("kafka.ack.outbox.relay.batch.size", 500);
+        leaseSeconds = config.getInt("kafka.ack.outbox.relay.lease.seconds", 30);
+        sendTimeoutMillis = config.getInt("kafka.ack.outbox.relay.send.timeout.ms", 30000);
+        int pollIntervalMillis = config.getInt("kafka.ack.outbox.relay.poll.interval.ms", 200);
+        int retentionHours = config.getInt("kafka.ack.outbox.retention.hours", 24);
+
+        relayExecutor = Executors.newScheduledThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "ack-outbox-relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relayExecutor.scheduleWithFixedDelay(this::relay, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        relayExecutor.scheduleWithFixedDelay(() -> purge(retentionHours), 1, 1, TimeUnit.HOURS);
+        log.info("MessageAcknowledgementOutboxRelay started with owner : {}", owner);
+    }
+
+    void relay() {
+        try {
+            if (!outboxRepository.acquireLease(MessageAcknowledgementOutboxRepository.ACKNOWLEDGEMENT_RELAY_LEASE, owner, leaseSeconds)) {
+                return;
+            }
+            while (true) {
+                List<MessageAcknowledgementOutbox> batch = outboxRepository.getUnpublished(batchSize);
+                if (batch == null || batch.isEmpty()) return;
+                int published = publish(batch);
+                if (published < batch.size() || batch.size() < batchSize) return;
+            }
+        } catch (Exception e) {
+            log.error("Error in relaying message acknowledgement outbox", e);
+        }
+    }
+
+    private int publish(List<MessageAcknowledgementOutbox> batch) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_ACK_OUTBOX_RELAY, "publish_batch");
+        List<Future<RecordMetadata>> futures = new ArrayList<>(batch.size());
+        List<Long> publishedIds = new ArrayList<>(batch.size());
+        try {
+            for (MessageAcknowledgementOutbox outbox : batch) {
+                if (outbox == null) break;
+                futures.add(producer.send(toRecord(outbox)));
+            }
+            /* Waits on this batch only, the producer is shared with the async acknowledgement publisher */
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get(sendTimeoutMillis, TimeUnit.MILLISECONDS);
+                    publishedIds.add(batch.get(i).getId());
+                } catch (Exception e) {
+                    log.error("Unable to publish message acknowledgement outbox id : {}, will retry", batch.get(i).getId(), e);
+                    metrics.onIncrement(MetricGroupNames.NF_CE_ACK_OUTBOX_RELAY, "publish_failed");
+                    break;
+                }
+            }
+            success = publishedIds.size() == batch.size();
+
+        } catch (Exception e) {
+            log.error("Error in publishing message acknowledgement outbox batch", e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        if (!outboxRepository.markPublished(publishedIds)) {
+            return 0;
+        }
+        metrics.onIncrementBy(MetricGroupNames.NF_CE_ACK_OUTBOX_RELAY, "published", publishedIds.size());
+        return publishedIds.size();
+    }
+
+    private void purge(int retentionHours) {
+        Timestamp publishedBefore = new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours));
+        int deleted;
+        do {
+            deleted = outboxRepository.deletePublishedBefore(publishedBefore, 10000);
+        } while (deleted >= 10000);
+    }
+
+    private ProducerRecord<byte[], byte[]> toRecord(MessageAcknowledgementOutbox outbox) {
+        byte[] partitionKey = outbox.getReferenceId() == null ? null : outbox.getReferenceId().getBytes();
+        RecordHeaders headers = new RecordHeaders();
+        headers.add("serialization", outbox.getTopic().getBytes());
+        headers.add("retry", String.valueOf(DEFAULT_RETRY_COUNT).getBytes());
+        if (partitionKey != null) {
+            headers.add("partitionKey", partitionKey);
+        }
+        return new ProducerRecord<>(outbox.getTopic(), null, System.currentTimeMillis(), partitionKey, outbox.getPayload(), headers);
+    }
+
+    private static String ownerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.communication.engine.event.TemplateChangeEvent;
+import farm.nurture.communication.engine.event.TemplateChangeEventHandler;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.models.Template;
+import farm.nurture.communication.engine.repository.TemplateRepository;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import farm.nurture.kafka.Event;
+import farm.nurture.kafka.Producer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Tells every replica that a template row changed, so each one recompiles just that template instead of
+ * waiting for its periodic refresh. The change is applied to the local {@link TemplateCache} right away and
+ * published on a compacted topic keyed by name and language, consumed by {@link TemplateChangeEventHandler}.
+ */
+@Slf4j
+@Singleton
+public class TemplateChangePublisher {
+
+    @Inject
+    private Producer producer;
+
+    @Inject
+    private TemplateRepository templateRepository;
+
+    @Inject
+    private TemplateCache templateCache;
+
+    @Inject
+    private ObjectMapper mapper;
+
+    public void publish(String name, Short languageId) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_TEMPLATE_CHANGE, "publish");
+        try {
+            Template template = templateRepository.getAllTemplateByNameAndLanguage(name, languageId);
+            if (template == null) {
+                log.error("Unable to find changed template : {}, languageId : {}", name, languageId);
+                return;
+            }
+            templateCache.applyChange(template);
+
+            ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+            if (!config.getBoolean("kafka.template.change.enabled", false)) {
+                success = true;
+                return;
+            }
+            long version = template.getUpdatedAt() == null ? System.currentTimeMillis() : template.getUpdatedAt().getTime();
+            TemplateChangeEvent changeEvent = new TemplateChangeEvent(name, languageId, version);
+            String key = name + ":" + languageId;
+            producer.send(config.get("kafka.template.change.topic", "communication_template_changes"),
+                    new Event<>(key.getBytes(StandardCharsets.UTF_8), mapper.writeValueAsBytes(changeEvent)));
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in publishing template change for template : {}, languageId : {}", name, languageId, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+    }
+}
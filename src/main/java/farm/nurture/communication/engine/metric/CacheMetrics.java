@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.metric;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+import io.prometheus.client.SummaryMetricFamily;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports the statistics of every registered Caffeine cache to the Prometheus registry served by the
+ * health info server. Caches must be built with {@code recordStats()}, otherwise all counters stay at zero.
+ *
+ * Values are read from {@link Cache#stats()} at scrape time, so nothing is recorded on the lookup path
+ * beyond what Caffeine already does. Caffeine only keeps the total load time, which is why load latency
+ * is exported as a summary (count and sum) rather than a histogram.
+ */
+public class CacheMetrics extends NamedSourceCollector<Cache<?, ?>> {
+
+    private static final String PREFIX = "NF_CE_cache";
+
+    private static volatile CacheMetrics cacheMetrics = null;
+
+    CacheMetrics() {
+        super("cache");
+    }
+
+    public static CacheMetrics getInstance() {
+        if (cacheMetrics == null) {
+            synchronized (CacheMetrics.class) {
+                if (cacheMetrics == null) {
+                    cacheMetrics = new CacheMetrics();
+                }
+            }
+        }
+        return cacheMetrics;
+    }
+
+    public void addCache(String name, Cache<?, ?> cache) {
+        addSource(name, cache);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        CounterMetricFamily hits = new CounterMetricFamily(PREFIX + "_hit_total", "Cache hits", labels());
+        CounterMetricFamily misses = new CounterMetricFamily(PREFIX + "_miss_total", "Cache misses", labels());
+        CounterMetricFamily requests = new CounterMetricFamily(PREFIX + "_requests_total", "Cache lookups", labels());
+        CounterMetricFamily evictions = new CounterMetricFamily(PREFIX + "_eviction_total", "Cache evictions", labels());
+        CounterMetricFamily loadFailures = new CounterMetricFamily(PREFIX + "_load_failure_total",
+                "Cache loads that failed or returned null", labels());
+        SummaryMetricFamily loadDuration = new SummaryMetricFamily(PREFIX + "_load_duration_seconds",
+                "Time spent loading cache values", labels());
+        GaugeMetricFamily size = new GaugeMetricFamily(PREFIX + "_estimated_size", "Estimated cache size", labels());
+
+        for (Map.Entry<String, Cache<?, ?>> entry : sources().entrySet()) {
+            List<String> labelValues = Collections.singletonList(entry.getKey());
+            Cache<?, ?> cache = entry.getValue();
+            CacheStats stats = cache.stats();
+
+            hits.addMetric(labelValues, stats.hitCount());
+            misses.addMetric(labelValues, stats.missCount());
+            requests.addMetric(labelValues, stats.requestCount());
+            evictions.addMetric(labelValues, stats.evictionCount());
+            loadFailures.addMetric(labelValues, stats.loadFailureCount());
+            loadDuration.addMetric(labelValues, stats.loadCount(), stats.totalLoadTime() / Collector.NANOSECONDS_PER_SECOND);
+            size.addMetric(labelValues, cache.estimatedSize());
+        }
+
+        List<MetricFamilySamples> samples = new ArrayList<>(7);
+        samples.add(hits);
+        samples.add(misses);
+        samples.add(requests);
+        samples.add(evictions);
+        samples.add(loadFailures);
+        samples.add(loadDuration);
+        samples.add(size);
+        return samples;
+    }
+}
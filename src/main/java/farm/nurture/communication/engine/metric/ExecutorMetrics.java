@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Exports the saturation of every registered thread pool to the Prometheus registry served by the health
+ * info server: busy threads, pool size, queued tasks and the space left in the queue. Values are read from
+ * the pool at scrape time.
+ */
+public class ExecutorMetrics extends NamedSourceCollector<ThreadPoolExecutor> {
+
+    private static final String PREFIX = "NF_CE_executor";
+
+    private static volatile ExecutorMetrics executorMetrics = null;
+
+    ExecutorMetrics() {
+        super("executor");
+    }
+
+    public static ExecutorMetrics getInstance() {
+        if (executorMetrics == null) {
+            synchronized (ExecutorMetrics.class) {
+                if (executorMetrics == null) {
+                    executorMetrics = new ExecutorMetrics();
+                }
+            }
+        }
+        return executorMetrics;
+    }
+
+    public void addExecutor(String name, ThreadPoolExecutor executor) {
+        addSource(name, executor);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily active = new GaugeMetricFamily(PREFIX + "_active", "Threads running a task", labels());
+        GaugeMetricFamily poolSize = new GaugeMetricFamily(PREFIX + "_pool_size", "Threads in the pool", labels());
+        GaugeMetricFamily queued = new GaugeMetricFamily(PREFIX + "_queued", "Tasks waiting for a thread", labels());
+        GaugeMetricFamily remaining = new GaugeMetricFamily(PREFIX + "_queue_remaining", "Tasks the queue can still take", labels());
+        CounterMetricFamily completed = new CounterMetricFamily(PREFIX + "_completed_total", "Tasks completed", labels());
+
+        for (Map.Entry<String, ThreadPoolExecutor> entry : sources().entrySet()) {
+            List<String> labelValues = Collections.singletonList(entry.getKey());
+            ThreadPoolExecutor executor = entry.getValue();
+            active.addMetric(labelValues, executor.getActiveCount());
+            poolSize.addMetric(labelValues, executor.getPoolSize());
+            queued.addMetric(labelValues, executor.getQueue().size());
+            remaining.addMetric(labelValues, executor.getQueue().remainingCapacity());
+            completed.addMetric(labelValues, executor.getCompletedTaskCount());
+        }
+
+        List<MetricFamilySamples> samples = new ArrayList<>(5);
+        samples.add(active);
+        samples.add(poolSize);
+        samples.add(queued);
+        samples.add(remaining);
+        samples.add(completed);
+        return samples;
+    }
+}
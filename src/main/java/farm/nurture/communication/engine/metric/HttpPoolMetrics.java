@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.GaugeMetricFamily;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exports the state of every registered HTTP connection pool to the Prometheus registry served by the
+ * health info server: connections leased, available, the pool limit and requests waiting for a lease.
+ * Values are read from the pool at scrape time.
+ */
+public class HttpPoolMetrics extends NamedSourceCollector<PoolingNHttpClientConnectionManager> {
+
+    private static final String PREFIX = "NF_CE_http_pool";
+
+    private static volatile HttpPoolMetrics httpPoolMetrics = null;
+
+    HttpPoolMetrics() {
+        super("pool");
+    }
+
+    public static HttpPoolMetrics getInstance() {
+        if (httpPoolMetrics == null) {
+            synchronized (HttpPoolMetrics.class) {
+                if (httpPoolMetrics == null) {
+                    httpPoolMetrics = new HttpPoolMetrics();
+                }
+            }
+        }
+        return httpPoolMetrics;
+    }
+
+    public void addPool(String name, PoolingNHttpClientConnectionManager connectionManager) {
+        addSource(name, connectionManager);
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily leased = new GaugeMetricFamily(PREFIX + "_leased", "Connections leased to requests", labels());
+        GaugeMetricFamily pending = new GaugeMetricFamily(PREFIX + "_pending", "Requests waiting for a connection lease", labels());
+        GaugeMetricFamily available = new GaugeMetricFamily(PREFIX + "_available", "Idle connections kept alive", labels());
+        GaugeMetricFamily max = new GaugeMetricFamily(PREFIX + "_max", "Maximum connections of the pool", labels());
+
+        for (Map.Entry<String, PoolingNHttpClientConnectionManager> entry : sources().entrySet()) {
+            List<String> labelValues = Collections.singletonList(entry.getKey());
+            PoolStats stats = entry.getValue().getTotalStats();
+            leased.addMetric(labelValues, stats.getLeased());
+            pending.addMetric(labelValues, stats.getPending());
+            available.addMetric(labelValues, stats.getAvailable());
+            max.addMetric(labelValues, stats.getMax());
+        }
+
+        List<MetricFamilySamples> samples = new ArrayList<>(4);
+        samples.add(leased);
+        samples.add(pending);
+        samples.add(available);
+        samples.add(max);
+        return samples;
+    }
+}
@@ -38,10 +38,26 @@ public class MetricGroupNames {
     public static final String NF_CE_MOBILE_APP_DETAILS_READ_BASE = "NF_CE_mobile_app_details_read_base";
     public static final String NF_CE_ACTOR_ATTRIBUTES_READ_BASE = "NF_CE_actor_attributes_read_base";
     public static final String NF_CE_WHATSAPP_USERS_READ_BASE = "NF_CE_whatsapp_users_read_base";
+    public static final String NF_CE_MESSAGE_ACKNOWLEDGEMENT_OUTBOX_READ_BASE = "NF_CE_message_acknowledgement_outbox_read_base";
 
     public static final String NF_CE_SMS_SERVICE_CALLBACK_STATUS = "NF_CE_sms_service_callback_status";
     public static final String NF_CE_WHATSAPP_SERVICE_CALLBACK_STATUS = "NF_CE_whatsApp_service_callback_status";
+    public static final String NF_CE_TEMPLATE_CACHE = "NF_CE_template_cache";
+    public static final String NF_CE_TEMPLATE_CHANGE = "NF_CE_template_change";
+    public static final String NF_CE_REFERENCE_DATA_SNAPSHOT = "NF_CE_reference_data_snapshot";
+    public static final String NF_CE_ACTOR_COMM_DETAILS_CACHE = "NF_CE_actor_comm_details_cache";
+    public static final String NF_CE_ACTOR_APP_TOKEN_CACHE = "NF_CE_actor_app_token_cache";
+    public static final String NF_CE_VENDOR_ROUTING = "NF_CE_vendor_routing";
+    public static final String NF_CE_VENDOR_RATE_LIMIT = "NF_CE_vendor_rate_limit";
+    public static final String NF_CE_RETRY = "NF_CE_retry";
+    public static final String NF_CE_SMS_HEDGE = "NF_CE_sms_hedge";
+    public static final String NF_CE_ATTACHMENT_CACHE = "NF_CE_attachment_cache";
+    public static final String NF_CE_ACKNOWLEDGEMENT_COMPLETIONS = "NF_CE_acknowledgement_completions";
+    public static final String NF_CE_CALLBACK_EXECUTOR = "NF_CE_callback_executor";
+    public static final String NF_CE_GRPC = "NF_CE_grpc";
+    public static final String NF_CE_WHATSAPP_USERS_INDEX = "NF_CE_whatsapp_users_index";
     public static final String NF_CE_KAFKA_PRODUCER = "NF_ce_kafka_producer";
+    public static final String NF_CE_ACK_OUTBOX_RELAY = "NF_CE_ack_outbox_relay";
 
     public static final String NF_CE_TEMPLATE_MANAGEMENT_SERVICE = "NF_CE_template_management_service";
 }
@@ -0,0 +1,72 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.Collector;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Base of the collectors that export a set of named sources, e.g. caches, connection pools or executors, to the
+ * Prometheus registry served by the health info server. Samples carry the source name as their only label and
+ * are read from the sources at scrape time.
+ */
+@Slf4j
+public abstract class NamedSourceCollector<T> extends Collector {
+
+    private final List<String> labels;
+
+    private final Map<String, T> sources = new ConcurrentHashMap<>();
+
+    private volatile boolean registered = false;
+
+    protected NamedSourceCollector(String label) {
+        this.labels = Collections.singletonList(label);
+    }
+
+    /**
+     * Adds a source under the given name, replacing any source registered earlier with the same name.
+     */
+    protected void addSource(String name, T source) {
+        sources.put(name, source);
+    }
+
+    protected Map<String, T> sources() {
+        return sources;
+    }
+
+    protected List<String> labels() {
+        return labels;
+    }
+
+    /**
+     * Registers this collector with the default Prometheus registry, once.
+     */
+    public synchronized void start() {
+        if (registered) return;
+        try {
+            register();
+            registered = true;
+        } catch (Exception e) {
+            log.error("Error in registering {} collector", getClass().getSimpleName(), e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.models;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+
+import java.sql.Timestamp;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true, exclude = "payload")
+@NoArgsConstructor
+@SuperBuilder
+public class MessageAcknowledgementOutbox extends BaseModel<Long> {
+
+    private String referenceId;
+
+    private String topic;
+
+    private byte[] payload;
+
+    private Timestamp publishedAt;
+}
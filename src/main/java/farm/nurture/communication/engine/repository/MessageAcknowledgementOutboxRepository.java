@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.repository;
+
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.dao.MessageAcknowledgementOutboxReadBase;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.MetricTracker;
+import farm.nurture.communication.engine.models.MessageAcknowledgementOutbox;
+import farm.nurture.laminar.core.io.sql.dao.WriteBase;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Slf4j
+@Singleton
+public class MessageAcknowledgementOutboxRepository {
+
+    public static final String ACKNOWLEDGEMENT_RELAY_LEASE = "message_acknowledgement_outbox";
+
+    private static final String insertOutboxSql = "INSERT INTO message_acknowledgement_outbox(reference_id, topic, payload) VALUES(?, ?, ?)";
+
+    private static final String getUnpublishedSql = "SELECT * FROM message_acknowledgement_outbox WHERE published_at IS NULL ORDER BY id LIMIT ?";
+
+    private static final String markPublishedSql = "UPDATE message_acknowledgement_outbox SET published_at = now() WHERE id IN (";
+
+    private static final String deletePublishedSql = "DELETE FROM message_acknowledgement_outbox WHERE published_at < ? LIMIT ?";
+
+    private static final String acquireLeaseSql = "UPDATE outbox_relay_leases SET owner = ?, lease_until = DATE_ADD(now(), INTERVAL ? SECOND) " +
+            "WHERE name = ? AND (owner = ? OR lease_until IS NULL OR lease_until < now())";
+
+    /**
+     * Adds an outbox row using the caller's WriteBase, so it commits or rolls back together with the
+     * acknowledgement state change made in the same transaction.
+     */
+    public void insert(WriteBase writeBase, String referenceId, String topic, byte[] payload) throws SQLException {
+        writeBase.insert(insertOutboxSql, Arrays.asList(referenceId, topic, payload));
+    }
+
+    public List<MessageAcknowledgementOutbox> getUnpublished(int limit) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "select_unpublished_message_acknowledgement_outbox");
+        MessageAcknowledgementOutboxReadBase readBase = new MessageAcknowledgementOutboxReadBase();
+        List<MessageAcknowledgementOutbox> outboxes = null;
+        try {
+            outboxes = readBase.execute(getUnpublishedSql, Arrays.asList(limit).toArray());
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in fetching unpublished MessageAcknowledgementOutbox, limit : {}", limit, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return outboxes;
+    }
+
+    public boolean markPublished(List<Long> ids) {
+        if (ids.isEmpty()) return true;
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "update_message_acknowledgement_outbox_published");
+        StringBuilder query = new StringBuilder(markPublishedSql);
+        for (int i = 0; i < ids.size(); i++) {
+            query.append(i == 0 ? "?" : ",?");
+        }
+        query.append(")");
+        try {
+            WriteBase writeBase = new WriteBase();
+            writeBase.execute(query.toString(), new ArrayList<Object>(ids));
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in marking MessageAcknowledgementOutbox published for ids : {}", ids, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return success;
+    }
+
+    public int deletePublishedBefore(Timestamp publishedBefore, int limit) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "delete_message_acknowledgement_outbox_published");
+        int deleted = 0;
+        try {
+            WriteBase writeBase = new WriteBase();
+            deleted = writeBase.execute(deletePublishedSql, Arrays.asList(publishedBefore, limit));
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in deleting MessageAcknowledgementOutbox published before : {}", publishedBefore, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return deleted;
+    }
+
+    /**
+     * Takes or extends the named relay lease for the given owner. Only the lease holder relays the outbox,
+     * which keeps events of a reference id in commit order across instances.
+     */
+    public boolean acquireLease(String name, String owner, int leaseSeconds) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "update_outbox_relay_lease");
+        boolean acquired = false;
+        try {
+            WriteBase writeBase = new WriteBase();
+            acquired = writeBase.execute(acquireLeaseSql, Arrays.asList(owner, leaseSeconds, name, owner)) > 0;
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in acquiring outbox relay lease : {} for owner : {}", name, owner, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return acquired;
+    }
+}
@@ -16,17 +16,13 @@
 
 package farm.nurture.communication.engine.repository;
 
-import com.github.rholder.retry.Retryer;
-import com.github.rholder.retry.RetryerBuilder;
-import com.github.rholder.retry.StopStrategies;
-import com.github.rholder.retry.WaitStrategies;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.dao.MessageAcknowledgementReadBase;
 import farm.nurture.communication.engine.dto.CommunicationServiceCallbackRequest;
 import farm.nurture.communication.engine.helper.Utils;
-import farm.nurture.communication.engine.kafka.KafkaProducerWrapperService;
+import farm.nurture.communication.engine.kafka.AcknowledgementEventPublisher;
 import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.metric.Metrics;
@@ -40,21 +36,23 @@ import farm.nurture.laminar.core.io.sql.dao.WriteBase;
 import farm.nurture.util.serializer.Serializer;
 import lombok.extern.slf4j.Slf4j;
 
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.*;
-import java.util.concurrent.Callable;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Singleton
 public class MessageAcknowledgementRepository {
 
     @Inject
-    private KafkaProducerWrapperService kafkaProducerWrapperService;
+    private AcknowledgementEventPublisher acknowledgementEventPublisher;
+
+    @Inject
+    private MessageAcknowledgementOutboxRepository outboxRepository;
 
     private static final String partitionPlaceHolder = "@partition@";
 
@@ -206,11 +204,13 @@ public class MessageAcknowledgementRepository {
             String query = updateMessageAcknowledgementVenodrDeliverySql.replace(partitionPlaceHolder, "p"+responseObject.messageAcknowledgement.getCreatedDate().toString().replace("-",""));
 
             if (responseObject.messageAcknowledgement != null) {
-                writeBase.execute(query, Arrays.asList(newState.toString(), vendorDeliveryTime, vendorMessageId, attributes, referenceId, communicationChannel,responseObject.messageAcknowledgement.getVersion()));
                 responseObject.messageAcknowledgement.setAttributes(existingAttributes);
+                MessageAcknowledgement acknowledgementEvent = null;
                 if(newState!= MessageAcknowledgement.State.CUSTOMER_DELIVERED && newState!= MessageAcknowledgement.State.VENDOR_DELIVERED) {
-                    sendEventToProducer(getAcknowledgement(responseObject.messageAcknowledgement, null, newState, null, vendorDeliveryTime));
+                    acknowledgementEvent = getAcknowledgement(responseObject.messageAcknowledgement, null, newState, null, vendorDeliveryTime);
                 }
+                executeWithAcknowledgementEvent(writeBase, query, Arrays.asList(newState.toString(), vendorDeliveryTime, vendorMessageId, attributes,
+                        referenceId, communicationChannel, responseObject.messageAcknowledgement.getVersion()), acknowledgementEvent);
             }
             success = true;
 
@@ -226,6 +226,22 @@ public class MessageAcknowledgementRepository {
     public boolean updateMessageAcknowledgementActorDelivery(MessageAcknowledgement.State newState, Timestamp actorDeliveryTime,
                                                              String communicationChannel, CommunicationServiceCallbackRequest request,
                                                              Map<String, Object> map, int version) {
+        return updateMessageAcknowledgementActorDelivery(newState, actorDeliveryTime, communicationChannel, request, map, version, null);
+    }
+
+    /**
+     * Same as above, additionally publishing acknowledgementEvent (when not null) together with the state change.
+     * The event is published even when the update fails, as the callback service always did: with the outbox it
+     * is then written to the outbox on its own.
+     */
+    public boolean updateMessageAcknowledgementActorDelivery(MessageAcknowledgement.State newState, Timestamp actorDeliveryTime,
+                                                             String communicationChannel, CommunicationServiceCallbackRequest request,
+                                                             Map<String, Object> map, int version, MessageAcknowledgement acknowledgementEvent) {
+        if (acknowledgementEvent != null && !isOutboxEnabled()) {
+            boolean updated = updateMessageAcknowledgementActorDelivery(newState, actorDeliveryTime, communicationChannel, request, map, version, null);
+            sendEventToProducer(acknowledgementEvent);
+            return updated;
+        }
         boolean success = false;
         Map<String, Object> attributeValueMap = null;
         if (map != null) attributeValueMap = new HashMap<>(map);
@@ -238,13 +254,14 @@ public class MessageAcknowledgementRepository {
 
         try {
             WriteBase writeBase = new WriteBase();
-            writeBase.execute(updateMessageAcknowledgementActorDeliverySql, Arrays.asList(newState.toString(), actorDeliveryTime,
+            executeWithAcknowledgementEvent(writeBase, updateMessageAcknowledgementActorDeliverySql, Arrays.asList(newState.toString(), actorDeliveryTime,
                     Serializer.DEFAULT_JSON_SERIALIZER.serialize(attributeValueMap), communicationChannel,
-                    request.getVendorName(), request.getExternalId(), version));
+                    request.getVendorName(), request.getExternalId(), version), acknowledgementEvent);
             success = true;
 
         } catch (Exception e) {
             log.error("Error in updating MessageAcknowledgement actor delivery, vendormessageId : {}", request.getExternalId(), e);
+            if (acknowledgementEvent != null) insertAcknowledgementEvent(acknowledgementEvent);
 
         } finally {
             tracker.stop(success);
@@ -252,6 +269,56 @@ public class MessageAcknowledgementRepository {
         return success;
     }
 
+    /**
+     * Runs the acknowledgement state change and, when the outbox is enabled, writes acknowledgementEvent to
+     * message_acknowledgement_outbox in the same transaction; MessageAcknowledgementOutboxRelay publishes it
+     * from there. Without the outbox the event is handed to the async publisher after the update. Either way the
+     * event goes out whether or not the update matched a row.
+     */
+    private void executeWithAcknowledgementEvent(WriteBase writeBase, String query, List<Object> params,
+                                                 MessageAcknowledgement acknowledgementEvent) throws SQLException {
+        if (acknowledgementEvent == null) {
+            writeBase.execute(query, params);
+            return;
+        }
+        if (!isOutboxEnabled()) {
+            writeBase.execute(query, params);
+            sendEventToProducer(acknowledgementEvent);
+            return;
+        }
+
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        String topic = config.get("kafka.communication.message.acknowledgements.topic", "communication_message_acknowledgements");
+        byte[] kafkaMessage = acknowledgement(acknowledgementEvent).toByteArray();
+        writeBase.beginTransaction();
+        try {
+            writeBase.execute(query, params);
+            outboxRepository.insert(writeBase, acknowledgementEvent.getReferenceId(), topic, kafkaMessage);
+            writeBase.commitTransaction();
+        } catch (SQLException | RuntimeException e) {
+            writeBase.rollbackTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes acknowledgementEvent to the outbox without a state change, for an update that failed. Falls back to
+     * the async publisher when the outbox cannot be written either.
+     */
+    private void insertAcknowledgementEvent(MessageAcknowledgement acknowledgementEvent) {
+        String topic = ApplicationConfiguration.getInstance().get("kafka.communication.message.acknowledgements.topic", "communication_message_acknowledgements");
+        try {
+            outboxRepository.insert(new WriteBase(), acknowledgementEvent.getReferenceId(), topic, acknowledgement(acknowledgementEvent).toByteArray());
+        } catch (Exception e) {
+            log.error("Error in writing acknowledgement event to the outbox, referenceId : {}", acknowledgementEvent.getReferenceId(), e);
+            sendEventToProducer(acknowledgementEvent);
+        }
+    }
+
+    private boolean isOutboxEnabled() {
+        return ApplicationConfiguration.getInstance().getBoolean("kafka.ack.outbox.enabled", false);
+    }
+
     public class ResponseObject {
         public MessageAcknowledgement messageAcknowledgement;
 
@@ -343,10 +410,10 @@ public class MessageAcknowledgementRepository {
         return query;
     }
 
-    Retryer<Boolean> pushToKafkaRetryer = RetryerBuilder.<Boolean>newBuilder().retryIfRuntimeException()
-            .withWaitStrategy(WaitStrategies.exponentialWait(100, TimeUnit.MILLISECONDS))
-            .withStopStrategy(StopStrategies.stopAfterAttempt(2)).build();
-
+    /**
+     * Hands the acknowledgement over to {@link AcknowledgementEventPublisher}, which publishes it asynchronously.
+     * Delivery failures are reported through the publisher's metrics and spill file, not to the caller.
+     */
     public boolean sendEventToProducer(MessageAcknowledgement messageAcknowledgement) {
 
         boolean success = false;
@@ -354,19 +421,13 @@ public class MessageAcknowledgementRepository {
                 "communication_message_acknowledgements");
 
         try {
-            Callable<Boolean> pushToKafkaCallable = new Callable<Boolean>() {
-                public Boolean call() throws Exception {
-                    byte[] kafkaMessage = acknowledgement(messageAcknowledgement).toByteArray();
-                    kafkaProducerWrapperService.pushByteArrayMessage(kafkaMessage, topic, null, 3);
-                    return true;
-                }
-            };
-
-            pushToKafkaRetryer.call(pushToKafkaCallable);
-            success = true;
+            byte[] kafkaMessage = acknowledgement(messageAcknowledgement).toByteArray();
+            success = acknowledgementEventPublisher.publish(topic, null, kafkaMessage);
 
         } catch (Exception e) {
             log.error("Unable to push event in kafka producer for topic : {}", topic, e);
+        }
+        if (!success) {
             Metrics.getInstance().onIncrement(MetricGroupNames.NF_CE_KAFKA_PRODUCER, "send_message_akg_event_failed");
         }
         return success;
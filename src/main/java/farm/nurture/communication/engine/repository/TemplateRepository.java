@@ -29,6 +29,7 @@ import farm.nurture.laminar.core.io.sql.dao.WriteBase;
 import farm.nurture.util.serializer.Serializer;
 import lombok.extern.slf4j.Slf4j;
 
+import java.sql.Timestamp;
 import java.util.*;
 import farm.nurture.core.contracts.common.enums.NameSpace;
 import farm.nurture.core.contracts.common.enums.Status;
@@ -48,6 +49,7 @@ public class TemplateRepository {
     private static final String UPDATE_TEMPLATE_SQL =  "UPDATE templates SET updated_at = now()";
     private static final String UPDATE_TEMPLATE_WHERE_CLAUSE = " WHERE name = ? AND language_id = ?";
     private static final String GET_ALL_TEMPLATE_SQL = "SELECT * FROM templates";
+    private static final String GET_TEMPLATES_UPDATED_SINCE_SQL = "SELECT * FROM templates where updated_at >= ?";
 
     public List<Template> getAll() {
         boolean success = false;
@@ -67,6 +69,24 @@ public class TemplateRepository {
         return templates;
     }
 
+    public List<Template> getTemplatesUpdatedSince(Timestamp updatedAt) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "get_templates_updated_since");
+        TemplateReadBase readBase = new TemplateReadBase();
+        List<Template> templates = null;
+        try {
+            templates = readBase.execute(GET_TEMPLATES_UPDATED_SINCE_SQL, Arrays.asList(updatedAt).toArray());
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in fetching templates updated since : {}", updatedAt, e);
+
+        } finally {
+            tracker.stop(success);
+        }
+        return templates;
+    }
+
     public List<Template> getAllTemplate(GetAllTemplateRequest getAllTemplateRequest){
         boolean success = false;
         MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "get_all_templates");
@@ -25,7 +25,9 @@ import farm.nurture.communication.engine.models.WhatsappUsers;
 import farm.nurture.laminar.core.io.sql.dao.WriteBase;
 import lombok.extern.slf4j.Slf4j;
 
+import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.List;
 
 @Slf4j
 @Singleton
@@ -34,6 +36,11 @@ public class WhatsappUsersRepository {
 
     private static final String getByMobileNumberSql = "SELECT * FROM whatsapp_users WHERE mobile_number = ?";
 
+    private static final String getWhatsappUsersPageSql = "SELECT * FROM whatsapp_users WHERE id > ? ORDER BY id LIMIT ?";
+
+    private static final String getWhatsappUsersUpdatedSinceSql = "SELECT * FROM whatsapp_users WHERE updated_at > ? " +
+            "OR (updated_at = ? AND id > ?) ORDER BY updated_at, id LIMIT ?";
+
     private static final String insertWhatsappUsersSql = "INSERT INTO whatsapp_users(mobile_number, status, opt_out_consent_sent, namespace, source) " +
             "VALUES(?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE status = ?, opt_out_consent_sent = ?";
 
@@ -67,6 +74,40 @@ public class WhatsappUsersRepository {
         return whatsappUsers;
     }
 
+    public List<WhatsappUsers> getWhatsappUsersPage(long afterId, int limit) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "select_whatsapp_users_page");
+        WhatsappUsersReadBase readBase = new WhatsappUsersReadBase();
+        List<WhatsappUsers> whatsappUsers = null;
+        try {
+            whatsappUsers = readBase.execute(getWhatsappUsersPageSql, Arrays.asList(afterId, limit).toArray());
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in fetching WhatsappUsers page after id : {}, limit : {}", afterId, limit, e);
+        } finally {
+            tracker.stop(success);
+        }
+        return whatsappUsers;
+    }
+
+    public List<WhatsappUsers> getWhatsappUsersUpdatedSince(Timestamp updatedAt, long afterId, int limit) {
+        boolean success = false;
+        MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "select_whatsapp_users_updated_since");
+        WhatsappUsersReadBase readBase = new WhatsappUsersReadBase();
+        List<WhatsappUsers> whatsappUsers = null;
+        try {
+            whatsappUsers = readBase.execute(getWhatsappUsersUpdatedSinceSql, Arrays.asList(updatedAt, updatedAt, afterId, limit).toArray());
+            success = true;
+
+        } catch (Exception e) {
+            log.error("Error in fetching WhatsappUsers updated since : {}, after id : {}", updatedAt, afterId, e);
+        } finally {
+            tracker.stop(success);
+        }
+        return whatsappUsers;
+    }
+
     public boolean insertWhatsappUsers(WhatsappUsers whatsappUsers) {
         boolean success = false;
         MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE_MYSQL, "insert_whatsapp_users");
@@ -23,8 +23,10 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.service.CommunicationServiceCallbackService;
+import farm.nurture.communication.engine.vendor.KarixVendor;
 import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.enums.CommunicationChannel;
+import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.infra.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 
@@ -253,6 +255,16 @@ public class CommunicationServiceCallbackResource {
             boolean isUpdated = communicationServiceCallbackService.
                     updateMessageAcknowledgements(CommunicationChannel.SMS.name(), request,
                             MetricGroupNames.NF_CE_SMS_SERVICE_CALLBACK_STATUS);
+            if (!isUpdated && ApplicationConfiguration.getInstance().getBoolean("karix.sms.batch.enabled", false)) {
+                // SMS sent in a multi-destination batch are stored under a per recipient message id
+                request = new CommunicationServiceCallbackRequest(KarixVendor.recipientMessageId(messageUniqueId, receiverPhoneNumber),
+                        destTime, status, cause, receiverPhoneNumber, errorCode, 0L,
+                        VendorType.KARIX.name()
+                );
+                isUpdated = communicationServiceCallbackService.
+                        updateMessageAcknowledgements(CommunicationChannel.SMS.name(), request,
+                                MetricGroupNames.NF_CE_SMS_SERVICE_CALLBACK_STATUS);
+            }
             if (!isUpdated) {
                 log.error("Update failed in MessageAcknowledgements. Vendor message Id : {}", messageUniqueId);
                 response = Response.status(Response.Status.OK).entity(request).build();
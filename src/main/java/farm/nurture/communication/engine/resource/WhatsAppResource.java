@@ -139,10 +139,10 @@ public class WhatsAppResource {
         ActorDetails actorDetails = getActorDetail(whatsAppSendRequest);
         CommunicationEvent communicationEvent = getCommunicationEvent(actorDetails, whatsAppSendRequest, referenceId);
         Event<byte[], byte[]> event = new Event<>(communicationEvent.getReferenceId().getBytes(), communicationEvent.toByteArray());
-        Language language = languageCache.getLanguageByCode(communicationEvent.getReceiverActorDetails()
-                .getLanguageCode().name().toLowerCase().replace('_', '-'));
-        Language secondaryLanguage=communicationEvent.getReceiverActorDetails().getSecondaryLanguageCode()!=null ?languageCache.getLanguageByCode(communicationEvent.getReceiverActorDetails()
-                .getSecondaryLanguageCode().name().toLowerCase().replace('_', '-')):null;
+        Language language = languageCache.getLanguageByLanguageCode(communicationEvent.getReceiverActorDetails()
+                .getLanguageCode());
+        Language secondaryLanguage=communicationEvent.getReceiverActorDetails().getSecondaryLanguageCode()!=null ?languageCache.getLanguageByLanguageCode(communicationEvent.getReceiverActorDetails()
+                .getSecondaryLanguageCode()):null;
         TemplateCacheValue templateCacheValue = templateHelper.getTemplateFromNameAndLangId(whatsAppSendRequest.getTemplateName(), language,secondaryLanguage);
         String content = templateHelper.getContent(templateCacheValue, whatsAppSendRequest.getPlaceholders());
         Map<String, Object> vendorMetaData = templateHelper.getMetaData(templateCacheValue);
@@ -0,0 +1,82 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.models.MessageAcknowledgement;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process registry of messages someone is waiting on, by reference id. Vendor send callbacks and delivery
+ * callbacks signal the acknowledgement state they write, and the waiting future completes with the first state
+ * that resolves the message: rejected by the vendor, or sent to, delivered to, read or not delivered to the
+ * customer. A future that is not resolved within its timeout completes with null.
+ *
+ * Delivery callbacks handled by another instance are not seen here, so waiters should read the acknowledgement
+ * from the database once the future completes.
+ */
+@Slf4j
+@Singleton
+public class AcknowledgementCompletions {
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Map<String, CompletableFuture<MessageAcknowledgement.State>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the reference id, which must happen before its message is sent.
+     */
+    public CompletableFuture<MessageAcknowledgement.State> await(String referenceId, long timeoutMillis) {
+        CompletableFuture<MessageAcknowledgement.State> future = new CompletableFuture<>();
+        pending.put(referenceId, future);
+        future.completeOnTimeout(null, timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((state, e) -> {
+            pending.remove(referenceId, future);
+            metrics.onIncrement(MetricGroupNames.NF_CE_ACKNOWLEDGEMENT_COMPLETIONS, state == null ? "timed_out" : "resolved");
+        });
+        return future;
+    }
+
+    public void signal(String referenceId, MessageAcknowledgement.State state) {
+        if (referenceId == null || pending.isEmpty() || !isResolved(state)) return;
+        CompletableFuture<MessageAcknowledgement.State> future = pending.get(referenceId);
+        if (future != null) {
+            log.info("Acknowledgement of reference id : {} resolved with state : {}", referenceId, state);
+            future.complete(state);
+        }
+    }
+
+    static boolean isResolved(MessageAcknowledgement.State state) {
+        if (state == null) return false;
+        switch (state) {
+            case VENDOR_UNDELIVERED:
+            case CUSTOMER_SENT:
+            case CUSTOMER_DELIVERED:
+            case CUSTOMER_READ:
+            case CUSTOMER_UNDELIVERED:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.cache.LanguageCache;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.dto.CommunicationServiceCallbackRequest;
 import farm.nurture.communication.engine.dto.GupshupWhatsAppIncomingCallbackRequest;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
@@ -75,9 +76,13 @@ public class CommunicationServiceCallbackService {
     @Inject
     private WhatsappUsersRepository whatsappUsersRepository;
     @Inject
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+    @Inject
     private SMSService smsService;
     @Inject
     private LanguageCache languageCache;
+    @Inject
+    private AcknowledgementCompletions acknowledgementCompletions;
 
     public boolean updateMessageAcknowledgements(String communicationChannel, CommunicationServiceCallbackRequest communicationServiceCallbackRequest,
                                                  String merticsGroupName
@@ -112,22 +117,25 @@ public class CommunicationServiceCallbackService {
                 if(communicationServiceCallbackRequest.getCause().equals(UNKNOWN_SUBSCRIBER)||communicationServiceCallbackRequest.getCause().equals(INVALID_RECIPIENT))
                 {
                     if(whatsappUsers != null && communicationChannel.equalsIgnoreCase(CommunicationChannel.WHATSAPP.name())) {
+                        boolean updated;
                         if (whatsappUsers.getStatus() == WhatsappUsers.WhatsAppStatus.NO_ACCNT) {
-                            whatsappUsersRepository.updateWhatsappUsersUpdatedTime(whatsappUsers);
+                            updated = whatsappUsersRepository.updateWhatsappUsersUpdatedTime(whatsappUsers);
                         } else {
                             whatsappUsers.setStatus(WhatsappUsers.WhatsAppStatus.NO_ACCNT);
-                            whatsappUsersRepository.updateWhatsappUsers(whatsappUsers);
+                            updated = whatsappUsersRepository.updateWhatsappUsers(whatsappUsers);
+                        }
+                        if (updated) {
+                            whatsappUsersStatusIndex.record(whatsappUsers.getMobileNumber(), WhatsappUsers.WhatsAppStatus.NO_ACCNT);
                         }
                     }
                 }
                 messageAcknowledgementRepository.updateMessageAcknowledgementActorDelivery(
                         currState, null, communicationChannel,
                         communicationServiceCallbackRequest,
-                        responseObject.messageAcknowledgement.getAttributes(), responseObject.messageAcknowledgement.getVersion());
-
-                messageAcknowledgementRepository.sendEventToProducer(
+                        responseObject.messageAcknowledgement.getAttributes(), responseObject.messageAcknowledgement.getVersion(),
                         messageAcknowledgementRepository.getAcknowledgement(responseObject.messageAcknowledgement, null,
                                 currState, communicationServiceCallbackRequest, null));
+                acknowledgementCompletions.signal(referenceId, currState);
 
                 return true;
             }
@@ -136,6 +144,9 @@ public class CommunicationServiceCallbackService {
                     communicationServiceCallbackRequest.getStatus() == CommunicationServiceCallbackRequest.Status.SUBMITTED ||
                     communicationServiceCallbackRequest.getStatus() == CommunicationServiceCallbackRequest.Status.UNKNOWN
             ) {
+                if (communicationServiceCallbackRequest.getStatus() == CommunicationServiceCallbackRequest.Status.FAIL) {
+                    acknowledgementCompletions.signal(referenceId, MessageAcknowledgement.State.CUSTOMER_UNDELIVERED);
+                }
                 isUpdateMsgAck = retryService(merticsGroupName, responseObject, communicationServiceCallbackRequest, communicationChannel, referenceId, languageId);
             } else {
                 switch (communicationServiceCallbackRequest.getStatus()) {
@@ -160,13 +171,16 @@ public class CommunicationServiceCallbackService {
                 if(whatsappUsers != null &&communicationChannel.equalsIgnoreCase(CommunicationChannel.WHATSAPP.name())&& whatsappUsers.getStatus()== WhatsappUsers.WhatsAppStatus.NO_ACCNT)
                 {
                     whatsappUsers.setStatus(WhatsappUsers.WhatsAppStatus.OPT_IN);
-                    whatsappUsersRepository.updateWhatsappUsers(whatsappUsers);
+                    if (whatsappUsersRepository.updateWhatsappUsers(whatsappUsers)) {
+                        whatsappUsersStatusIndex.record(whatsappUsers.getMobileNumber(), WhatsappUsers.WhatsAppStatus.OPT_IN);
+                    }
                 }
                 messageAcknowledgementRepository.
                         updateMessageAcknowledgementActorDelivery(
                                 currState, communicationServiceCallbackRequest.getDeliveredTS(),
                                 communicationChannel, communicationServiceCallbackRequest,
                                 responseObject.messageAcknowledgement.getAttributes(), responseObject.messageAcknowledgement.getVersion());
+                acknowledgementCompletions.signal(referenceId, currState);
                 isUpdateMsgAck = true;
 
             }
@@ -194,9 +208,7 @@ public class CommunicationServiceCallbackService {
         } else {
             messageAcknowledgementRepository.updateMessageAcknowledgementActorDelivery(MessageAcknowledgement.State.CUSTOMER_UNDELIVERED,
                     null, communicationChannel, communicationServiceCallbackRequest,
-                    responseObject.messageAcknowledgement.getAttributes(), responseObject.messageAcknowledgement.getVersion());
-
-            messageAcknowledgementRepository.sendEventToProducer(
+                    responseObject.messageAcknowledgement.getAttributes(), responseObject.messageAcknowledgement.getVersion(),
                     messageAcknowledgementRepository.getAcknowledgement(responseObject.messageAcknowledgement, null,
                             MessageAcknowledgement.State.CUSTOMER_UNDELIVERED, communicationServiceCallbackRequest, null));
 
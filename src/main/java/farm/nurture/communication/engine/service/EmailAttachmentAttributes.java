@@ -19,8 +19,6 @@ package farm.nurture.communication.engine.service;
 import lombok.*;
 import lombok.experimental.SuperBuilder;
 
-import java.io.InputStream;
-
 
 @Getter
 @Setter
@@ -29,5 +27,4 @@ public class EmailAttachmentAttributes {
 
     private String attachmentURL;
     private String attachmentName;
-    private InputStream inputStream;
 }
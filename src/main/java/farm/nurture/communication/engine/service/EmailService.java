@@ -20,6 +20,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.protobuf.InvalidProtocolBufferException;
 import farm.nurture.communication.engine.Constants;
+import farm.nurture.communication.engine.cache.AttachmentCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.cache.TemplateCache;
 import farm.nurture.communication.engine.cache.TemplateCacheKey;
@@ -35,18 +36,16 @@ import farm.nurture.core.contracts.communication.engine.Placeholder;
 import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.infra.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 
 import javax.activation.DataHandler;
 import javax.mail.*;
 import javax.mail.internet.*;
-import javax.mail.util.ByteArrayDataSource;
-import java.io.InputStream;
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.file.NoSuchFileException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Singleton
@@ -63,7 +62,9 @@ public class EmailService {
     @Inject
     private MessageAcknowledgementRepository messageAcknowledgementRepository;
 
-    private static CloseableHttpClient client = HttpClientBuilder.create().build();
+    @Inject
+    private AttachmentCache attachmentCache;
+
     private static final String PORT_587 = "587";
     private static final String PORT_465 = "465";
     private static String EMAIL_PORT = System.getenv("email_port");
@@ -111,6 +112,11 @@ public class EmailService {
         List<EmailAttachmentAttributes> emailAttachmentAttributes = null;
         try {
             emailAttachmentAttributes = getAttachmentAttributes(event);
+            Map<String, CompletableFuture<AttachmentCache.Attachment>> attachments = new HashMap<>();
+            for (EmailAttachmentAttributes emailAttachmentAttribute : emailAttachmentAttributes) {
+                String attachmentURL = emailAttachmentAttribute.getAttachmentURL();
+                if (StringUtils.isNonEmpty(attachmentURL)) attachments.computeIfAbsent(attachmentURL, attachmentCache::prefetch);
+            }
             ApplicationConfiguration config = ApplicationConfiguration.getInstance();
             MimeMessage generateMailMessage = new MimeMessage(mailSession);
             generateMailMessage.addRecipient(Message.RecipientType.TO, new InternetAddress(event.getEmailAttributes().getEmailId()));
@@ -134,11 +140,10 @@ public class EmailService {
                 MimeBodyPart attachmentBodyPart = new MimeBodyPart();
                 String attachmentName = emailAttachmentAttribute.getAttachmentName();
                 String attachmentURL = emailAttachmentAttribute.getAttachmentURL();
-                InputStream inputStream = emailAttachmentAttribute.getInputStream();
-                if (StringUtils.isNonEmpty(attachmentName) && StringUtils.isNonEmpty(attachmentURL) && inputStream != null) {
+                if (StringUtils.isNonEmpty(attachmentName) && StringUtils.isNonEmpty(attachmentURL)) {
+                    ByteBuffer attachment = getAttachment(attachments.get(attachmentURL), attachmentURL);
                     attachmentBodyPart.setFileName(attachmentName);
-                    ByteArrayDataSource bds = new ByteArrayDataSource(inputStream, ATTACHMENT_TYPE);
-                    attachmentBodyPart.setDataHandler(new DataHandler(bds));
+                    attachmentBodyPart.setDataHandler(new DataHandler(new ByteBufferDataSource(attachment, ATTACHMENT_TYPE, attachmentName)));
                     multipart.addBodyPart(attachmentBodyPart);
                 }
             }
@@ -161,29 +166,16 @@ public class EmailService {
             log.error("Error in sending Email for event : {}", event, e);
 
         } finally {
-            closeQuietly(event, emailAttachmentAttributes, transport);
+            closeQuietly(event, transport);
             tracker.stop(success,event.getTemplateName(), languageCache.getLanguageById(event.getLanguageId()).getName());
         }
     }
 
-    private void closeQuietly(DerivedCommunicationEvent event, List<EmailAttachmentAttributes> emailAttachmentAttributes, Transport transport) {
+    private void closeQuietly(DerivedCommunicationEvent event, Transport transport) {
         try {
             if (transport != null) transport.close();
-            for(EmailAttachmentAttributes emailAttachmentAttribute: emailAttachmentAttributes)
-            {
-                closeInputStreamQuietly(emailAttachmentAttribute.getInputStream());
-            }
         } catch (Exception e) {
-            log.error("Unable to close transport or is for event : {}", event, e);
-        }
-    }
-
-    private void closeInputStreamQuietly(InputStream is) {
-
-        try {
-            if (is != null) is.close();
-        } catch (Exception e) {
-            log.error("Unable to close inputstream", e);
+            log.error("Unable to close transport for event : {}", event, e);
         }
     }
 
@@ -194,18 +186,20 @@ public class EmailService {
         return value.getTemplate();
     }
 
-    private InputStream getAttachmentInputStream(String attachmentFileUrl) {
+    /**
+     * Content of a downloaded attachment. A cached file that was evicted before it could be mapped is downloaded
+     * once more; any other failure fails the email instead of sending it without the attachment.
+     */
+    private ByteBuffer getAttachment(CompletableFuture<AttachmentCache.Attachment> download, String attachmentFileUrl) throws Exception {
 
-        InputStream is = null;
+        AttachmentCache.Attachment attachment = download.get(ApplicationConfiguration.getInstance().getInt("attachment.download.timeout.seconds", 60), TimeUnit.SECONDS);
         try {
-            HttpGet request = new HttpGet(attachmentFileUrl);
-            HttpResponse response = client.execute(request);
-            HttpEntity entity = response.getEntity();
-            is = entity.getContent();
-        } catch (Exception e) {
-            log.error("Error in downloading attachment file ", e);
+            return attachment.map();
+        } catch (NoSuchFileException | FileNotFoundException e) {
+            log.warn("Cached attachment file : {} is gone, downloading attachment : {} again", attachment.getFile(), attachmentFileUrl);
+            attachmentCache.invalidate(attachmentFileUrl, attachment);
+            return attachmentCache.get(attachmentFileUrl).map();
         }
-        return is;
     }
 
     private List<EmailAttachmentAttributes> getAttachmentAttributes(DerivedCommunicationEvent event) {
@@ -225,12 +219,10 @@ public class EmailService {
         String keyType = "";
         String attachmentURL = "";
         String attachmentName = "";
-        InputStream is = null;
 
         if(key.startsWith(ATTACHMENT_FILEURL)) {
             keyType = ATTACHMENT_FILEURL;
             attachmentURL = value;
-            is = getAttachmentInputStream(value);
         } else if(key.startsWith(ATTACHMENT_FILENAME)) {
             keyType = ATTACHMENT_FILENAME;
             attachmentName = value;
@@ -241,17 +233,13 @@ public class EmailService {
         {
             EmailAttachmentAttributes emailAttachmentAttribute = attributesMap.get(index);
             if(StringUtils.isNonEmpty(attachmentURL)) emailAttachmentAttribute.setAttachmentURL(attachmentURL);
-            if(is!= null) {
-                if(emailAttachmentAttribute.getInputStream()!=null) closeInputStreamQuietly(emailAttachmentAttribute.getInputStream());
-                emailAttachmentAttribute.setInputStream(is);
-            }
             if(StringUtils.isNonEmpty(attachmentName)) emailAttachmentAttribute.setAttachmentName(attachmentName);
             attributesMap.put(index,emailAttachmentAttribute);
         }
         else
         {
             attributesMap.put(index,EmailAttachmentAttributes.builder().
-                    attachmentURL(attachmentURL).inputStream(is).attachmentName(attachmentName).build());
+                    attachmentURL(attachmentURL).attachmentName(attachmentName).build());
         }
         return;
     }
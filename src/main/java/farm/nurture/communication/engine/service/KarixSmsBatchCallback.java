@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import com.google.common.base.Charsets;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.core.contracts.common.enums.CommunicationChannel;
+import farm.nurture.util.http.client.BaseHttpResponseException;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import java.util.List;
+
+/**
+ * Fans the response of a multi-destination Karix request out to the {@link SMSServiceCallback} of every SMS in
+ * the batch, which map the shared ackid to their own message_acknowledgements row and retry on their own.
+ */
+@Slf4j
+public class KarixSmsBatchCallback implements CallbackExecutor.RejectableCallback<HttpResponse> {
+
+    private final List<SMSServiceCallback> callbacks;
+
+    private final VendorLoadBalancer vendorLoadBalancer;
+
+    /* Set when the batch is sent, so that its latency leaves out the wait for the vendor rate limit */
+    private volatile long sentAt;
+
+    Metrics metrics = Metrics.getInstance();
+
+    public KarixSmsBatchCallback(List<SMSServiceCallback> callbacks, VendorLoadBalancer vendorLoadBalancer) {
+        this.callbacks = callbacks;
+        this.vendorLoadBalancer = vendorLoadBalancer;
+        this.sentAt = System.currentTimeMillis();
+    }
+
+    void markSent() {
+        sentAt = System.currentTimeMillis();
+    }
+
+    private void recordVendorHealth(boolean healthy) {
+        long latencyMillis = System.currentTimeMillis() - sentAt;
+        if (healthy) {
+            vendorLoadBalancer.recordSuccess(CommunicationChannel.SMS.name(), VendorType.KARIX, latencyMillis);
+        } else {
+            vendorLoadBalancer.recordFailure(CommunicationChannel.SMS.name(), VendorType.KARIX, latencyMillis);
+        }
+    }
+
+    @Override
+    public void completed(HttpResponse response) {
+        int statusCode = response.getStatusLine().getStatusCode();
+        String result = null;
+        try {
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                result = EntityUtils.toString(entity, Charsets.UTF_8);
+            }
+
+        } catch (Exception e) {
+            log.error("Exception in reading Karix SMS batch response of size : {}, error : {}", callbacks.size(), e.getMessage(), e);
+            failed(e);
+            return;
+        }
+        recordVendorHealth(BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.SERVER_ERROR);
+        for (SMSServiceCallback callback : callbacks) {
+            callback.completed(statusCode, result);
+        }
+    }
+
+    @Override
+    public void failed(Exception e) {
+        recordVendorHealth(false);
+        log.error("Karix SMS batch of size : {} failed, Error : {}", callbacks.size(), e.getMessage(), e);
+        metrics.onIncrement(MetricGroupNames.NF_CE_SMS_SERVICE, "batch_api_failed");
+        for (SMSServiceCallback callback : callbacks) {
+            callback.failed(e);
+        }
+    }
+
+    /**
+     * The batch was never sent, because the rate limit queue or the callback slots were full, so every SMS of it
+     * is retried on its own with the same vendor.
+     */
+    @Override
+    public void rejected() {
+        log.warn("Karix SMS batch of size : {} was not sent, retrying each SMS", callbacks.size());
+        metrics.onIncrement(MetricGroupNames.NF_CE_SMS_SERVICE, "batch_rejected");
+        for (SMSServiceCallback callback : callbacks) {
+            callback.rejected();
+        }
+    }
+
+    @Override
+    public void cancelled() {
+        log.error("Karix SMS batch of size : {} cancelled", callbacks.size());
+        for (SMSServiceCallback callback : callbacks) {
+            callback.cancelled();
+        }
+    }
+}
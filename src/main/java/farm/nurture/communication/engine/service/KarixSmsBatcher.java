@@ -0,0 +1,202 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.TimeOutConfigs;
+import farm.nurture.communication.engine.dto.HttpClientRequest;
+import farm.nurture.communication.engine.dto.KarixSmsRequest;
+import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.KarixVendor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.core.contracts.common.enums.CommunicationChannel;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups Karix SMS with the same text into one multi-destination request. An SMS opens a batch for its text
+ * and type, and the batch is sent once it reaches the maximum size or its window elapses, whichever is first.
+ *
+ * A destination is added to a batch once, so each SMS keeps a unique vendor message id. Every batch is one
+ * request to the vendor rate limit. Retries are sent on their own, so only first attempts are batched.
+ *
+ * Batches are handed to the rate limiter without waiting, so a full queue never holds up later flushes. Every
+ * SMS of a batch that does not fit is rescheduled on its own with the same vendor, as a first attempt that
+ * does not fit would be.
+ */
+@Slf4j
+@Singleton
+public class KarixSmsBatcher {
+
+    @Inject
+    private KarixVendor karixVendor;
+
+    @Inject
+    private VendorHttpClients vendorHttpClients;
+
+    @Inject
+    private CallbackExecutor callbackExecutor;
+
+    @Inject
+    private VendorRateLimiter vendorRateLimiter;
+
+    @Inject
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Map<Key, Batch> pending = new HashMap<>();
+
+    private volatile ScheduledExecutorService flushExecutor;
+
+    private int maxSize;
+
+    private long windowMillis;
+
+    public synchronized void init() {
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        if (!config.getBoolean("karix.sms.batch.enabled", false)) {
+            log.info("Karix SMS batching is disabled, every SMS will be sent in its own request");
+            return;
+        }
+        start(config.getInt("karix.sms.batch.max.size", 100), config.getInt("karix.sms.batch.window.millis", 50));
+    }
+
+    synchronized void start(int maxSize, long windowMillis) {
+        if (flushExecutor != null) return;
+        this.maxSize = maxSize;
+        this.windowMillis = windowMillis;
+        flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "karix-sms-batch-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Adds the SMS to the open batch for its text. Returns false when batching is disabled, in which case the
+     * caller sends the SMS on its own.
+     */
+    public boolean add(DerivedCommunicationEvent event, SMSServiceCallback callback) {
+        ScheduledExecutorService executor = flushExecutor;
+        if (executor == null) return false;
+
+        String destination = event.getSmsAttributes().getMobileNumber().trim();
+        Key key = new Key(event.getContent(), event.isUnicode());
+        List<Batch> ready = new ArrayList<>(2);
+        synchronized (pending) {
+            Batch batch = pending.get(key);
+            if (batch != null && batch.contains(destination)) {
+                pending.remove(key);
+                ready.add(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                Batch created = new Batch(key);
+                pending.put(key, created);
+                executor.schedule(() -> flush(created), windowMillis, TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(destination, callback);
+            if (batch.size() >= maxSize) {
+                pending.remove(key);
+                ready.add(batch);
+            }
+        }
+        for (Batch batch : ready) {
+            send(batch);
+        }
+        return true;
+    }
+
+    void flush(Batch batch) {
+        synchronized (pending) {
+            if (!pending.remove(batch.key, batch)) return;
+        }
+        send(batch);
+    }
+
+    private void send(Batch batch) {
+        KarixSmsBatchCallback callback = new KarixSmsBatchCallback(batch.callbacks, vendorLoadBalancer);
+        try {
+            metrics.getIMetricSummary(MetricGroupNames.NF_CE_SMS_SERVICE, "karix_batch_size").observe(batch.size());
+            HttpClientRequest<KarixSmsRequest> request = karixVendor.requestForSendSms(batch.destinations, batch.key.content, batch.key.unicode);
+            Runnable send = () -> {
+                callback.markSent();
+                callbackExecutor.send(callback, offloaded -> vendorHttpClients.get(VendorType.KARIX).sendMessage(request.getMethod(), request.getUrl(),
+                        request.getRequestParams(), request.getHeaders(), request.getRequestBody(), offloaded, TimeOutConfigs.smsServiceTimeOutConfig()));
+            };
+            /* Batches are sent from the flush thread, which must not wait for queue space */
+            if (!vendorRateLimiter.dispatch(CommunicationChannel.SMS.name(), VendorType.KARIX, send, false)) {
+                callback.rejected();
+            }
+
+        } catch (Exception e) {
+            log.error("Error in sending Karix SMS batch of size : {}", batch.size(), e);
+            callback.failed(e);
+        }
+    }
+
+    @Value
+    static class Key {
+        String content;
+        boolean unicode;
+    }
+
+    static final class Batch {
+        final Key key;
+        final List<String> destinations = new ArrayList<>();
+        final Set<String> recipientKeys = new HashSet<>();
+        final List<SMSServiceCallback> callbacks = new ArrayList<>();
+
+        Batch(Key key) {
+            this.key = key;
+        }
+
+        boolean contains(String destination) {
+            return recipientKeys.contains(KarixVendor.recipientKey(destination));
+        }
+
+        void add(String destination, SMSServiceCallback callback) {
+            destinations.add(destination);
+            recipientKeys.add(KarixVendor.recipientKey(destination));
+            callbacks.add(callback);
+        }
+
+        int size() {
+            return destinations.size();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package farm.nurture.communication.engine.service;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.models.ActorAttributes;
 import farm.nurture.communication.engine.models.WhatsappUsers;
 import farm.nurture.communication.engine.repository.ActorAttributesRepository;
@@ -37,6 +38,9 @@ public class MissCallService {
     @Inject
     private WhatsappUsersRepository whatsappUsersRepository;
 
+    @Inject
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+
     @Inject
     private ActorAttributesRepository actorAttributesRepository;
 
@@ -64,6 +68,9 @@ public class MissCallService {
             whatsappUsers = WhatsappUsers.builder().mobileNumber(senderMobile).status(WhatsappUsers.WhatsAppStatus.OPT_OUT).build();
         }
         updateWhatsAppUserTable = whatsappUsersRepository.findAndUpdateWhatsappUsers(whatsappUsers);
+        if (updateWhatsAppUserTable) {
+            whatsappUsersStatusIndex.record(senderMobile, whatsappUsers.getStatus());
+        }
         log.info("status for updating WhatsAppUserTable is updateWhatsAppUserTable : {}", updateWhatsAppUserTable);
         return updateWhatsAppUserTable;
     }
@@ -21,6 +21,7 @@ import com.google.inject.Singleton;
 import com.google.protobuf.InvalidProtocolBufferException;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.TimeOutConfigs;
+import farm.nurture.communication.engine.cache.ActorAppTokenCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.event.CommunicationEventHandler;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
@@ -28,6 +29,10 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.FcmAccessTokenProvider;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.enums.PushNotificationType;
 import farm.nurture.core.contracts.communication.engine.CommunicationEvent;
 import farm.nurture.core.contracts.communication.engine.Placeholder;
@@ -35,7 +40,6 @@ import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.HttpUtils;
 import farm.nurture.util.http.TimeOutConfig;
-import farm.nurture.util.http.client.NFAsyncHttpClient;
 import lombok.extern.slf4j.Slf4j;
 
 import java.sql.Time;
@@ -51,11 +55,18 @@ public class PushNotificationService {
     String TITLE = "title";
     String BODY = "body";
     String HIGH = "high";
+    String BEARER = "Bearer ";
+
+    private static final String FCM_V1_URL = "https://fcm.googleapis.com/v1/projects/%s/messages:send";
+    private static final String ANDROID_HIGH_PRIORITY = "HIGH";
 
     public static final String vendor = "Firebase";
 
     @Inject
-    private NFAsyncHttpClient nfAsyncHttpClient;
+    private VendorHttpClients vendorHttpClients;
+
+    @Inject
+    private CallbackExecutor callbackExecutor;
 
     @Inject
     private TimeOutConfig timeOutConfig;
@@ -69,6 +80,15 @@ public class PushNotificationService {
     @Inject
     private LanguageCache languageCache;
 
+    @Inject
+    private ActorAppTokenCache actorAppTokenCache;
+
+    @Inject
+    private FcmAccessTokenProvider fcmAccessTokenProvider;
+
+    @Inject
+    private RetryScheduler retryScheduler;
+
     public void sendPushNotification(DerivedCommunicationEvent event) {
         log.info("Sending PN from event : {}", event);
         boolean success = false;
@@ -76,18 +96,33 @@ public class PushNotificationService {
 
         try {
             ApplicationConfiguration config = ApplicationConfiguration.getInstance();
-            String url = config.get("fmc.url");
-            FCMData fcmData = getFCMData(event);
+            String projectId = getFcmV1Config(event, "project.id");
+            String credentialsPath = getFcmV1Config(event, "credentials.path");
+            boolean httpV1 = config.getBoolean("fcm.v1.enabled", false) && projectId != null && credentialsPath != null;
 
+            String url;
+            Object body;
             Map<String, String> headers = new HashMap<>();
             headers.put(Constants.CONTENT_TYPE, Constants.APPLICATION_JSON);
-            headers.put(Constants.AUTHORIZATION, KEY + event.getPNAttributes().getApiKey());
+            if (httpV1) {
+                url = String.format(config.get("fcm.v1.url", FCM_V1_URL), projectId);
+                body = getFcmV1Message(event);
+                headers.put(Constants.AUTHORIZATION, BEARER + fcmAccessTokenProvider.getAccessToken(credentialsPath));
+            } else {
+                url = config.get("fmc.url");
+                body = getFCMData(event);
+                headers.put(Constants.AUTHORIZATION, KEY + event.getPNAttributes().getApiKey());
+                credentialsPath = null;
+            }
 
             String referenceId = populateMessageAcknowledgements(event);
             if(referenceId != null) {
                 CommunicationEventHandler.IN_FLIGHT_COUNTER.incrementAndGet();
 
-                nfAsyncHttpClient.sendMessage(HttpUtils.HttpMethod.POST, url, null, headers, fcmData, new PushNotificationServiceCallback(this, producer, event, messageAcknowledgementRepository,referenceId, languageCache), TimeOutConfigs.pushNotificationServiceTimeOutConfig());
+                PushNotificationServiceCallback callback = new PushNotificationServiceCallback(this, producer, event, messageAcknowledgementRepository,referenceId, languageCache, actorAppTokenCache,
+                        fcmAccessTokenProvider, credentialsPath);
+                callbackExecutor.send(callback, offloaded -> vendorHttpClients.get(VendorType.FIREBASE).sendMessage(HttpUtils.HttpMethod.POST, url, null, headers, body,
+                        offloaded, TimeOutConfigs.pushNotificationServiceTimeOutConfig()));
                 success = true;
             }
         } catch (Exception e) {
@@ -98,6 +133,10 @@ public class PushNotificationService {
         }
     }
 
+    public void retry(DerivedCommunicationEvent event) {
+        retryScheduler.retry(event, VendorType.FIREBASE, this::sendPushNotification);
+    }
+
     private String populateMessageAcknowledgements(DerivedCommunicationEvent derivedCommunicationEvent) {
 
         CommunicationEvent commEvent = null;
@@ -142,6 +181,47 @@ public class PushNotificationService {
         return referenceId;
     }
 
+    /**
+     * FCM HTTP v1 settings of the app the notification is for, read as fcm.v1.app.&lt;mobile app details id&gt;.&lt;key&gt;
+     * and then fcm.v1.&lt;key&gt;. Apps without a project and credentials keep using the legacy API.
+     */
+    private String getFcmV1Config(DerivedCommunicationEvent event, String key) {
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        String value = config.get("fcm.v1." + key, null);
+        Short mobileAppDetailsId = event.getPNAttributes().getMobileAppDetailsId();
+        if (mobileAppDetailsId != null) {
+            value = config.get("fcm.v1.app." + mobileAppDetailsId + "." + key, value);
+        }
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Same content as the legacy payload. The v1 notification only takes a title and body, so template metadata
+     * is sent as data for every notification type.
+     */
+    FcmV1Message getFcmV1Message(DerivedCommunicationEvent event) {
+        Map<String, String> data = new HashMap<>();
+        List<Placeholder> metaData = event.getMetaData();
+        if(metaData!= null && metaData.size() > 0) {
+            metaData.forEach(placeholder -> data.put(placeholder.getKey(), placeholder.getValue()));
+        }
+
+        FcmV1Message.Message message = new FcmV1Message.Message();
+        message.setToken(event.getPNAttributes().getAppToken());
+        message.setAndroid(new FcmV1Message.Android(ANDROID_HIGH_PRIORITY));
+        if (event.getPNAttributes().getPushNotificationType() != PushNotificationType.DATA) {
+            message.setNotification(new FcmV1Message.Notification(event.getPNAttributes().getTitle(), event.getContent()));
+        }
+        if (event.getPNAttributes().getPushNotificationType() != PushNotificationType.NOTIFICATION) {
+            data.put(TITLE, event.getPNAttributes().getTitle());
+            data.put(BODY, event.getContent());
+        }
+        if (!data.isEmpty()) {
+            message.setData(data);
+        }
+        return new FcmV1Message(message);
+    }
+
     private FCMData getFCMData(DerivedCommunicationEvent event) {
         Map<String, String> data = new HashMap<>();
         data.put(TITLE, event.getPNAttributes().getTitle());
@@ -18,6 +18,7 @@ package farm.nurture.communication.engine.service;
 
 import com.google.common.base.Charsets;
 import farm.nurture.communication.engine.Constants;
+import farm.nurture.communication.engine.cache.ActorAppTokenCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.event.CommunicationEventHandler;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
@@ -25,26 +26,37 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.FcmAccessTokenProvider;
 import farm.nurture.core.contracts.common.enums.CommunicationChannel;
 import farm.nurture.infra.metrics.IMetricCounter;
-import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.HttpUtils;
 import farm.nurture.util.http.client.BaseHttpResponseException;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
-public class PushNotificationServiceCallback implements FutureCallback<HttpResponse> {
+public class PushNotificationServiceCallback implements CallbackExecutor.RejectableCallback<HttpResponse> {
+
+    private static final String NOT_REGISTERED = "NotRegistered";
+
+    private static final String INVALID_REGISTRATION = "InvalidRegistration";
+
+    private static final String UNREGISTERED = "UNREGISTERED";
+
+    private static final int UNAUTHORIZED = 401;
+
+    private static final int TOO_MANY_REQUESTS = 429;
 
     private PushNotificationService pushNotificationService;
 
@@ -58,15 +70,30 @@ public class PushNotificationServiceCallback implements FutureCallback<HttpRespo
 
     private LanguageCache languageCache;
 
+    private ActorAppTokenCache actorAppTokenCache;
+
+    private FcmAccessTokenProvider fcmAccessTokenProvider;
+
+    /* Credentials of the FCM HTTP v1 request, null when it was sent to the legacy API */
+    private String credentialsPath;
+
     Metrics metrics = Metrics.getInstance();
 
-    public PushNotificationServiceCallback(PushNotificationService pushNotificationService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache) {
+    public PushNotificationServiceCallback(PushNotificationService pushNotificationService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache, ActorAppTokenCache actorAppTokenCache) {
+        this(pushNotificationService, producer, event, messageAcknowledgementRepository, referenceId, languageCache, actorAppTokenCache, null, null);
+    }
+
+    public PushNotificationServiceCallback(PushNotificationService pushNotificationService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache, ActorAppTokenCache actorAppTokenCache,
+                                           FcmAccessTokenProvider fcmAccessTokenProvider, String credentialsPath) {
         this.pushNotificationService = pushNotificationService;
         this.producer = producer;
         this.event = event;
         this.messageAcknowledgementRepository = messageAcknowledgementRepository;
         this.referenceId = referenceId;
         this.languageCache = languageCache;
+        this.actorAppTokenCache = actorAppTokenCache;
+        this.fcmAccessTokenProvider = fcmAccessTokenProvider;
+        this.credentialsPath = credentialsPath;
     }
 
     private void processError(HttpEntity entity, int statusCode) throws IOException {
@@ -84,19 +111,94 @@ public class PushNotificationServiceCallback implements FutureCallback<HttpRespo
         }
     }
 
-    private void retryEvent() {
-        event.setRetryCount(event.getRetryCount() + 1);
+    /**
+     * FCM reports NotRegistered / InvalidRegistration for tokens of uninstalled apps, so the cached token of the
+     * actor is dropped and read again from actor_app_tokens on the next notification.
+     */
+    private void evictUnregisteredToken(Object results) {
+        if (!(results instanceof List)) return;
+        for (Object result : (List<?>) results) {
+            if (!(result instanceof Map)) continue;
+            Object error = ((Map<?, ?>) result).get("error");
+            if (NOT_REGISTERED.equals(error) || INVALID_REGISTRATION.equals(error)) {
+                evictToken();
+                return;
+            }
+        }
+    }
+
+    private void evictToken() {
+        if (event.getActorId() == null || event.getPNAttributes() == null) return;
+        actorAppTokenCache.evict(event.getActorId(), event.getActorType(), event.getPNAttributes().getMobileAppDetailsId(),
+                event.getPNAttributes().getAppToken());
+    }
 
-        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
-        int maxRetries = config.getInt("event.max.retries", 3);
-        String dlq = config.get("kafka.communication.event.dl.topic");
+    /**
+     * FCM HTTP v1 answers every request for a single token. UNREGISTERED tokens are evicted like NotRegistered of
+     * the legacy API and are not retried. A 401 means the access token was rejected, so it is fetched again.
+     */
+    private void processV1Response(int statusCode, HttpEntity entity) throws IOException {
+        Map<String, Object> result = entity == null ? null : HttpUtils.getResponseBody(entity, Map.class);
 
-        if(event.getRetryCount() < maxRetries) {
-            this.pushNotificationService.sendPushNotification(event);
-        } else {
-            log.error("Max retries exceeded for event : {}. Putting in DLQ", event);
-            this.producer.send(dlq, event.getOriginalEvent());
+        if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+            String vendorMessageId = result == null || result.get("name") == null ? "" : result.get("name").toString();
+            processSuccessResponse(vendorMessageId, result);
+            return;
         }
+
+        String errorCode = getV1ErrorCode(result);
+        IMetricCounter counter = metrics.getIMetricCounter(MetricGroupNames.NF_CE_PN_SERVICE, "api_exception", "status_code");
+        counter.increment(String.valueOf(statusCode));
+        log.error("Got error in sending PN for event : {}, status code: {}, error code: {}, responseBody: {}", event, statusCode, errorCode, result);
+
+        if (UNREGISTERED.equals(errorCode)) {
+            evictToken();
+            processErrorResponse(String.valueOf(result));
+        } else if (statusCode == UNAUTHORIZED) {
+            fcmAccessTokenProvider.invalidate(credentialsPath);
+            retryEvent();
+        } else if (statusCode == TOO_MANY_REQUESTS || BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.CLIENT_ERROR) {
+            retryEvent();
+        }
+    }
+
+    private static String getV1ErrorCode(Map<String, Object> result) {
+        Object error = result == null ? null : result.get("error");
+        if (!(error instanceof Map)) return null;
+        Object details = ((Map<?, ?>) error).get("details");
+        if (details instanceof List) {
+            for (Object detail : (List<?>) details) {
+                if (detail instanceof Map && ((Map<?, ?>) detail).get("errorCode") != null) {
+                    return ((Map<?, ?>) detail).get("errorCode").toString();
+                }
+            }
+        }
+        Object status = ((Map<?, ?>) error).get("status");
+        return status == null ? null : status.toString();
+    }
+
+    private void processSuccessResponse(String vendorMessageId, Map<String, Object> result) {
+        messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_DELIVERED, Timestamp.valueOf(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())), vendorMessageId, referenceId, null, CommunicationChannel.APP_NOTIFICATION.toString());
+        log.info("Successfully delivered PN for event : {}, response : {}", event, result);
+        metrics.onIncrement(MetricGroupNames.NF_CE_PN_SERVICE, "api_successful", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST, event.getTemplateName(),languageCache.getLanguageById(event.getLanguageId()).getName(),MessageAcknowledgement.State.VENDOR_DELIVERED.name(),
+             event.getVendor().name());
+    }
+
+    private void processErrorResponse(String results) {
+        Map<String, String> attributes = Map.of(
+                "error", results
+        );
+        messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_UNDELIVERED, null, "", referenceId,  attributes, CommunicationChannel.APP_NOTIFICATION.toString());
+        log.error("Error in sending PN for event : {}, error : {}", event, results);
+        metrics.onIncrement(MetricGroupNames.NF_CE_PN_SERVICE, "api_error", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST,
+                event.getTemplateName(),languageCache.getLanguageById(event.getLanguageId()).getName(),
+                MessageAcknowledgement.State.VENDOR_UNDELIVERED.name(),
+                "Firebase"
+        );
+    }
+
+    private void retryEvent() {
+        this.pushNotificationService.retry(event);
     }
 
     @Override
@@ -106,29 +208,20 @@ public class PushNotificationServiceCallback implements FutureCallback<HttpRespo
             int statusCode = response.getStatusLine().getStatusCode();
             HttpEntity entity = response.getEntity();
 
-            if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+            if (credentialsPath != null) {
+                processV1Response(statusCode, entity);
+
+            } else if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
 
                 Map<String, Object> result = HttpUtils.getResponseBody(entity, Map.class);
 
                 if(Integer.parseInt(result.get("success").toString()) == 1) {
                     String vendorMessageId = result.get("multicast_id").toString().trim();
-                    messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_DELIVERED, Timestamp.valueOf(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())), vendorMessageId, referenceId, null, CommunicationChannel.APP_NOTIFICATION.toString());
-                    log.info("Successfully delivered PN for event : {}, response : {}", event, result);
-                    metrics.onIncrement(MetricGroupNames.NF_CE_PN_SERVICE, "api_successful", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST, event.getTemplateName(),languageCache.getLanguageById(event.getLanguageId()).getName(),MessageAcknowledgement.State.VENDOR_DELIVERED.name(),
-                         event.getVendor().name());
+                    processSuccessResponse(vendorMessageId, result);
 
                 } else {
-                    String results = result.get("results").toString();
-                    Map<String, String> attributes = Map.of(
-                            "error", results
-                    );
-                    messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_UNDELIVERED, null, "", referenceId,  attributes, CommunicationChannel.APP_NOTIFICATION.toString());
-                    log.error("Error in sending PN for event : {}, error : {}", event, result);
-                    metrics.onIncrement(MetricGroupNames.NF_CE_PN_SERVICE, "api_error", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST,
-                            event.getTemplateName(),languageCache.getLanguageById(event.getLanguageId()).getName(),
-                            MessageAcknowledgement.State.VENDOR_UNDELIVERED.name(),
-                            "Firebase"
-                    );
+                    evictUnregisteredToken(result.get("results"));
+                    processErrorResponse(result.get("results").toString());
                     retryEvent();
                 }
 
@@ -150,6 +243,13 @@ public class PushNotificationServiceCallback implements FutureCallback<HttpRespo
         retryEvent();
     }
 
+    @Override
+    public void rejected() {
+        CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        log.warn("PushNotificationService call rejected for lack of a callback slot for event : {}", event);
+        retryEvent();
+    }
+
     @Override
     public void cancelled() {
         CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
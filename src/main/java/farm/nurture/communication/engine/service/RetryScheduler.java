@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
+import farm.nurture.communication.engine.metric.ExecutorMetrics;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import farm.nurture.kafka.Producer;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Delays retries of failed sends instead of sending them again from the http callback thread.
+ *
+ * A retry waits on a timing wheel for an exponential backoff with jitter, configured per vendor as
+ * retry.backoff.&lt;vendor&gt;.base.millis and .max.millis, and is then sent from a worker pool. Events that used up
+ * event.max.retries, or that arrive while retry.max.pending retries are already waiting, go to the DLQ.
+ */
+@Slf4j
+@Singleton
+public class RetryScheduler {
+
+    private static final String[] LABELS = {"vendor"};
+
+    @Inject
+    private Producer producer;
+
+    private final ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Timer timer = new HashedWheelTimer(runnable -> {
+        Thread thread = new Thread(runnable, "retry-timer");
+        thread.setDaemon(true);
+        return thread;
+    }, config.getInt("retry.timer.tick.millis", 100), TimeUnit.MILLISECONDS, config.getInt("retry.timer.ticks.per.wheel", 512));
+
+    private final ExecutorService workers = createWorkers(config.getInt("retry.worker.threads", 4));
+
+    /**
+     * Schedules the next attempt of the event, which failed on the given vendor. The retry count is incremented
+     * here, and send is called with the event once its backoff has elapsed.
+     */
+    public void retry(DerivedCommunicationEvent event, VendorType failedVendor, Consumer<DerivedCommunicationEvent> send) {
+        event.setRetryCount(event.getRetryCount() + 1);
+        String vendor = failedVendor == null ? "unknown" : failedVendor.name().toLowerCase();
+
+        if (event.getRetryCount() >= config.getInt("event.max.retries", 3)) {
+            log.error("Max retries exceeded for event : {}. Putting in DLQ", event);
+            sendToDlq(event, vendor, "max_retries");
+            return;
+        }
+        if (pending.incrementAndGet() > config.getInt("retry.max.pending", 10000)) {
+            pending.decrementAndGet();
+            log.error("Retry budget exhausted for event : {}. Putting in DLQ", event);
+            sendToDlq(event, vendor, "budget_exhausted");
+            return;
+        }
+
+        long delayMillis = backoffMillis(vendor, event.getRetryCount());
+        metrics.onIncrement(MetricGroupNames.NF_CE_RETRY, "scheduled", LABELS, vendor);
+        timer.newTimeout(timeout -> workers.execute(() -> {
+            pending.decrementAndGet();
+            try {
+                send.accept(event);
+            } catch (Exception e) {
+                log.error("Error in retrying event : {}", event, e);
+            }
+        }), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Equal jitter: half of the exponential delay is kept, the other half is random, so retries of a burst of
+     * failures spread out without any of them coming back immediately.
+     */
+    long backoffMillis(String vendor, int retryCount) {
+        long baseMillis = config.getInt("retry.backoff." + vendor + ".base.millis", config.getInt("retry.backoff.base.millis", 500));
+        long maxMillis = config.getInt("retry.backoff." + vendor + ".max.millis", config.getInt("retry.backoff.max.millis", 30000));
+        long delayMillis = Math.min(maxMillis, baseMillis << Math.min(Math.max(retryCount - 1, 0), 20));
+        long half = delayMillis / 2;
+        return half + ThreadLocalRandom.current().nextLong(delayMillis - half + 1);
+    }
+
+    private void sendToDlq(DerivedCommunicationEvent event, String vendor, String reason) {
+        metrics.onIncrement(MetricGroupNames.NF_CE_RETRY, "dlq", new String[]{"vendor", "reason"}, vendor, reason);
+        producer.send(config.get("kafka.communication.event.dl.topic"), event.getOriginalEvent());
+    }
+
+    private static ExecutorService createWorkers(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "retry-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorMetrics.getInstance().addExecutor("retry_worker", executor);
+        return executor;
+    }
+}
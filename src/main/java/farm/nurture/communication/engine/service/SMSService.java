@@ -29,16 +29,20 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.MetricTracker;
 import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
 import farm.nurture.communication.engine.vendor.GupShupVendor;
 import farm.nurture.communication.engine.vendor.KarixVendor;
 import farm.nurture.communication.engine.vendor.Vendor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
 import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.core.contracts.common.enums.CommunicationChannel;
 import farm.nurture.core.contracts.communication.engine.CommunicationEvent;
 import farm.nurture.core.contracts.communication.engine.Placeholder;
 import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.TimeOutConfig;
-import farm.nurture.util.http.client.NFAsyncHttpClient;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.HashMap;
@@ -49,7 +53,28 @@ import java.util.List;
 public class SMSService {
 
     @Inject
-    private NFAsyncHttpClient nfAsyncHttpClient;
+    private VendorHttpClients vendorHttpClients;
+
+    @Inject
+    private CallbackExecutor callbackExecutor;
+
+    @Inject
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    @Inject
+    private VendorRateLimiter vendorRateLimiter;
+
+    @Inject
+    private KarixSmsBatcher karixSmsBatcher;
+
+    @Inject
+    private RetryScheduler retryScheduler;
+
+    @Inject
+    private SmsHedger smsHedger;
+
+    @Inject
+    private AcknowledgementCompletions acknowledgementCompletions;
 
     @Inject
     private TimeOutConfig timeOutConfig;
@@ -74,22 +99,39 @@ public class SMSService {
 
         boolean success = false;
         MetricTracker tracker = new MetricTracker(MetricGroupNames.NF_CE, "sms_service", Constants.LABEL_TEMPLATE, Constants.LABEL_LANGUAGE,Constants.LABEL_VENDOR);
-        Vendor vendor;
         try {
-            if(event.getVendor() == VendorType.GUPSHUP){
-                vendor = gupshupVendor;
-            }else {
-                vendor = karixVendor;
-            }
+            Vendor vendor = getVendor(event.getVendor());
             HttpClientRequest sendRequest = vendor.requestForSendSms(event);
 
             String referenceId = populateMessageAcknowledgements(event);
             if(referenceId != null) {
                 CommunicationEventHandler.IN_FLIGHT_COUNTER.incrementAndGet();
 
-                nfAsyncHttpClient.sendMessage(sendRequest.getMethod(), sendRequest.getUrl(), sendRequest.getRequestParams(), sendRequest.getHeaders(), sendRequest.getRequestBody(),
-                        new SMSServiceCallback(this, producer, event, messageAcknowledgementRepository, referenceId, languageCache),  TimeOutConfigs.smsServiceTimeOutConfig());
-                success = true;
+                boolean hedged = smsHedger.isHedged(event);
+                if (!hedged && vendor == karixVendor && event.getRetryCount() == 0 && karixSmsBatcher.add(event,
+                        new SMSServiceCallback(this, producer, event, messageAcknowledgementRepository, referenceId, languageCache, null))) {
+                    success = true;
+                    return;
+                }
+                SmsHedger.Hedge hedge = hedged ? new SmsHedger.Hedge() : null;
+                SMSServiceCallback callback = new SMSServiceCallback(this, producer, event, messageAcknowledgementRepository, referenceId, languageCache, vendorLoadBalancer,
+                        smsHedger, hedge, false);
+                Runnable request = send(vendor, sendRequest, callback);
+                /* The hedge delay starts once the primary request is sent, not while it waits for the rate limit */
+                Runnable send = !hedged ? request : () -> {
+                    request.run();
+                    smsHedger.schedule(hedge, vendor.getVendorName(), () -> sendHedge(event, referenceId, hedge));
+                };
+                /* Retry workers must not wait for queue space, retries that do not fit go to the DLQ */
+                if (vendorRateLimiter.dispatch(CommunicationChannel.SMS.name(), vendor.getVendorName(), send, event.getRetryCount() == 0)) {
+                    success = true;
+                } else if (event.getRetryCount() == 0 && !Thread.currentThread().isInterrupted()) {
+                    /* The queue stayed full for the whole wait, so the first attempt is delayed rather than dead-lettered */
+                    CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+                    retry(event, false);
+                } else {
+                    deadLetter(event);
+                }
             }
 
         } catch (Exception e) {
@@ -100,6 +142,86 @@ public class SMSService {
         }
     }
 
+    /**
+     * Sends the hedge leg of an SMS to the other vendor. The acknowledgement row is left to the leg that is
+     * accepted first, see {@link #reassignAcknowledgement}.
+     */
+    private void sendHedge(DerivedCommunicationEvent event, String referenceId, SmsHedger.Hedge hedge) {
+        VendorType hedgeVendor = event.getVendor() == VendorType.GUPSHUP ? VendorType.KARIX : VendorType.GUPSHUP;
+        boolean sent = false;
+        boolean inFlight = false;
+        try {
+            DerivedCommunicationEvent hedgeEvent = event.toBuilder().vendor(hedgeVendor).build();
+            Vendor vendor = getVendor(hedgeVendor);
+            HttpClientRequest sendRequest = vendor.requestForSendSms(hedgeEvent);
+            SMSServiceCallback callback = new SMSServiceCallback(this, producer, hedgeEvent, messageAcknowledgementRepository, referenceId, languageCache, vendorLoadBalancer,
+                    smsHedger, hedge, true);
+            CommunicationEventHandler.IN_FLIGHT_COUNTER.incrementAndGet();
+            inFlight = true;
+            sent = vendorRateLimiter.dispatch(CommunicationChannel.SMS.name(), hedgeVendor, send(vendor, sendRequest, callback), false);
+
+        } catch (Exception e) {
+            log.error("Error in sending hedge SMS for event : {}", event, e);
+
+        } finally {
+            if (!sent) {
+                if (inFlight) CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+                smsHedger.onAbandoned(hedgeVendor);
+                /* The primary leg failed while this one was being sent */
+                if (hedge.abandon()) retry(event, true);
+            }
+        }
+    }
+
+    /**
+     * Points the acknowledgement row at the vendor of a hedge leg that was accepted, so that its delivery
+     * reports find the row.
+     */
+    void reassignAcknowledgement(DerivedCommunicationEvent event) {
+        populateMessageAcknowledgements(event);
+    }
+
+    /**
+     * Acknowledgement state written by a send callback, for anyone waiting on the reference id.
+     */
+    void onAcknowledgement(String referenceId, MessageAcknowledgement.State state) {
+        acknowledgementCompletions.signal(referenceId, state);
+    }
+
+    /**
+     * Moves an SMS that did not fit in the rate limit queue of its vendor to the DLQ.
+     */
+    void deadLetter(DerivedCommunicationEvent event) {
+        CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        log.error("Rate limit queue is full for event : {}. Putting in DLQ", event);
+        producer.send(ApplicationConfiguration.getInstance().get("kafka.communication.event.dl.topic"), event.getOriginalEvent());
+    }
+
+    private Runnable send(Vendor vendor, HttpClientRequest sendRequest, SMSServiceCallback callback) {
+        return () -> {
+            callback.markSent();
+            callbackExecutor.send(callback, offloaded -> vendorHttpClients.get(vendor.getVendorName()).sendMessage(sendRequest.getMethod(), sendRequest.getUrl(),
+                    sendRequest.getRequestParams(), sendRequest.getHeaders(), sendRequest.getRequestBody(), offloaded, TimeOutConfigs.smsServiceTimeOutConfig()));
+        };
+    }
+
+    private Vendor getVendor(VendorType vendorType) {
+        return vendorType == VendorType.GUPSHUP ? gupshupVendor : karixVendor;
+    }
+
+    /**
+     * Schedules another attempt of an SMS that failed, on the other vendor unless switchVendor is false.
+     */
+    public void retry(DerivedCommunicationEvent event, boolean switchVendor) {
+        VendorType failedVendor = event.getVendor();
+        retryScheduler.retry(event, failedVendor, retried -> {
+            if (switchVendor) {
+                retried.setVendor(failedVendor == VendorType.GUPSHUP ? VendorType.KARIX : VendorType.GUPSHUP);
+            }
+            sendSms(retried);
+        });
+    }
+
     private String populateMessageAcknowledgements(DerivedCommunicationEvent derivedCommunicationEvent) {
 
         CommunicationEvent commEvent = null;
@@ -26,27 +26,29 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.KarixVendor;
 import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.enums.CommunicationChannel;
 import farm.nurture.infra.metrics.IMetricCounter;
-import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.client.BaseHttpResponseException;
 import farm.nurture.util.serializer.Serializer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.util.EntityUtils;
 
-import java.io.IOException;
 import java.sql.Timestamp;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Map;
 
 @Slf4j
-public class SMSServiceCallback implements FutureCallback<HttpResponse> {
+public class SMSServiceCallback implements CallbackExecutor.RejectableCallback<HttpResponse> {
+
+    private static final int TOO_MANY_REQUESTS = 429;
 
     private SMSService smsService;
 
@@ -60,51 +62,99 @@ public class SMSServiceCallback implements FutureCallback<HttpResponse> {
 
     private LanguageCache languageCache;
 
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    /* Vendor this request was sent to, as retries switch the vendor of the event */
+    private VendorType vendor;
+
+    /* Set when the request is sent, so that latencies leave out the wait for the vendor rate limit */
+    private volatile long sentAt;
+
+    private SmsHedger smsHedger;
+
+    /* Shared with the other leg when this SMS is hedged, null otherwise */
+    private SmsHedger.Hedge hedge;
+
+    private boolean hedgeLeg;
+
     Metrics metrics = Metrics.getInstance();
 
 
-    public SMSServiceCallback(SMSService smsService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache) {
+    public SMSServiceCallback(SMSService smsService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache, VendorLoadBalancer vendorLoadBalancer) {
         this.smsService = smsService;
         this.producer = producer;
         this.event = event;
         this.messageAcknowledgementRepository = messageAcknowledgementRepository;
         this.referenceId = referenceId;
         this.languageCache = languageCache;
+        this.vendorLoadBalancer = vendorLoadBalancer;
+        this.vendor = event.getVendor();
+        this.sentAt = System.currentTimeMillis();
     }
 
-    private void processError(HttpEntity entity, int statusCode) throws IOException {
-        IMetricCounter counter = metrics.getIMetricCounter(MetricGroupNames.NF_CE_SMS_SERVICE, "api_exception", "status_code");
-        counter.increment(String.valueOf(statusCode));
+    public SMSServiceCallback(SMSService smsService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache, VendorLoadBalancer vendorLoadBalancer,
+                              SmsHedger smsHedger, SmsHedger.Hedge hedge, boolean hedgeLeg) {
+        this(smsService, producer, event, messageAcknowledgementRepository, referenceId, languageCache, vendorLoadBalancer);
+        this.smsHedger = smsHedger;
+        this.hedge = hedge;
+        this.hedgeLeg = hedgeLeg;
+    }
 
-        String responseBody = null;
-        if (entity != null) {
-            responseBody = EntityUtils.toString(entity, Charsets.UTF_8);
+    void markSent() {
+        sentAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Whether this leg acts on its result. Without a hedge that is always the case; with one, only the first
+     * accepted leg, or the last failed leg when none was accepted.
+     */
+    private boolean settle(boolean accepted) {
+        if (hedge == null) return true;
+        boolean settled = accepted ? hedge.accept() : hedge.fail();
+        if (!settled) {
+            log.info("Discarding {} result of {} leg for hedged event : {}", accepted ? "accepted" : "failed", vendor, event);
+            smsHedger.onDiscarded(vendor, hedgeLeg);
+        } else if (accepted) {
+            smsHedger.onAccepted(hedge, vendor, hedgeLeg);
         }
+        return settled;
+    }
+
+    private void recordVendorHealth(boolean healthy) {
+        /* Batched requests record vendor health once for the whole batch */
+        if (vendorLoadBalancer == null) return;
+        long latencyMillis = System.currentTimeMillis() - sentAt;
+        if (healthy) {
+            vendorLoadBalancer.recordSuccess(CommunicationChannel.SMS.name(), vendor, latencyMillis);
+        } else {
+            vendorLoadBalancer.recordFailure(CommunicationChannel.SMS.name(), vendor, latencyMillis);
+        }
+    }
+
+    private void processError(String responseBody, int statusCode) {
+        if (!settle(false)) return;
+        smsService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
+        IMetricCounter counter = metrics.getIMetricCounter(MetricGroupNames.NF_CE_SMS_SERVICE, "api_exception", "status_code");
+        counter.increment(String.valueOf(statusCode));
 
         log.error("Got error in sending SMS for event : {}, status code: {}, responseBody: {}", event, statusCode, responseBody);
-        if (BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.CLIENT_ERROR) {
+        if (statusCode == TOO_MANY_REQUESTS) {
+            /* Throttled by the vendor, so retry through its rate limit rather than move the event to the other vendor */
+            retryEvent(false);
+        } else if (BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.CLIENT_ERROR) {
             retryEvent();
         }
     }
 
     private void retryEvent() {
-        event.setRetryCount(event.getRetryCount() + 1);
-
-        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
-        int maxRetries = config.getInt("event.max.retries", 3);
-        String dlq = config.get("kafka.communication.event.dl.topic");
+        retryEvent(true);
+    }
 
-        if (event.getRetryCount() < maxRetries) {
-            if (event.getVendor() == VendorType.GUPSHUP) {
-                event.setVendor(VendorType.KARIX);
-            } else {
-                event.setVendor(VendorType.GUPSHUP);
-            }
-            this.smsService.sendSms(event);
-        } else {
-            log.error("Max retries exceeded for event : {}. Putting in DLQ", event);
-            this.producer.send(dlq, event.getOriginalEvent());
+    private void retryEvent(boolean switchVendor) {
+        if (!switchVendor) {
+            log.info("Retrying event : {} with same vendor", event);
         }
+        this.smsService.retry(event, switchVendor);
     }
 
     @Override
@@ -113,39 +163,64 @@ public class SMSServiceCallback implements FutureCallback<HttpResponse> {
         try {
             int statusCode = response.getStatusLine().getStatusCode();
             HttpEntity entity = response.getEntity();
+            recordVendorHealth(BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.SERVER_ERROR);
+            if (smsHedger != null && BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+                smsHedger.recordLatency(vendor, System.currentTimeMillis() - sentAt);
+            }
+            processResponse(statusCode, entity == null ? null : EntityUtils.toString(entity, Charsets.UTF_8), false);
 
-            if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+        } catch (Exception e) {
+            log.error("Exception in processing SMSServiceCallback for event : {}, error : {}", event, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Completes this event with the response of a batched request, which {@link KarixSmsBatchCallback} reads
+     * once for the whole batch.
+     */
+    void completed(int statusCode, String result) {
+        CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        try {
+            processResponse(statusCode, result, true);
 
-                String result = EntityUtils.toString(entity);
+        } catch (Exception e) {
+            log.error("Exception in processing SMSServiceCallback for event : {}, error : {}", event, e.getMessage(), e);
+        }
+    }
 
-                if (event.getVendor() == VendorType.GUPSHUP) {
-                    if (result.contains("error")) {
-                        processErrorResponse(result);
-                    } else {
-                        String vendorMessageId = result.substring(result.lastIndexOf('|') + 2).trim();
-                        processSuccessResponse(vendorMessageId, result);
-                    }
+    private void processResponse(int statusCode, String result, boolean batched) {
+        if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+
+            if (event.getVendor() == VendorType.GUPSHUP) {
+                if (result.contains("error")) {
+                    processErrorResponse(result);
                 } else {
-                    KarixSmsResponse karixSmsResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, KarixSmsResponse.class);
-                    if (karixSmsResponse.getStatus().getCode()!=200) {
-                        processErrorResponse(result);
-                    }else {
-                        String vendorMessageId = karixSmsResponse.getAckid();
-                        processSuccessResponse(vendorMessageId, result);
-                    }
+                    String vendorMessageId = result.substring(result.lastIndexOf('|') + 2).trim();
+                    processSuccessResponse(vendorMessageId, result);
                 }
-
             } else {
-                log.error("Error in sending SMS for event : {}", event);
-                this.processError(entity, statusCode);
+                KarixSmsResponse karixSmsResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, KarixSmsResponse.class);
+                if (karixSmsResponse.getStatus().getCode()!=200) {
+                    processErrorResponse(result);
+                }else {
+                    /* A batch shares its ackid between every destination, so batched SMS are stored per recipient */
+                    String vendorMessageId = batched ? KarixVendor.recipientMessageId(karixSmsResponse.getAckid(), event.getSmsAttributes().getMobileNumber())
+                            : karixSmsResponse.getAckid();
+                    processSuccessResponse(vendorMessageId, result);
+                }
             }
 
-        } catch (Exception e) {
-            log.error("Exception in processing SMSServiceCallback for event : {}, error : {}", event, e.getMessage(), e);
+        } else {
+            log.error("Error in sending SMS for event : {}", event);
+            this.processError(result, statusCode);
         }
     }
 
     private void processSuccessResponse(String vendorMessageId, String result) {
+        if (!settle(true)) return;
+        if (hedgeLeg) {
+            smsService.reassignAcknowledgement(event);
+        }
 
         messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_DELIVERED, Timestamp.valueOf(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date())), vendorMessageId, referenceId, null, CommunicationChannel.SMS.toString());
         log.info("Successfully delivered SMS for event : {}, response : {}", event, result);
@@ -155,9 +230,11 @@ public class SMSServiceCallback implements FutureCallback<HttpResponse> {
     }
 
     private void processErrorResponse(String result) {
+        if (!settle(false)) return;
 
         Map<String, String> attributes = Map.of("error", result);
         messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_UNDELIVERED, null, "", referenceId, attributes, CommunicationChannel.SMS.toString());
+        smsService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
         metrics.onIncrement(MetricGroupNames.NF_CE_SMS_SERVICE, "api_error_response", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST, event.getTemplateName(), languageCache.getLanguageById(event.getLanguageId()).getName(), MessageAcknowledgement.State.VENDOR_DELIVERED.name(),
                 event.getVendor().name());
         logError(result);
@@ -177,9 +254,26 @@ public class SMSServiceCallback implements FutureCallback<HttpResponse> {
     @Override
     public void failed(Exception e) {
         CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        recordVendorHealth(false);
         log.error("SMSService call failed for event : {}, Error : {}", event, e.getMessage(), e);
         metrics.onIncrement(MetricGroupNames.NF_CE_SMS_SERVICE, "api_failed");
-        retryEvent();
+        if (settle(false)) {
+            smsService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
+            retryEvent();
+        }
+    }
+
+    /**
+     * The request was never sent, so the SMS is retried with the same vendor and the vendor's health is left
+     * as it was.
+     */
+    @Override
+    public void rejected() {
+        CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        log.warn("SMSService call rejected for lack of a callback slot for event : {}", event);
+        if (settle(false)) {
+            retryEvent(false);
+        }
     }
 
     @Override
@@ -187,5 +281,6 @@ public class SMSServiceCallback implements FutureCallback<HttpResponse> {
         CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
         log.error("SMSService call cancelled for event : {}", event);
         metrics.onIncrement(MetricGroupNames.NF_CE_SMS_SERVICE, "api_cancelled");
+        settle(false);
     }
 }
@@ -0,0 +1,310 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import com.google.inject.Singleton;
+import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Hedges SMS of latency sensitive templates, such as OTPs, across both SMS vendors.
+ *
+ * A first attempt of a template matching sms.hedge.template.patterns (SQL LIKE patterns, as used for OTP
+ * templates elsewhere) is sent to its vendor as usual. If that vendor has not accepted it within its rolling
+ * sms.hedge.percentile accept latency, the same message is sent to the other vendor as well. Both legs share
+ * a {@link Hedge}, so that only the first accepted leg updates the acknowledgement and a failed leg is retried
+ * only once no other leg is pending.
+ *
+ * The hedge delay runs from the moment the primary request is sent, not from when it was queued behind the
+ * vendor rate limit. At most sms.hedge.max.fired.ratio of the eligible SMS fire a hedge, with bursts of up to
+ * sms.hedge.max.burst hedges, so a slow vendor cannot double the traffic sent to the other one.
+ */
+@Slf4j
+@Singleton
+public class SmsHedger {
+
+    static final String LEG_PRIMARY = "primary";
+    static final String LEG_HEDGE = "hedge";
+
+    private static final String[] LABELS = {"vendor"};
+    private static final String[] LEG_LABELS = {"vendor", "leg"};
+
+    private final Metrics metrics = Metrics.getInstance();
+
+    private final Map<VendorType, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    private final boolean enabled;
+    private final List<Pattern> templatePatterns;
+    private final double percentile;
+    private final int windowSize;
+    private final int minSamples;
+    private final long defaultDelayMillis;
+    private final long minDelayMillis;
+    private final long maxDelayMillis;
+    private final Budget budget;
+
+    public SmsHedger() {
+        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+        this.enabled = config.getBoolean("sms.hedge.enabled", false);
+        this.templatePatterns = compile(config.get("sms.hedge.template.patterns", "%otp%"));
+        this.percentile = Double.parseDouble(config.get("sms.hedge.percentile", "0.95"));
+        this.windowSize = config.getInt("sms.hedge.window.size", 200);
+        this.minSamples = config.getInt("sms.hedge.min.samples", 20);
+        this.defaultDelayMillis = config.getInt("sms.hedge.delay.default.millis", 2000);
+        this.minDelayMillis = config.getInt("sms.hedge.delay.min.millis", 300);
+        this.maxDelayMillis = config.getInt("sms.hedge.delay.max.millis", 5000);
+        this.budget = new Budget(Double.parseDouble(config.get("sms.hedge.max.fired.ratio", "0.1")), config.getInt("sms.hedge.max.burst", 10));
+
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sms-hedge-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Only first attempts are hedged, retries already go to the other vendor.
+     */
+    public boolean isHedged(DerivedCommunicationEvent event) {
+        if (!enabled || event.getRetryCount() != 0 || event.getTemplateName() == null) return false;
+        for (Pattern pattern : templatePatterns) {
+            if (pattern.matcher(event.getTemplateName()).matches()) {
+                metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "eligible", LABELS, event.getVendor().name());
+                budget.deposit();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs hedgeSend once the primary vendor has had its hedge delay to accept the message, unless a leg
+     * of the hedge has settled by then or the hedge budget is used up. Called when the primary request is sent.
+     */
+    public void schedule(Hedge hedge, VendorType primary, Runnable hedgeSend) {
+        hedge.setTimer(timer.schedule(() -> fire(hedge, primary, hedgeSend), delayMillis(primary), TimeUnit.MILLISECONDS));
+    }
+
+    void fire(Hedge hedge, VendorType primary, Runnable hedgeSend) {
+        if (hedge.isSettled()) return;
+        if (!budget.withdraw()) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "budget_exhausted", LABELS, primary.name());
+            return;
+        }
+        if (!hedge.fire()) {
+            budget.refund();
+            return;
+        }
+        metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "fired", LABELS, primary.name());
+        hedgeSend.run();
+    }
+
+    /**
+     * Accept latency of a request that was not batched, which drives the hedge delay of its vendor.
+     */
+    public void recordLatency(VendorType vendor, long latencyMillis) {
+        latencies.computeIfAbsent(vendor, key -> new LatencyWindow(windowSize)).add(latencyMillis);
+    }
+
+    long delayMillis(VendorType vendor) {
+        LatencyWindow window = latencies.get(vendor);
+        long delay = window == null ? -1 : window.percentile(percentile, minSamples);
+        if (delay < 0) return defaultDelayMillis;
+        return Math.max(minDelayMillis, Math.min(maxDelayMillis, delay));
+    }
+
+    void onAccepted(Hedge hedge, VendorType vendor, boolean hedgeLeg) {
+        if (hedge.isFired()) {
+            metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "won", LEG_LABELS, vendor.name(), hedgeLeg ? LEG_HEDGE : LEG_PRIMARY);
+        }
+    }
+
+    void onDiscarded(VendorType vendor, boolean hedgeLeg) {
+        metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "discarded", LEG_LABELS, vendor.name(), hedgeLeg ? LEG_HEDGE : LEG_PRIMARY);
+    }
+
+    void onAbandoned(VendorType vendor) {
+        metrics.onIncrement(MetricGroupNames.NF_CE_SMS_HEDGE, "abandoned", LABELS, vendor.name());
+    }
+
+    static List<Pattern> compile(String patterns) {
+        List<Pattern> compiled = new ArrayList<>();
+        for (String like : patterns.split(",")) {
+            String trimmed = like.trim();
+            if (trimmed.isEmpty()) continue;
+            StringBuilder regex = new StringBuilder();
+            for (String part : trimmed.split("((?<=[%_])|(?=[%_]))")) {
+                if (part.equals("%")) regex.append(".*");
+                else if (part.equals("_")) regex.append('.');
+                else regex.append(Pattern.quote(part));
+            }
+            compiled.add(Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE));
+        }
+        return compiled;
+    }
+
+    /**
+     * Outcome of one hedged message. Legs report their result through {@link #accept()} or {@link #fail()},
+     * which tell the leg whether it is the one that acts on it.
+     */
+    static final class Hedge {
+        private int pending = 1;
+        private boolean fired = false;
+        private boolean settled = false;
+        private ScheduledFuture<?> timer;
+
+        synchronized boolean fire() {
+            if (settled) return false;
+            fired = true;
+            pending++;
+            return true;
+        }
+
+        /**
+         * True for the first accepted leg only.
+         */
+        synchronized boolean accept() {
+            pending--;
+            if (settled) return false;
+            settle();
+            return true;
+        }
+
+        /**
+         * True when no leg has been accepted and this was the last pending one.
+         */
+        synchronized boolean fail() {
+            pending--;
+            if (settled || pending > 0) return false;
+            settle();
+            return true;
+        }
+
+        /**
+         * Same as {@link #fail()}, for a hedge leg that could not be sent.
+         */
+        synchronized boolean abandon() {
+            return fail();
+        }
+
+        synchronized boolean isFired() {
+            return fired;
+        }
+
+        synchronized boolean isSettled() {
+            return settled;
+        }
+
+        private synchronized void setTimer(ScheduledFuture<?> timer) {
+            if (settled) {
+                timer.cancel(false);
+            } else {
+                this.timer = timer;
+            }
+        }
+
+        private void settle() {
+            settled = true;
+            if (timer != null) timer.cancel(false);
+        }
+    }
+
+    /**
+     * Hedges that may still be fired. Every eligible SMS adds the allowed fired ratio, up to the burst, and
+     * every fired hedge takes a whole one.
+     */
+    static final class Budget {
+        private final double ratio;
+        private final double burst;
+        private double available;
+
+        Budget(double ratio, int burst) {
+            this.ratio = ratio;
+            this.burst = burst;
+            this.available = burst;
+        }
+
+        synchronized void deposit() {
+            available = Math.min(burst, available + ratio);
+        }
+
+        synchronized boolean withdraw() {
+            if (available < 1) return false;
+            available--;
+            return true;
+        }
+
+        synchronized void refund() {
+            available = Math.min(burst, available + 1);
+        }
+    }
+
+    /**
+     * Last accept latencies of a vendor, with the percentile recomputed every few samples rather than on
+     * every send.
+     */
+    static final class LatencyWindow {
+        private static final int RECOMPUTE_EVERY = 10;
+
+        private final long[] samples;
+        private int next = 0;
+        private int count = 0;
+        private int sinceRecompute = 0;
+        private double computedFor = -1;
+        private long computed = -1;
+
+        LatencyWindow(int size) {
+            this.samples = new long[size];
+        }
+
+        synchronized void add(long latencyMillis) {
+            samples[next] = latencyMillis;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            sinceRecompute++;
+        }
+
+        synchronized long percentile(double percentile, int minSamples) {
+            if (count < minSamples) return -1;
+            if (computedFor != percentile || sinceRecompute >= RECOMPUTE_EVERY || computed < 0) {
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                computed = sorted[Math.max(0, Math.min(count - 1, (int) Math.ceil(percentile * count) - 1))];
+                computedFor = percentile;
+                sinceRecompute = 0;
+            }
+            return computed;
+        }
+    }
+}
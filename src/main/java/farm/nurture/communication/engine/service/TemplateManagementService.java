@@ -22,14 +22,17 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import farm.nurture.communication.engine.Constants;
+import farm.nurture.communication.engine.cache.MediaHandleCache;
 import farm.nurture.communication.engine.dto.*;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.Template;
 import farm.nurture.communication.engine.vendor.GupShupVendor;
 import farm.nurture.communication.engine.vendor.KarixVendor;
+import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.enums.ResponseStatus;
 import farm.nurture.core.contracts.common.enums.ResponseStatusCode;
 import farm.nurture.core.contracts.communication.engine.VendorResponse;
+import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.infra.util.StringUtils;
 import farm.nurture.util.http.client.BaseHttpResponseException;
 import farm.nurture.util.http.client.NFHttpClient;
@@ -40,12 +43,17 @@ import org.apache.http.HttpEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.util.EntityUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static farm.nurture.communication.engine.Constants.*;
 
@@ -72,43 +80,79 @@ public class TemplateManagementService {
     Metrics metrics = Metrics.getInstance();
     @Inject
     private NFHttpClient nfHttpClient;
+    @Inject
+    private CloseableHttpClient httpClient;
+    @Inject
+    private MediaHandleCache mediaHandleCache;
+
+    private final ExecutorService registrationExecutor = createRegistrationExecutor(
+            ApplicationConfiguration.getInstance().getInt("template.registration.threads", 4));
+
+    /**
+     * Registers a WhatsApp template with every vendor it has no template name for yet, with all vendors at once.
+     * Vendor calls add their template names and ids to the meta data of the template, so it is shared through a
+     * synchronized map while they run.
+     */
+    public List<VendorResponse> createTemplateInVendors(Template template) {
+        Map<String, Object> metaData = template.getMetaData();
+        template.setMetaData(Collections.synchronizedMap(metaData));
+        List<CompletableFuture<VendorResponse>> registrations = new ArrayList<>();
+        if (!metaData.containsKey(GUPSHUP_TEMPLATE_NAME)) {
+            log.info("Serving create template api gupshup request {} ", template);
+            registrations.add(CompletableFuture.supplyAsync(() -> createTemplateInGupshup(template), registrationExecutor));
+        }
+        if (!metaData.containsKey(KARIX_TEMPLATE_NAME)) {
+            log.info("Serving create template api karix request {} ", template);
+            registrations.add(CompletableFuture.supplyAsync(() -> createTemplateInKarix(template), registrationExecutor));
+        }
+
+        List<VendorResponse> vendorResponses = new ArrayList<>();
+        try {
+            for (CompletableFuture<VendorResponse> registration : registrations) {
+                vendorResponses.add(registration.join());
+            }
+        } finally {
+            template.setMetaData(new HashMap<>(template.getMetaData()));
+        }
+        return vendorResponses;
+    }
 
     public VendorResponse createTemplateInGupshup(Template template) {
         VendorResponse.Builder vendorResponseBuilder = VendorResponse.newBuilder();
         try {
-            CloseableHttpClient httpClient = HttpClients.createDefault();
             String fileName = gupshupVendor.findFile(template.getMetaData());
             HttpClientRequest<HttpEntity> httpClientRequest = gupshupVendor.createWhatsAppTemplate(template, fileName);
             HttpPost httppost = new HttpPost(httpClientRequest.getUrl());
             httppost.setEntity(httpClientRequest.getRequestBody());
             log.info("Serving create template request in gupshup {} ", httpClientRequest.getRequestBody());
-            CloseableHttpResponse response = httpClient.execute(httppost);
-            HttpEntity responseEntity = response.getEntity();
-            int statusCode = response.getStatusLine().getStatusCode();
-            vendorResponseBuilder.setVendorName(gupshupVendor.getVendorName().name());
-
-            if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
-                String result = EntityUtils.toString(responseEntity);
-                if (result.contains("error")) {
-                    GupshupCreateTemplateErrorResponse gupshupCreateTemplateErrorResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, GupshupCreateTemplateErrorResponse.class);
-                    log.error("Error in creating gupshup template: {}, result: {}", template, result);
-                    vendorResponseBuilder.setErrorMsg(gupshupCreateTemplateErrorResponse.getDetails());
-                    vendorResponseBuilder.setStatusCode(ResponseStatusCode.BAD_REQUEST);
-                    vendorResponseBuilder.setStatus(ResponseStatus.ERROR);
-                } else {
-                    GupshupCreateTemplateResponse gupshupCreateTemplateResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, GupshupCreateTemplateResponse.class);
-                    log.info("GupshupCreateTemplateResponse for creating template in gupshup {} ", gupshupCreateTemplateResponse);
-                    Map<String, Object> metaData = template.getMetaData();
-                    List<GupshupCreateTemplateResponse.Details> details = gupshupCreateTemplateResponse.getDetails();
-                    if (CollectionUtils.isNotEmpty(details)) {
-                        metaData.put(GUPSHUP_TEMPLATE_NAME, details.get(0).getTemplateName());
-                        metaData.put(GUPSHUP_TEMPLATE_ID, details.get(0).getTemplateId());
-                        vendorResponseBuilder.setStatus(ResponseStatus.SUCCESSFUL);
-                        vendorResponseBuilder.setStatusCode(ResponseStatusCode.OK);
-                        vendorResponseBuilder.setErrorMsg(details.get(0).getTemplateId());
-                    }
-                    template.setMetaData(metaData);
+            try (CloseableHttpResponse response = httpClient.execute(httppost)) {
+                HttpEntity responseEntity = response.getEntity();
+                int statusCode = response.getStatusLine().getStatusCode();
+                vendorResponseBuilder.setVendorName(gupshupVendor.getVendorName().name());
+
+                if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+                    String result = EntityUtils.toString(responseEntity);
+                    if (result.contains("error")) {
+                        GupshupCreateTemplateErrorResponse gupshupCreateTemplateErrorResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, GupshupCreateTemplateErrorResponse.class);
+                        log.error("Error in creating gupshup template: {}, result: {}", template, result);
+                        vendorResponseBuilder.setErrorMsg(gupshupCreateTemplateErrorResponse.getDetails());
+                        vendorResponseBuilder.setStatusCode(ResponseStatusCode.BAD_REQUEST);
+                        vendorResponseBuilder.setStatus(ResponseStatus.ERROR);
+                    } else {
+                        GupshupCreateTemplateResponse gupshupCreateTemplateResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, GupshupCreateTemplateResponse.class);
+                        log.info("GupshupCreateTemplateResponse for creating template in gupshup {} ", gupshupCreateTemplateResponse);
+                        Map<String, Object> metaData = template.getMetaData();
+                        List<GupshupCreateTemplateResponse.Details> details = gupshupCreateTemplateResponse.getDetails();
+                        if (CollectionUtils.isNotEmpty(details)) {
+                            metaData.put(GUPSHUP_TEMPLATE_NAME, details.get(0).getTemplateName());
+                            metaData.put(GUPSHUP_TEMPLATE_ID, details.get(0).getTemplateId());
+                            vendorResponseBuilder.setStatus(ResponseStatus.SUCCESSFUL);
+                            vendorResponseBuilder.setStatusCode(ResponseStatusCode.OK);
+                            vendorResponseBuilder.setErrorMsg(details.get(0).getTemplateId());
+                        }
+                        template.setMetaData(metaData);
 
+                    }
                 }
             }
         } catch (Exception e) {
@@ -151,11 +195,14 @@ public class TemplateManagementService {
     }
 
     private String uploadFile(Map<String, Object> metaData) {
+        String fileName = karixVendor.findFile(metaData);
+        if (fileName == null) return null;
+        return mediaHandleCache.get(VendorType.KARIX, karixVendor.getMediaFile(fileName), file -> uploadFile(fileName));
+    }
+
+    private String uploadFile(String fileName) {
         String fileHandle = null;
         try {
-            String fileName = karixVendor.findFile(metaData);
-            if (fileName == null) return null;
-            CloseableHttpClient httpClient = HttpClients.createDefault();
             HttpClientRequest<HttpEntity> httpClientRequest = karixVendor.uploadMedia(fileName);
             log.info("Serving upload file request in Karix for media template {} ", httpClientRequest);
 
@@ -165,20 +212,21 @@ public class TemplateManagementService {
             for (Map.Entry<String,String> entry : httpClientRequest.getHeaders().entrySet()){
                 httppost.addHeader(entry.getKey(), entry.getValue());
             }
-            CloseableHttpResponse response = httpClient.execute(httppost);
-
-            /*Upload File Response Handling */
-            HttpEntity responseEntity = response.getEntity();
-            int statusCode = response.getStatusLine().getStatusCode();
-            if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
-                String result = EntityUtils.toString(responseEntity);
-                if (result.contains("error")) {
-                    log.error("Error in uploading karix file {} ", result);
-                } else {
-                    KarixUploadMediaResponse karixUploadMediaResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, KarixUploadMediaResponse.class);
-                    log.info("Karix Response for uploading media {} ", karixUploadMediaResponse);
-                    if (karixUploadMediaResponse != null && karixUploadMediaResponse.getResponse() != null) {
-                        fileHandle = karixUploadMediaResponse.getResponse().getFileHandle();
+            try (CloseableHttpResponse response = httpClient.execute(httppost)) {
+
+                /*Upload File Response Handling */
+                HttpEntity responseEntity = response.getEntity();
+                int statusCode = response.getStatusLine().getStatusCode();
+                if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
+                    String result = EntityUtils.toString(responseEntity);
+                    if (result.contains("error")) {
+                        log.error("Error in uploading karix file {} ", result);
+                    } else {
+                        KarixUploadMediaResponse karixUploadMediaResponse = Serializer.DEFAULT_JSON_SERIALIZER.deserialize(result, KarixUploadMediaResponse.class);
+                        log.info("Karix Response for uploading media {} ", karixUploadMediaResponse);
+                        if (karixUploadMediaResponse != null && karixUploadMediaResponse.getResponse() != null) {
+                            fileHandle = karixUploadMediaResponse.getResponse().getFileHandle();
+                        }
                     }
                 }
             }
@@ -188,4 +236,13 @@ public class TemplateManagementService {
         return fileHandle;
     }
 
+    private static ExecutorService createRegistrationExecutor(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "template-registration-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
 }
\ No newline at end of file
@@ -25,6 +25,7 @@ import com.google.protobuf.Timestamp;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.TimeOutConfigs;
 import farm.nurture.communication.engine.cache.LanguageCache;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.dto.HttpClientRequest;
 import farm.nurture.communication.engine.event.CommunicationEventHandler;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
@@ -35,10 +36,15 @@ import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.models.WhatsappUsers;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
 import farm.nurture.communication.engine.repository.WhatsappUsersRepository;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
 import farm.nurture.communication.engine.vendor.GupShupVendor;
 import farm.nurture.communication.engine.vendor.KarixVendor;
 import farm.nurture.communication.engine.vendor.Vendor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
 import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.core.contracts.common.enums.CommunicationChannel;
 import farm.nurture.core.contracts.communication.engine.CommunicationEvent;
 import farm.nurture.core.contracts.communication.engine.Placeholder;
 import farm.nurture.infra.util.ApplicationConfiguration;
@@ -46,7 +52,6 @@ import farm.nurture.kafka.Producer;
 import farm.nurture.communication.engine.Constants;
 import farm.nurture.util.http.HttpUtils;
 import farm.nurture.util.http.TimeOutConfig;
-import farm.nurture.util.http.client.NFAsyncHttpClient;
 import farm.nurture.util.http.client.NFHttpClient;
 import farm.nurture.util.serializer.Serializer;
 import lombok.extern.slf4j.Slf4j;
@@ -72,17 +77,32 @@ public class WhatsappService {
     @Inject
     private WhatsappUsersRepository whatsappUsersRepository;
 
+    @Inject
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+
     @Inject
     private LanguageCache languageCache;
 
     @Inject
-    private NFAsyncHttpClient nfAsyncHttpClient;
+    private VendorHttpClients vendorHttpClients;
 
     @Inject
-    private NFHttpClient nfHttpClient;
+    private CallbackExecutor callbackExecutor;
+
+    @Inject
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    @Inject
+    private VendorRateLimiter vendorRateLimiter;
+
+    @Inject
+    private RetryScheduler retryScheduler;
 
     @Inject
-    private TimeOutConfig timeOutConfig;
+    private AcknowledgementCompletions acknowledgementCompletions;
+
+    @Inject
+    private NFHttpClient nfHttpClient;
 
     @Inject
     private CloseableHttpClient closeableHttpClient;
@@ -120,29 +140,44 @@ public class WhatsappService {
 
         try {
 
-            WhatsappUsers whatsappUsers = whatsappUsersRepository.getByMobileNumberKey(event.getWhatsappAttributes().getMobileNumber());
+            String mobileNumber = event.getWhatsappAttributes().getMobileNumber();
+            WhatsappUsersStatusIndex.Decision decision = whatsappUsersStatusIndex.validate(mobileNumber);
+            boolean validUser = decision == WhatsappUsersStatusIndex.Decision.UNKNOWN ?
+                    validateWhatsAppUser(whatsappUsersRepository.getByMobileNumberKey(mobileNumber)) :
+                    decision == WhatsappUsersStatusIndex.Decision.VALID;
             Vendor vendor;
             if(event.getVendor() == VendorType.GUPSHUP){
                 vendor = gupshupVendor;
             }else {
                 vendor = karixVendor;
             }
-            if(validateWhatsAppUser(whatsappUsers)) {
+            if(validUser) {
 
                     log.info("WhatsappUsers is present with opt_in status in whatsapp_user for event : {}", event);
                     HttpClientRequest httpClientRequest = vendor.getWhatsAppData(event);
                     String referenceId = populateMessageAcknowledgements(event, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
                     if (referenceId != null) {
                         CommunicationEventHandler.IN_FLIGHT_COUNTER.incrementAndGet();
-                        if (vendor == gupshupVendor)
-                            timeOutConfig = TimeOutConfigs.whatsappServiceGupshupTimeOutConfig();
-                        else
-                            timeOutConfig = TimeOutConfigs.whatsappServiceKarixTimeOutConfig();
-                        nfAsyncHttpClient.sendMessage(httpClientRequest.getMethod(), httpClientRequest.getUrl(),
-                                httpClientRequest.getRequestParams(), httpClientRequest.getHeaders(),
-                                httpClientRequest.getRequestBody(), new WhatsappServiceCallback(this, producer, event, messageAcknowledgementRepository, referenceId, languageCache), timeOutConfig);
-                        log.info("Message has been sent in whatsApp service using referenceId : {} and DerivedCommunicationEvent : {}", referenceId, event);
-                        success = true;
+                        TimeOutConfig timeOutConfig = vendor == gupshupVendor ?
+                                TimeOutConfigs.whatsappServiceGupshupTimeOutConfig() : TimeOutConfigs.whatsappServiceKarixTimeOutConfig();
+                        VendorType vendorType = vendor.getVendorName();
+                        WhatsappServiceCallback callback = new WhatsappServiceCallback(this, producer, event, messageAcknowledgementRepository, referenceId, languageCache, vendorLoadBalancer);
+                        Runnable send = () -> callbackExecutor.send(callback, offloaded -> vendorHttpClients.get(vendorType).sendMessage(httpClientRequest.getMethod(),
+                                httpClientRequest.getUrl(), httpClientRequest.getRequestParams(), httpClientRequest.getHeaders(),
+                                httpClientRequest.getRequestBody(), offloaded, timeOutConfig));
+                        /* Retry workers must not wait for queue space, retries that do not fit go to the DLQ */
+                        if (vendorRateLimiter.dispatch(CommunicationChannel.WHATSAPP.name(), vendorType, send, event.getRetryCount() == 0)) {
+                            log.info("Message has been sent in whatsApp service using referenceId : {} and DerivedCommunicationEvent : {}", referenceId, event);
+                            success = true;
+                        } else if (event.getRetryCount() == 0 && !Thread.currentThread().isInterrupted()) {
+                            /* The queue stayed full for the whole wait, so the first attempt is delayed rather than dead-lettered */
+                            CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+                            retry(event, false);
+                        } else {
+                            CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+                            log.error("Rate limit queue is full for event : {}. Putting in DLQ", event);
+                            producer.send(ApplicationConfiguration.getInstance().get("kafka.communication.event.dl.topic"), event.getOriginalEvent());
+                        }
                 }
             }else {
                 log.info("WhatsappUsers is not present with opt_in status in whatsapp_user for event : {}", event);
@@ -157,6 +192,26 @@ public class WhatsappService {
         }
     }
 
+    /**
+     * Acknowledgement state written by a send callback, for anyone waiting on the reference id.
+     */
+    void onAcknowledgement(String referenceId, MessageAcknowledgement.State state) {
+        acknowledgementCompletions.signal(referenceId, state);
+    }
+
+    /**
+     * Schedules another attempt of a WhatsApp message that failed, on the other vendor unless switchVendor is false.
+     */
+    public void retry(DerivedCommunicationEvent event, boolean switchVendor) {
+        VendorType failedVendor = event.getVendor();
+        retryScheduler.retry(event, failedVendor, retried -> {
+            if (switchVendor) {
+                retried.setVendor(failedVendor == VendorType.GUPSHUP ? VendorType.KARIX : VendorType.GUPSHUP);
+            }
+            sendMessage(retried);
+        });
+    }
+
     private String populateMessageAcknowledgements(DerivedCommunicationEvent derivedCommunicationEvent, MessageAcknowledgement.State messState) {
         log.info("Execution for populateMessageAcknowledgements in WhatsappService started using DerivedCommunicationEvent : {} and messState : {}",
                 derivedCommunicationEvent, messState);
@@ -26,17 +26,17 @@ import farm.nurture.communication.engine.metric.MetricGroupNames;
 import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.models.MessageAcknowledgement;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
 import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.enums.CommunicationChannel;
 import farm.nurture.infra.metrics.IMetricCounter;
-import farm.nurture.infra.util.ApplicationConfiguration;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.client.BaseHttpResponseException;
 import farm.nurture.util.serializer.Serializer;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.util.EntityUtils;
 
 import java.io.IOException;
@@ -46,7 +46,9 @@ import java.util.Date;
 import java.util.Map;
 
 @Slf4j
-public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
+public class WhatsappServiceCallback implements CallbackExecutor.RejectableCallback<HttpResponse> {
+
+    private static final int TOO_MANY_REQUESTS = 429;
 
     private WhatsappService whatsappService;
 
@@ -60,20 +62,40 @@ public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
 
     private LanguageCache languageCache;
 
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    /* Vendor this request was sent to, as retries switch the vendor of the event */
+    private VendorType vendor;
+
+    private long sentAt;
+
     Metrics metrics = Metrics.getInstance();
 
-    public WhatsappServiceCallback(WhatsappService whatsappService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache) {
+    public WhatsappServiceCallback(WhatsappService whatsappService, Producer producer, DerivedCommunicationEvent event, MessageAcknowledgementRepository messageAcknowledgementRepository, String referenceId, LanguageCache languageCache, VendorLoadBalancer vendorLoadBalancer) {
         this.whatsappService = whatsappService;
         this.producer = producer;
         this.event = event;
         this.messageAcknowledgementRepository = messageAcknowledgementRepository;
         this.referenceId = referenceId;
         this.languageCache = languageCache;
+        this.vendorLoadBalancer = vendorLoadBalancer;
+        this.vendor = event.getVendor();
+        this.sentAt = System.currentTimeMillis();
+    }
+
+    private void recordVendorHealth(boolean healthy) {
+        long latencyMillis = System.currentTimeMillis() - sentAt;
+        if (healthy) {
+            vendorLoadBalancer.recordSuccess(CommunicationChannel.WHATSAPP.name(), vendor, latencyMillis);
+        } else {
+            vendorLoadBalancer.recordFailure(CommunicationChannel.WHATSAPP.name(), vendor, latencyMillis);
+        }
     }
 
     private void processError(HttpEntity entity, int statusCode) throws IOException {
         IMetricCounter counter = metrics.getIMetricCounter(MetricGroupNames.NF_CE_WHATSAPP_SERVICE, "api_exception", "status_code");
         counter.increment(String.valueOf(statusCode));
+        whatsappService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
 
         String responseBody = null;
         if (entity != null) {
@@ -81,29 +103,23 @@ public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
         }
 
         log.error("Got error in sending Whatsapp message for event : {}, status code: {}, responseBody: {}", event, statusCode, responseBody);
-        if (BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.CLIENT_ERROR) {
+        if (statusCode == TOO_MANY_REQUESTS) {
+            /* Throttled by the vendor, so retry through its rate limit rather than move the event to the other vendor */
+            retryEvent(false);
+        } else if (BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.CLIENT_ERROR) {
             retryEvent();
         }
     }
 
     private void retryEvent() {
-        event.setRetryCount(event.getRetryCount() + 1);
-
-        ApplicationConfiguration config = ApplicationConfiguration.getInstance();
-        int maxRetries = config.getInt("event.max.retries", 3);
-        String dlq = config.get("kafka.communication.event.dl.topic");
+        retryEvent(true);
+    }
 
-        if (event.getRetryCount() < maxRetries) {
-            if (event.getVendor() == VendorType.GUPSHUP) {
-                event.setVendor(VendorType.KARIX);
-            } else {
-                event.setVendor(VendorType.GUPSHUP);
-            }
-            this.whatsappService.sendMessage(event);
-        } else {
-            log.error("Max retries exceeded for event : {}. Putting in DLQ", event);
-            this.producer.send(dlq, event.getOriginalEvent());
+    private void retryEvent(boolean switchVendor) {
+        if (!switchVendor) {
+            log.info("Retrying event : {} with same vendor", event);
         }
+        this.whatsappService.retry(event, switchVendor);
     }
 
     @Override
@@ -112,6 +128,7 @@ public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
         try {
             int statusCode = response.getStatusLine().getStatusCode();
             HttpEntity entity = response.getEntity();
+            recordVendorHealth(BaseHttpResponseException.Family.familyOf(statusCode) != BaseHttpResponseException.Family.SERVER_ERROR);
 
             //ADD response parsing logic
             if (BaseHttpResponseException.Family.familyOf(statusCode) == BaseHttpResponseException.Family.SUCCESSFUL) {
@@ -158,6 +175,7 @@ public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
         metrics.onIncrement(MetricGroupNames.NF_CE_WHATSAPP_SERVICE, "api_error_response", Constants.LABEL_TEMPLATE_LANGUAGE_STATE_LIST, event.getTemplateName(), languageCache.getLanguageById(event.getLanguageId()).getName(),
                 MessageAcknowledgement.State.VENDOR_DELIVERED.name(), event.getVendor().name());
         messageAcknowledgementRepository.updateMessageAcknowledgementVenodrDelivery(MessageAcknowledgement.State.VENDOR_UNDELIVERED, null, "", referenceId, attributes, CommunicationChannel.WHATSAPP.toString());
+        whatsappService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
         logError(result);
         retryEvent();
     }
@@ -170,11 +188,24 @@ public class WhatsappServiceCallback implements FutureCallback<HttpResponse> {
     @Override
     public void failed(Exception e) {
         CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        recordVendorHealth(false);
         log.error("Whatsapp service call failed for event : {}, Error : {}", event, e.getMessage(), e);
         metrics.onIncrement(MetricGroupNames.NF_CE_WHATSAPP_SERVICE, "api_failed");
+        whatsappService.onAcknowledgement(referenceId, MessageAcknowledgement.State.VENDOR_UNDELIVERED);
         retryEvent();
     }
 
+    /**
+     * The request was never sent, so the message is retried with the same vendor and the vendor's health is
+     * left as it was.
+     */
+    @Override
+    public void rejected() {
+        CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
+        log.warn("Whatsapp service call rejected for lack of a callback slot for event : {}", event);
+        retryEvent(false);
+    }
+
     @Override
     public void cancelled() {
         CommunicationEventHandler.IN_FLIGHT_COUNTER.decrementAndGet();
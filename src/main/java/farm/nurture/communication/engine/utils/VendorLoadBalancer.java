@@ -14,43 +14,480 @@
  *    limitations under the License.
  */
 
+
 package farm.nurture.communication.engine.utils;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import farm.nurture.communication.engine.metric.MetricGroupNames;
+import farm.nurture.communication.engine.metric.Metrics;
 import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.infra.metrics.IMetricCounter;
+import farm.nurture.infra.util.ApplicationConfiguration;
+import farm.nurture.infra.util.StringUtils;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Picks the vendor for a channel by weighted random choice. The configured weights are scaled by the health
+ * of each vendor on that channel, tracked from send callbacks as an EWMA of latency and error rate, so
+ * traffic shifts away from a degraded vendor within seconds.
+ *
+ * A vendor with sustained failures has its circuit opened and gets no traffic. After the open interval
+ * a single probe request is let through; its outcome closes the circuit or opens it again. Outcomes of
+ * requests sent before the circuit last changed state are ignored, so late responses to requests sent
+ * before it opened or closed do not flip it again. If every vendor of a channel is open, the configured
+ * weights are used as is.
+ *
+ * Effective weights are compiled into an immutable alias table per channel, rebuilt periodically and on
+ * circuit changes, so {@link #getVendor(String)} is two random draws and does not allocate. Configured
+ * weights can be replaced at runtime through {@link #updateWeights(String, Map)} or the weights file
+ * named by vendor.routing.weights.file, which is polled for changes.
+ */
 @Slf4j
 @Singleton
 public class VendorLoadBalancer {
 
-    private static Map<String, Map<String, Integer>> channelToVendorWeightMap = new HashMap<>();
+    private static final String[] ROUTING_LABELS = {"channel", "vendor"};
+
+    /* Picks of a half-open vendor whose probe is already in flight before settling for it */
+    private static final int MAX_PICKS = 3;
+
+    /* Replaced as a whole on every weight change, never mutated */
+    private volatile Map<String, Route> channelToRoute = Collections.emptyMap();
+
+    @Inject
+    private ObjectMapper mapper;
+
+    private final Metrics metrics = Metrics.getInstance();
 
-    private static Map<String, List<String>> channelToVendorList = new HashMap<>();
+    private Settings settings;
+
+    private ScheduledExecutorService refreshExecutor;
+
+    private long weightsFileModifiedAt = 0;
 
     public void initializeVendorWeightedMap(String communicationChannel, Map<String, Integer> vendorToWeightMap){
-        channelToVendorWeightMap.put(communicationChannel, vendorToWeightMap);
+        updateWeights(communicationChannel, vendorToWeightMap);
     }
 
-    public void init(){
-        channelToVendorWeightMap.forEach((channel, vendorToWeightMap) ->{
-            List<String> vendorList = new ArrayList<>();
-            vendorToWeightMap.forEach((vendor, weight) ->{
-               int weightX = weight;
-               while(weightX-- > 0){
-                   vendorList.add(vendor);
-               }
+    public synchronized void init(){
+        settings = Settings.load();
+        channelToRoute.forEach((channel, route) -> updateWeights(channel, route.configuredWeights));
+        reloadWeightsFile();
+
+        if (refreshExecutor == null) {
+            ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "vendor-routing-refresh");
+                thread.setDaemon(true);
+                return thread;
             });
-            channelToVendorList.put(channel, vendorList);
-        });
+            int rebuildIntervalMillis = config.getInt("vendor.routing.rebuild.interval.millis", 1000);
+            refreshExecutor.scheduleWithFixedDelay(this::rebuildAll, rebuildIntervalMillis, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+            int reloadIntervalSeconds = config.getInt("vendor.routing.weights.reload.interval.seconds", 30);
+            refreshExecutor.scheduleWithFixedDelay(this::reloadWeightsFile, reloadIntervalSeconds, reloadIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Replaces the configured weights of a channel. Health already tracked for vendors that stay on the
+     * channel is kept.
+     */
+    public synchronized void updateWeights(String communicationChannel, Map<String, Integer> vendorToWeightMap) {
+        if (settings == null) settings = Settings.load();
+        Map<String, Route> routes = new HashMap<>(channelToRoute);
+        Route route = Route.of(communicationChannel, vendorToWeightMap, settings, routes.get(communicationChannel), metrics);
+        route.rebuild(System.currentTimeMillis());
+        routes.put(communicationChannel, route);
+        channelToRoute = Collections.unmodifiableMap(routes);
+        log.info("Updated vendor weights for channel : {} to : {}", communicationChannel, vendorToWeightMap);
     }
 
     public VendorType getVendor(String communicationChannel){
-        List<String> vendorList = channelToVendorList.get(communicationChannel);
-        int index = new Random().nextInt(vendorList.size());
-        return VendorType.valueOf(vendorList.get(index));
+        Route route = channelToRoute.get(communicationChannel);
+        if (route == null) {
+            throw new IllegalStateException("No vendor weights configured for channel : " + communicationChannel);
+        }
+        VendorHealth selected = route.select(System.currentTimeMillis());
+        selected.routedCounter.increment(selected.labelValues);
+        return selected.vendor;
+    }
+
+    /**
+     * Records a vendor response that was not a server error. The latency is measured from when the request
+     * was sent, which tells outcomes of requests sent before a circuit change apart.
+     */
+    public void recordSuccess(String communicationChannel, VendorType vendor, long latencyMillis) {
+        Route route = route(communicationChannel);
+        VendorHealth health = route == null ? null : route.health(vendor);
+        long now = System.currentTimeMillis();
+        if (health != null && health.onSuccess(latencyMillis, now - latencyMillis, now)) {
+            log.info("Closed circuit of vendor : {} for channel : {}", vendor, communicationChannel);
+            metrics.onIncrement(MetricGroupNames.NF_CE_VENDOR_ROUTING, "circuit_closed", ROUTING_LABELS, communicationChannel, vendor.name());
+            route.rebuild(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Records a timeout, connection failure or server error from the vendor.
+     */
+    public void recordFailure(String communicationChannel, VendorType vendor, long latencyMillis) {
+        Route route = route(communicationChannel);
+        VendorHealth health = route == null ? null : route.health(vendor);
+        long now = System.currentTimeMillis();
+        if (health != null && health.onFailure(latencyMillis, now - latencyMillis, now)) {
+            log.warn("Opened circuit of vendor : {} for channel : {}", vendor, communicationChannel);
+            metrics.onIncrement(MetricGroupNames.NF_CE_VENDOR_ROUTING, "circuit_opened", ROUTING_LABELS, communicationChannel, vendor.name());
+            route.rebuild(now);
+        }
+    }
+
+    private Route route(String communicationChannel) {
+        return communicationChannel == null ? null : channelToRoute.get(communicationChannel);
+    }
+
+    private void rebuildAll() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Route route : channelToRoute.values()) {
+                route.rebuild(now);
+            }
+        } catch (Exception e) {
+            log.error("Error in rebuilding vendor routing tables", e);
+        }
+    }
+
+    /**
+     * Applies the weights file, a JSON object of channel to vendor weights, when it changed since the last read.
+     */
+    void reloadWeightsFile() {
+        String path = ApplicationConfiguration.getInstance().get("vendor.routing.weights.file", "");
+        if (StringUtils.isEmpty(path)) return;
+        try {
+            File file = new File(path);
+            if (!file.isFile() || file.lastModified() == weightsFileModifiedAt) return;
+            Map<String, Map<String, Integer>> weights = mapper.readValue(file, new TypeReference<Map<String, Map<String, Integer>>>() {});
+            weights.forEach(this::updateWeights);
+            weightsFileModifiedAt = file.lastModified();
+        } catch (Exception e) {
+            log.error("Error in reloading vendor weights from : {}", path, e);
+        }
+    }
+
+    static final class Settings {
+        final double alpha;
+        final int failureThreshold;
+        final double errorRateThreshold;
+        final int minSamples;
+        final long openMillis;
+        final double minWeightFactor;
+
+        Settings(double alpha, int failureThreshold, double errorRateThreshold, int minSamples, long openMillis, double minWeightFactor) {
+            this.alpha = alpha;
+            this.failureThreshold = failureThreshold;
+            this.errorRateThreshold = errorRateThreshold;
+            this.minSamples = minSamples;
+            this.openMillis = openMillis;
+            this.minWeightFactor = minWeightFactor;
+        }
+
+        static Settings load() {
+            ApplicationConfiguration config = ApplicationConfiguration.getInstance();
+            return new Settings(
+                    config.getInt("vendor.routing.ewma.alpha.percent", 20) / 100.0,
+                    config.getInt("vendor.routing.circuit.failure.threshold", 5),
+                    config.getInt("vendor.routing.circuit.error.rate.percent", 50) / 100.0,
+                    config.getInt("vendor.routing.circuit.min.samples", 20),
+                    config.getInt("vendor.routing.circuit.open.millis", 10000),
+                    config.getInt("vendor.routing.min.weight.percent", 5) / 100.0);
+        }
+    }
+
+    static final class Route {
+        private final Map<String, Integer> configuredWeights;
+
+        private final VendorHealth[] vendors;
+
+        private volatile AliasTable table;
+
+        private Route(Map<String, Integer> configuredWeights, VendorHealth[] vendors) {
+            this.configuredWeights = configuredWeights;
+            this.vendors = vendors;
+            this.table = AliasTable.of(vendors, new double[vendors.length]);
+        }
+
+        static Route of(String channel, Map<String, Integer> vendorToWeightMap, Settings settings, Route previous, Metrics metrics) {
+            List<VendorHealth> vendors = new ArrayList<>();
+            vendorToWeightMap.forEach((vendor, weight) -> {
+                if (weight == null || weight <= 0) return;
+                VendorType vendorType = VendorType.valueOf(vendor);
+                VendorHealth health = previous == null ? null : previous.health(vendorType);
+                if (health == null) {
+                    IMetricCounter routedCounter = metrics == null ? null :
+                            metrics.getIMetricCounter(MetricGroupNames.NF_CE_VENDOR_ROUTING, "routed", ROUTING_LABELS);
+                    health = new VendorHealth(vendorType, settings, routedCounter, new String[]{channel, vendor});
+                }
+                health.weight = weight;
+                vendors.add(health);
+            });
+            if (vendors.isEmpty()) {
+                log.error("No vendor with positive weight configured for channel : {}", channel);
+            }
+            return new Route(Collections.unmodifiableMap(new LinkedHashMap<>(vendorToWeightMap)), vendors.toArray(new VendorHealth[0]));
+        }
+
+        VendorHealth health(VendorType vendor) {
+            for (VendorHealth health : vendors) {
+                if (health.vendor == vendor) return health;
+            }
+            return null;
+        }
+
+        /**
+         * Recomputes the effective weights and swaps in a new alias table.
+         */
+        void rebuild(long now) {
+            double bestLatency = Double.MAX_VALUE;
+            for (VendorHealth health : vendors) {
+                bestLatency = Math.min(bestLatency, health.latency());
+            }
+
+            double[] weights = new double[vendors.length];
+            double total = 0;
+            for (int i = 0; i < vendors.length; i++) {
+                weights[i] = vendors[i].routingWeight(now, bestLatency);
+                total += weights[i];
+            }
+            if (total <= 0) {
+                for (int i = 0; i < vendors.length; i++) {
+                    weights[i] = vendors[i].weight;
+                }
+            }
+            table = AliasTable.of(vendors, weights);
+        }
+
+        VendorHealth select(long now) {
+            AliasTable current = table;
+            if (current.vendors.length == 0) {
+                throw new IllegalStateException("No vendor with positive weight");
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            VendorHealth selected = current.pick(random);
+            for (int picks = 1; selected.halfOpen && picks < MAX_PICKS; picks++) {
+                if (selected.onRouted(now)) {
+                    rebuild(now);
+                    return selected;
+                }
+                /* Another request took the probe before the table was rebuilt without this vendor */
+                selected = table.pick(random);
+            }
+            return selected;
+        }
+    }
+
+    /**
+     * Walker's alias method: one uniform column pick plus one biased coin gives a weighted choice in O(1).
+     */
+    static final class AliasTable {
+        private final VendorHealth[] vendors;
+        private final double[] probability;
+        private final int[] alias;
+
+        private AliasTable(VendorHealth[] vendors, double[] probability, int[] alias) {
+            this.vendors = vendors;
+            this.probability = probability;
+            this.alias = alias;
+        }
+
+        static AliasTable of(VendorHealth[] vendors, double[] weights) {
+            int n = vendors.length;
+            double[] probability = new double[n];
+            int[] alias = new int[n];
+            double total = 0;
+            for (double weight : weights) total += weight;
+            if (n == 0 || total <= 0) {
+                Arrays.fill(probability, 1.0);
+                for (int i = 0; i < n; i++) alias[i] = i;
+                return new AliasTable(vendors, probability, alias);
+            }
+
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallSize = 0;
+            int largeSize = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / total;
+                if (scaled[i] < 1.0) small[smallSize++] = i;
+                else large[largeSize++] = i;
+            }
+            while (smallSize > 0 && largeSize > 0) {
+                int less = small[--smallSize];
+                int more = large[--largeSize];
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = scaled[more] + scaled[less] - 1.0;
+                if (scaled[more] < 1.0) small[smallSize++] = more;
+                else large[largeSize++] = more;
+            }
+            while (largeSize > 0) {
+                int index = large[--largeSize];
+                probability[index] = 1.0;
+                alias[index] = index;
+            }
+            while (smallSize > 0) {
+                int index = small[--smallSize];
+                probability[index] = 1.0;
+                alias[index] = index;
+            }
+            return new AliasTable(vendors, probability, alias);
+        }
+
+        VendorHealth pick(ThreadLocalRandom random) {
+            int column = random.nextInt(vendors.length);
+            return random.nextDouble() < probability[column] ? vendors[column] : vendors[alias[column]];
+        }
+    }
+
+    enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
     }
 
-}
\ No newline at end of file
+    static final class VendorHealth {
+        final VendorType vendor;
+        private final Settings settings;
+        private final IMetricCounter routedCounter;
+        private final String[] labelValues;
+
+        private volatile int weight;
+
+        /* Read without locking on the selection path to skip probe accounting for healthy vendors */
+        private volatile boolean halfOpen = false;
+
+        private double latencyEwma = 0;
+        private double errorRateEwma = 0;
+        private int samples = 0;
+        private int consecutiveFailures = 0;
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt = 0;
+        private long stateChangedAt = 0;
+        private long probeStartedAt = -1;
+
+        VendorHealth(VendorType vendor, Settings settings, IMetricCounter routedCounter, String[] labelValues) {
+            this.vendor = vendor;
+            this.settings = settings;
+            this.routedCounter = routedCounter;
+            this.labelValues = labelValues;
+        }
+
+        synchronized double latency() {
+            return samples == 0 || state != CircuitState.CLOSED ? Double.MAX_VALUE : latencyEwma;
+        }
+
+        synchronized CircuitState state(long now) {
+            if (state == CircuitState.OPEN && now - openedAt >= settings.openMillis) {
+                setState(CircuitState.HALF_OPEN, now);
+                probeStartedAt = -1;
+            }
+            return state;
+        }
+
+        private void setState(CircuitState state, long now) {
+            this.state = state;
+            this.halfOpen = state == CircuitState.HALF_OPEN;
+            this.stateChangedAt = now;
+        }
+
+        /**
+         * Outcomes of requests sent before the last state change, and in half-open state of any request but the
+         * probe, say nothing about the current state of the circuit.
+         */
+        private boolean isStale(CircuitState current, long sentAt) {
+            if (sentAt < stateChangedAt) return true;
+            return current == CircuitState.HALF_OPEN && (probeStartedAt < 0 || sentAt < probeStartedAt);
+        }
+
+        /**
+         * Configured weight scaled down by error rate and by latency relative to the fastest healthy vendor,
+         * never below the minimum share so a recovering vendor keeps being sampled.
+         */
+        synchronized double routingWeight(long now, double bestLatency) {
+            switch (state(now)) {
+                case OPEN:
+                    return 0;
+                case HALF_OPEN:
+                    boolean probeAllowed = probeStartedAt < 0 || now - probeStartedAt >= settings.openMillis;
+                    return probeAllowed ? weight * settings.minWeightFactor : 0;
+                default:
+                    double latencyFactor = samples == 0 || bestLatency == Double.MAX_VALUE || latencyEwma <= 0 ?
+                            1 : Math.min(1, bestLatency / latencyEwma);
+                    return weight * Math.max(settings.minWeightFactor, (1 - errorRateEwma) * latencyFactor);
+            }
+        }
+
+        /**
+         * Returns true when this request was taken as the half-open probe, so the table must stop routing here.
+         * Only one request is taken per open interval, however many selected this vendor from an older table.
+         */
+        synchronized boolean onRouted(long now) {
+            if (state(now) != CircuitState.HALF_OPEN) return false;
+            if (probeStartedAt >= 0 && now - probeStartedAt < settings.openMillis) return false;
+            probeStartedAt = now;
+            return true;
+        }
+
+        /**
+         * Returns true when this success, of the half-open probe, closed the circuit.
+         */
+        synchronized boolean onSuccess(long latencyMillis, long sentAt, long now) {
+            CircuitState current = state(now);
+            if (isStale(current, sentAt)) return false;
+            updateLatency(latencyMillis);
+            errorRateEwma = (1 - settings.alpha) * errorRateEwma;
+            consecutiveFailures = 0;
+            if (current == CircuitState.HALF_OPEN) {
+                setState(CircuitState.CLOSED, now);
+                errorRateEwma = 0;
+                samples = 0;
+                probeStartedAt = -1;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns true when this failure opened the circuit.
+         */
+        synchronized boolean onFailure(long latencyMillis, long sentAt, long now) {
+            CircuitState current = state(now);
+            if (isStale(current, sentAt)) return false;
+            updateLatency(latencyMillis);
+            errorRateEwma = settings.alpha + (1 - settings.alpha) * errorRateEwma;
+            consecutiveFailures++;
+            boolean open = current == CircuitState.HALF_OPEN ||
+                    (current == CircuitState.CLOSED && (consecutiveFailures >= settings.failureThreshold ||
+                            (samples >= settings.minSamples && errorRateEwma >= settings.errorRateThreshold)));
+            if (open) {
+                setState(CircuitState.OPEN, now);
+                openedAt = now;
+                probeStartedAt = -1;
+                return true;
+            }
+            return false;
+        }
+
+        private void updateLatency(long latencyMillis) {
+            latencyEwma = samples == 0 ? latencyMillis : settings.alpha * latencyMillis + (1 - settings.alpha) * latencyEwma;
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import farm.nurture.communication.engine.models.ActorAppToken;
+import farm.nurture.communication.engine.repository.ActorAppTokenRepository;
+import farm.nurture.core.contracts.common.enums.ActorType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ActorAppTokenCacheTest {
+    private final static long actorId = 1234L;
+    private final static Short farmerApp = 6;
+    private final static Short partnerApp = 7;
+    private final static List<Short> mobileAppDetailsIds = Arrays.asList(farmerApp, partnerApp);
+
+    @Mock
+    private ActorAppTokenRepository repository;
+
+    @InjectMocks
+    private ActorAppTokenCache actorAppTokenCache;
+
+    @Test
+    public void testTokensAreLoadedOnceInAppOrder() {
+        ActorAppToken farmerToken = token(farmerApp, "farmer-token");
+        ActorAppToken partnerToken = token(partnerApp, "partner-token");
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds)).thenReturn(Arrays.asList(partnerToken, farmerToken));
+
+        assertEquals(Arrays.asList(farmerToken, partnerToken), actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds));
+        assertEquals(Arrays.asList(farmerToken, partnerToken), actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds));
+
+        verify(repository, times(1)).getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds);
+    }
+
+    @Test
+    public void testAppsWithoutTokenAreCached() {
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds)).thenReturn(Collections.emptyList());
+
+        assertTrue(actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds).isEmpty());
+        assertTrue(actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds).isEmpty());
+
+        verify(repository, times(1)).getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds);
+    }
+
+    @Test
+    public void testOnlyInvalidatedAppIsReloaded() {
+        ActorAppToken farmerToken = token(farmerApp, "farmer-token");
+        ActorAppToken refreshedToken = token(farmerApp, "farmer-token-2");
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds)).thenReturn(Collections.singletonList(farmerToken));
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, Collections.singletonList(farmerApp))).thenReturn(Collections.singletonList(refreshedToken));
+
+        actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds);
+        actorAppTokenCache.invalidate(actorId, ActorType.FARMER, farmerApp);
+
+        assertEquals(Collections.singletonList(refreshedToken), actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds));
+    }
+
+    @Test
+    public void testEvictOnlyMatchingToken() {
+        ActorAppToken farmerToken = token(farmerApp, "farmer-token");
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds)).thenReturn(Collections.singletonList(farmerToken));
+        actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds);
+
+        actorAppTokenCache.evict(actorId, ActorType.FARMER, farmerApp, "older-token");
+        assertEquals(2, actorAppTokenCache.size());
+
+        actorAppTokenCache.evict(actorId, ActorType.FARMER, farmerApp, "farmer-token");
+        assertEquals(1, actorAppTokenCache.size());
+    }
+
+    @Test
+    public void testRepositoryErrorIsNotCached() {
+        when(repository.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds)).thenReturn(null);
+
+        assertNull(actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, mobileAppDetailsIds));
+        assertEquals(0, actorAppTokenCache.size());
+    }
+
+    private static ActorAppToken token(Short mobileAppDetailsId, String fcmToken) {
+        return ActorAppToken.builder().actorId(actorId).actorType(ActorType.FARMER).mobileAppDetailsId(mobileAppDetailsId)
+                .fcmToken(fcmToken).active(true).build();
+    }
+}
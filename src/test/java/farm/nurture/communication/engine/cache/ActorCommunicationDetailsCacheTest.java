@@ -0,0 +1,89 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import farm.nurture.communication.engine.models.ActorCommunicationDetails;
+import farm.nurture.communication.engine.repository.ActorCommunicationDetailsRepository;
+import farm.nurture.core.contracts.common.enums.ActorType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class ActorCommunicationDetailsCacheTest {
+    private final static long actorId = 1234L;
+    private final static String mobileNumber = "9999999999";
+
+    @Mock
+    private ActorCommunicationDetailsRepository repository;
+
+    @InjectMocks
+    private ActorCommunicationDetailsCache actorCommunicationDetailsCache;
+
+    @Test
+    public void testRepeatLookupIsServedFromCache() {
+        ActorCommunicationDetails details = new ActorCommunicationDetails(actorId, ActorType.FARMER, mobileNumber, (short) 1, true);
+        when(repository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(details);
+
+        assertSame(details, actorCommunicationDetailsCache.get(actorId, ActorType.FARMER));
+        assertSame(details, actorCommunicationDetailsCache.get(actorId, ActorType.FARMER));
+
+        verify(repository, times(1)).getByActorIdAndActorType(actorId, ActorType.FARMER);
+        assertEquals(1, actorCommunicationDetailsCache.size());
+    }
+
+    @Test
+    public void testInvalidateReloadsFromRepository() {
+        ActorCommunicationDetails details = new ActorCommunicationDetails(actorId, ActorType.FARMER, mobileNumber, (short) 1, true);
+        ActorCommunicationDetails updated = new ActorCommunicationDetails(actorId, ActorType.FARMER, "8888888888", (short) 1, true);
+        when(repository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(details, updated);
+
+        actorCommunicationDetailsCache.get(actorId, ActorType.FARMER);
+        actorCommunicationDetailsCache.invalidate(actorId, ActorType.FARMER);
+
+        assertSame(updated, actorCommunicationDetailsCache.get(actorId, ActorType.FARMER));
+    }
+
+    @Test
+    public void testMissingActorIsNotCached() {
+        when(repository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(null);
+
+        assertNull(actorCommunicationDetailsCache.get(actorId, ActorType.FARMER));
+        assertNull(actorCommunicationDetailsCache.get(actorId, ActorType.FARMER));
+
+        verify(repository, times(2)).getByActorIdAndActorType(actorId, ActorType.FARMER);
+    }
+
+    @Test
+    public void testKey() {
+        assertNotEquals(ActorCommunicationDetailsCache.key(actorId, ActorType.FARMER), ActorCommunicationDetailsCache.key(actorId, ActorType.RETAILER));
+        assertEquals(-1, ActorCommunicationDetailsCache.key(-1, ActorType.FARMER));
+        assertEquals(-1, ActorCommunicationDetailsCache.key(Long.MAX_VALUE, ActorType.FARMER));
+        assertEquals(-1, ActorCommunicationDetailsCache.key(actorId, null));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.cache;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicStatusLine;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AttachmentCacheTest {
+
+    private static final String URL = "https://example.com/invoice.pdf";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testAttachmentIsDownloadedOnce() throws Exception {
+        AttachmentCache attachmentCache = new AttachmentCache(directory, 1024 * 1024, 300, 2);
+        attachmentCache.httpClient = mock(CloseableHttpClient.class);
+        CloseableHttpResponse response = response("invoice");
+        when(attachmentCache.httpClient.execute(any(HttpUriRequest.class))).thenReturn(response);
+
+        AttachmentCache.Attachment attachment = attachmentCache.get(URL);
+
+        assertSame(attachment, attachmentCache.get(URL));
+        assertEquals("invoice", content(attachment.map()));
+        assertEquals("\"v1\"", attachment.getEtag());
+        verify(attachmentCache.httpClient, times(1)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testConcurrentPrefetchesShareOneDownload() throws Exception {
+        AttachmentCache attachmentCache = new AttachmentCache(directory, 1024 * 1024, 300, 4);
+        attachmentCache.httpClient = mock(CloseableHttpClient.class);
+        CountDownLatch release = new CountDownLatch(1);
+        CloseableHttpResponse response = response("catalogue");
+        when(attachmentCache.httpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return response;
+        });
+
+        List<CompletableFuture<AttachmentCache.Attachment>> downloads = attachmentCache.prefetch(Arrays.asList(URL, URL));
+        CompletableFuture<AttachmentCache.Attachment> other = attachmentCache.prefetch(URL);
+        release.countDown();
+
+        AttachmentCache.Attachment attachment = other.get(5, TimeUnit.SECONDS);
+        assertEquals(1, downloads.size());
+        assertSame(attachment, downloads.get(0).get(5, TimeUnit.SECONDS));
+        assertEquals("catalogue", content(attachment.map()));
+        verify(attachmentCache.httpClient, times(1)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void testInvalidatedAttachmentIsDownloadedAgain() throws Exception {
+        AttachmentCache attachmentCache = new AttachmentCache(directory, 1024 * 1024, 300, 2);
+        attachmentCache.httpClient = mock(CloseableHttpClient.class);
+        CloseableHttpResponse response = response("invoice");
+        when(attachmentCache.httpClient.execute(any(HttpUriRequest.class))).thenReturn(response);
+
+        AttachmentCache.Attachment attachment = attachmentCache.get(URL);
+        Files.delete(attachment.getFile());
+        assertThrows(NoSuchFileException.class, attachment::map);
+
+        attachmentCache.invalidate(URL, attachment);
+        AttachmentCache.Attachment downloaded = attachmentCache.get(URL);
+
+        assertNotSame(attachment, downloaded);
+        assertEquals("invoice", content(downloaded.map()));
+        verify(attachmentCache.httpClient, times(2)).execute(any(HttpUriRequest.class));
+    }
+
+    private static CloseableHttpResponse response(String body) {
+        CloseableHttpResponse response = mock(CloseableHttpResponse.class);
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
+        when(response.getEntity()).thenReturn(new ByteArrayEntity(body.getBytes(StandardCharsets.UTF_8)));
+        when(response.getFirstHeader("ETag")).thenReturn(new BasicHeader("ETag", "\"v1\""));
+        return response;
+    }
+
+    private static String content(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
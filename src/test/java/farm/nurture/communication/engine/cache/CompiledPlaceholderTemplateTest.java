@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CompiledPlaceholderTemplateTest {
+
+    @Test
+    public void testRendersSameAsMustache() throws IOException {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("name", "Ramesh");
+        placeholders.put("crop", "<Wheat & \"Rice\"> 'a'=`b`\n");
+        placeholders.put("order_id", "ORD-12");
+
+        List<String> templates = Arrays.asList(
+                "Thank you for booking",
+                "Hi {{name}}, your order {{order_id}} is confirmed",
+                "{{name}}",
+                "{{ name }} grows {{crop}}",
+                "Raw {{{crop}}} and {{&crop}}",
+                "Missing {{unknown}} value",
+                "नमस्ते {{name}} जी");
+
+        for (String source : templates) {
+            CompiledPlaceholderTemplate compiled = CompiledPlaceholderTemplate.compile(source);
+            assertNotNull(compiled, source);
+            assertEquals(mustache(source, placeholders), compiled.render(placeholders), source);
+        }
+    }
+
+    @Test
+    public void testFallsBackForMustacheFeatures() {
+        List<String> templates = Arrays.asList(
+                "{{#name}}Hi {{name}}{{/name}}",
+                "{{^name}}Hi farmer{{/name}}",
+                "{{> footer}}",
+                "{{! comment }}Hi",
+                "{{=<% %>=}}Hi <% name %>",
+                "Hi {{farmer.name}}",
+                "Hi {{name");
+
+        for (String source : templates) {
+            assertNull(CompiledPlaceholderTemplate.compile(source), source);
+        }
+    }
+
+    @Test
+    public void testSegments() {
+        CompiledPlaceholderTemplate compiled = CompiledPlaceholderTemplate.compile("{{a}}-{{b}}-{{a}}");
+        assertEquals(3, compiled.placeholderCount());
+        assertEquals("--", compiled.render(null));
+    }
+
+    private static String mustache(String source, Map<String, String> placeholders) throws IOException {
+        StringWriter writer = new StringWriter();
+        new DefaultMustacheFactory().compile(new StringReader(source), "test").execute(writer, placeholders).flush();
+        return writer.toString();
+    }
+}
@@ -18,6 +18,7 @@ package farm.nurture.communication.engine.cache;
 
 import farm.nurture.communication.engine.models.Language;
 import farm.nurture.communication.engine.repository.LanguageRepository;
+import farm.nurture.core.contracts.common.enums.LanguageCode;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -29,6 +30,9 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -71,4 +75,26 @@ public class LanguageCacheTest {
         assertEquals(response.getId(), id);
         assertEquals(response.getName(), name);
     }
+
+    @Test
+    public void testGetLanguageByLanguageCode() {
+        when(languageRepository.getAll()).thenReturn(Arrays.asList(language));
+        languageCache.init();
+        Language response = languageCache.getLanguageByLanguageCode(LanguageCode.HI_IN);
+
+        assertSame(language, response);
+        verify(languageRepository, never()).getLanguageByCode(code);
+    }
+
+    @Test
+    public void testRefreshSwapsSnapshot() {
+        Language english = Language.builder().code("en-us").name("English").id((short) 2).build();
+        when(languageRepository.getAll()).thenReturn(Arrays.asList(language), Arrays.asList(language, english));
+        languageCache.init();
+        languageCache.refresh();
+
+        assertSame(english, languageCache.getLanguageById((short) 2));
+        assertSame(english, languageCache.getLanguageByLanguageCode(LanguageCode.EN_US));
+        verify(languageRepository, never()).getLanguageById((short) 2);
+    }
 }
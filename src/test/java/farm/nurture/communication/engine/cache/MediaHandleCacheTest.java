@@ -0,0 +1,64 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.cache;
+
+import farm.nurture.communication.engine.vendor.VendorType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class MediaHandleCacheTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSameFileIsUploadedOncePerVendor() throws Exception {
+        MediaHandleCache mediaHandleCache = new MediaHandleCache();
+        File image = write("sample_img.png", "png");
+        File copy = write("copy_img.png", "png");
+        AtomicInteger uploads = new AtomicInteger();
+
+        assertEquals("handle-1", mediaHandleCache.get(VendorType.KARIX, image, file -> "handle-" + uploads.incrementAndGet()));
+        assertEquals("handle-1", mediaHandleCache.get(VendorType.KARIX, copy, file -> "handle-" + uploads.incrementAndGet()));
+        assertEquals("handle-2", mediaHandleCache.get(VendorType.GUPSHUP, image, file -> "handle-" + uploads.incrementAndGet()));
+        assertEquals(2, uploads.get());
+    }
+
+    @Test
+    public void testFailedUploadIsNotCached() throws Exception {
+        MediaHandleCache mediaHandleCache = new MediaHandleCache();
+        File video = write("sample_video.mp4", "mp4");
+
+        assertNull(mediaHandleCache.get(VendorType.KARIX, video, file -> null));
+        assertEquals("handle", mediaHandleCache.get(VendorType.KARIX, video, file -> "handle"));
+    }
+
+    private File write(String name, String content) throws Exception {
+        Path file = directory.resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+}
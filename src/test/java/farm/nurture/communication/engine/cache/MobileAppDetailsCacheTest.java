@@ -18,6 +18,8 @@ package farm.nurture.communication.engine.cache;
 
 import farm.nurture.communication.engine.models.MobileAppDetails;
 import farm.nurture.communication.engine.repository.MobileAppDetailsRepository;
+import farm.nurture.core.contracts.common.enums.AppID;
+import farm.nurture.core.contracts.common.enums.AppType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -28,6 +30,8 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -81,4 +85,16 @@ public class MobileAppDetailsCacheTest {
         MobileAppDetails response = mobileAppDetailsCache.getMobileAppDetailsById(null);
         assertNull(response);
     }
+
+    @Test
+    public void testGetMobileAppDetailsByAppIdAndAppType() {
+        MobileAppDetails farmerApp = MobileAppDetails.builder().appId(AppID.NF_FARMER.name()).appType(MobileAppDetails.AppType.ANDROID).
+                appName(appName).fcmApiKey(fcmApiKey).afsAppId((short) 2).id((short) 2).build();
+        when(appDetailsRepository.getAll()).thenReturn(Arrays.asList(mobileAppDetails, farmerApp));
+        mobileAppDetailsCache.init();
+
+        assertSame(farmerApp, mobileAppDetailsCache.getMobileAppDetailsByAppIdandAppType(AppID.NF_FARMER, AppType.ANDROID));
+        assertSame(farmerApp, mobileAppDetailsCache.getMobileAppDetailsByAppIdandAppType(new MobileAppDetailsCacheKey(AppID.NF_FARMER.name(), AppType.ANDROID.name())));
+        verify(appDetailsRepository, never()).getMobileAppDetailsByAppIdandAppName(AppID.NF_FARMER.name(), AppType.ANDROID.name());
+    }
 }
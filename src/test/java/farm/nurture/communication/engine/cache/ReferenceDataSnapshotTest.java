@@ -0,0 +1,99 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategy;
+import farm.nurture.communication.engine.models.Language;
+import farm.nurture.communication.engine.models.MobileAppDetails;
+import farm.nurture.communication.engine.models.Template;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@ExtendWith(MockitoExtension.class)
+public class ReferenceDataSnapshotTest {
+
+    @Spy
+    private final ObjectMapper mapper = new ObjectMapper()
+            .setPropertyNamingStrategy(PropertyNamingStrategy.SNAKE_CASE)
+            .setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
+
+    @Mock
+    private LanguageCache languageCache;
+
+    @Mock
+    private MobileAppDetailsCache mobileAppDetailsCache;
+
+    @Mock
+    private TemplateCache templateCache;
+
+    @InjectMocks
+    private ReferenceDataSnapshot referenceDataSnapshot;
+
+    @TempDir
+    Path tempDir;
+
+    private ReferenceDataSnapshot.Contents contents() {
+        Language language = Language.builder().id((short) 1).code("hi-in").name("Hindi").unicode(true).build();
+        MobileAppDetails appDetails = MobileAppDetails.builder().id((short) 2).appId("FARM_APP")
+                .appType(MobileAppDetails.AppType.ANDROID).afsAppId((short) 3).build();
+        Template template = Template.builder().id((short) 4).name("farmer_booking_creation").languageId((short) 1)
+                .contentType(Template.ContentType.STRING).content("Hello {{name}}").active(true)
+                .attributes(Collections.singletonMap("sms_type", "OTP")).metaData(new HashMap<>())
+                .updatedAt(Timestamp.valueOf("2023-01-02 10:00:00")).build();
+        return new ReferenceDataSnapshot.Contents(1672653600000L, Arrays.asList(language), Arrays.asList(appDetails), Arrays.asList(template));
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        Path path = tempDir.resolve("reference-data.snapshot");
+        ReferenceDataSnapshot.Contents contents = contents();
+
+        referenceDataSnapshot.write(path, contents);
+
+        assertEquals(contents, referenceDataSnapshot.read(path));
+    }
+
+    @Test
+    public void testReadIgnoresCorruptSnapshot() throws Exception {
+        Path path = tempDir.resolve("reference-data.snapshot");
+        referenceDataSnapshot.write(path, contents());
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 2] ^= 1;
+        Files.write(path, bytes);
+
+        assertNull(referenceDataSnapshot.read(path));
+    }
+}
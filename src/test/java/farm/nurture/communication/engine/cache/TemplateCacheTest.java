@@ -24,9 +24,14 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collections;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -47,13 +52,98 @@ public class TemplateCacheTest {
         Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).build();
         TemplateCacheKey templateCacheKey = new TemplateCacheKey(name, languageId);
         when(templateRepository.getAll()).thenReturn(Arrays.asList(template));
-        when(templateRepository.getTemplateByNameAndLanguage(name, languageId)).thenReturn(template);
         templateCache.init();
         TemplateCacheValue response = templateCache.getCompiledTemplateByCacheKey(templateCacheKey);
+        verify(templateRepository, never()).getTemplateByNameAndLanguage(name, languageId);
 
         assertEquals(response.getTemplate().getName(), name);
         assertEquals(response.getTemplate().getLanguageId(), languageId);
         assertEquals(response.getTemplate().getContent(), content);
         assertEquals(response.getTemplate().getActive(), isActive);
     }
+
+    @Test
+    public void testRefreshSwapsChangedTemplates() {
+        Timestamp createdAt = Timestamp.valueOf("2023-01-01 10:00:00");
+        Timestamp updatedAt = Timestamp.valueOf("2023-01-02 10:00:00");
+        Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(createdAt).build();
+        Template otherTemplate = Template.builder().name("farmer_booking_cancelled").languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(createdAt).build();
+        when(templateRepository.getAll()).thenReturn(Arrays.asList(template, otherTemplate));
+        templateCache.init();
+
+        Template updatedTemplate = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content("Thank you {{name}}").active(isActive).updatedAt(updatedAt).build();
+        Template deactivatedTemplate = Template.builder().name("farmer_booking_cancelled").languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(false).updatedAt(updatedAt).build();
+        when(templateRepository.getTemplatesUpdatedSince(createdAt)).thenReturn(Arrays.asList(updatedTemplate, deactivatedTemplate));
+        templateCache.refresh();
+
+        assertEquals("Thank you {{name}}", templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey(name, languageId)).getTemplate().getContent());
+        assertNull(templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey("farmer_booking_cancelled", languageId)));
+
+        when(templateRepository.getTemplatesUpdatedSince(updatedAt)).thenReturn(Collections.emptyList());
+        templateCache.refresh();
+        verify(templateRepository).getTemplatesUpdatedSince(updatedAt);
+    }
+
+    @Test
+    public void testRefreshWithoutChangesKeepsVersion() {
+        Timestamp updatedAt = Timestamp.valueOf("2023-01-02 10:00:00");
+        Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(updatedAt).build();
+        Template reRead = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(updatedAt).build();
+        Template inactive = Template.builder().name("farmer_booking_cancelled").languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(false).updatedAt(updatedAt).build();
+        when(templateRepository.getAll()).thenReturn(Arrays.asList(template));
+        templateCache.init();
+        long version = templateCache.getVersion();
+
+        when(templateRepository.getTemplatesUpdatedSince(updatedAt)).thenReturn(Arrays.asList(reRead, inactive));
+        templateCache.refresh();
+        templateCache.refresh();
+
+        assertEquals(version, templateCache.getVersion());
+    }
+
+    @Test
+    public void testApplyChangeIgnoresStaleVersions() {
+        Timestamp updatedAt = Timestamp.valueOf("2023-01-02 10:00:00");
+        Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(updatedAt).build();
+        when(templateRepository.getAll()).thenReturn(Arrays.asList(template));
+        templateCache.init();
+        long version = templateCache.getVersion();
+
+        templateCache.applyChange(name, languageId, updatedAt.getTime() - 1000);
+
+        verify(templateRepository, never()).getAllTemplateByNameAndLanguage(name, languageId);
+        assertEquals(version, templateCache.getVersion());
+    }
+
+    @Test
+    public void testApplyChangeWithinSameSecond() {
+        Timestamp updatedAt = Timestamp.valueOf("2023-01-02 10:00:00");
+        Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(updatedAt).build();
+        Template changed = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content("Thank you {{name}}").active(isActive).updatedAt(updatedAt).build();
+        when(templateRepository.getAll()).thenReturn(Arrays.asList(template));
+        when(templateRepository.getAllTemplateByNameAndLanguage(name, languageId)).thenReturn(changed);
+        templateCache.init();
+
+        templateCache.applyChange(name, languageId, updatedAt.getTime());
+        assertEquals("Thank you {{name}}", templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey(name, languageId)).getTemplate().getContent());
+
+        long version = templateCache.getVersion();
+        templateCache.applyChange(name, languageId, updatedAt.getTime());
+        assertEquals(version, templateCache.getVersion());
+    }
+
+    @Test
+    public void testApplyChangeRecompilesNewerVersion() {
+        Timestamp updatedAt = Timestamp.valueOf("2023-01-02 10:00:00");
+        Timestamp changedAt = Timestamp.valueOf("2023-01-02 10:05:00");
+        Template template = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content(content).active(isActive).updatedAt(updatedAt).build();
+        Template changed = Template.builder().name(name).languageId(languageId).contentType(Template.ContentType.STRING).content("Thank you {{name}}").active(isActive).updatedAt(changedAt).build();
+        when(templateRepository.getAll()).thenReturn(Arrays.asList(template));
+        when(templateRepository.getAllTemplateByNameAndLanguage(name, languageId)).thenReturn(changed);
+        templateCache.init();
+
+        templateCache.applyChange(name, languageId, changedAt.getTime());
+
+        assertEquals("Thank you {{name}}", templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey(name, languageId)).getTemplate().getContent());
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.cache;
+
+import farm.nurture.communication.engine.models.WhatsappUsers;
+import farm.nurture.communication.engine.repository.WhatsappUsersRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class WhatsappUsersStatusIndexTest {
+    private final static String optInMobile = "9999999999";
+    private final static String optOutMobile = "8888888888";
+    private final static String recentNoAccntMobile = "7777777777";
+    private final static String expiredNoAccntMobile = "6666666666";
+
+    @Mock
+    private WhatsappUsersRepository whatsappUsersRepository;
+
+    @InjectMocks
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+
+    @Test
+    public void testValidateAfterLoad() {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        Timestamp expired = Timestamp.valueOf(LocalDateTime.now().minusMonths(3));
+        when(whatsappUsersRepository.getWhatsappUsersPage(0, 2)).thenReturn(Arrays.asList(
+                whatsappUsers(1L, optInMobile, WhatsappUsers.WhatsAppStatus.OPT_IN, now),
+                whatsappUsers(2L, optOutMobile, WhatsappUsers.WhatsAppStatus.OPT_OUT, now)));
+        when(whatsappUsersRepository.getWhatsappUsersPage(2, 2)).thenReturn(Arrays.asList(
+                whatsappUsers(3L, recentNoAccntMobile, WhatsappUsers.WhatsAppStatus.NO_ACCNT, now),
+                whatsappUsers(4L, expiredNoAccntMobile, WhatsappUsers.WhatsAppStatus.NO_ACCNT, expired)));
+        when(whatsappUsersRepository.getWhatsappUsersPage(4, 2)).thenReturn(Collections.emptyList());
+
+        assertEquals(WhatsappUsersStatusIndex.Decision.UNKNOWN, whatsappUsersStatusIndex.validate(optInMobile));
+        assertTrue(whatsappUsersStatusIndex.load(2));
+
+        assertEquals(4, whatsappUsersStatusIndex.size());
+        assertEquals(WhatsappUsersStatusIndex.Decision.VALID, whatsappUsersStatusIndex.validate(optInMobile));
+        assertEquals(WhatsappUsersStatusIndex.Decision.INVALID, whatsappUsersStatusIndex.validate(optOutMobile));
+        assertEquals(WhatsappUsersStatusIndex.Decision.INVALID, whatsappUsersStatusIndex.validate(recentNoAccntMobile));
+        assertEquals(WhatsappUsersStatusIndex.Decision.VALID, whatsappUsersStatusIndex.validate(expiredNoAccntMobile));
+        assertEquals(WhatsappUsersStatusIndex.Decision.INVALID, whatsappUsersStatusIndex.validate("5555555555"));
+        assertEquals(WhatsappUsersStatusIndex.Decision.UNKNOWN, whatsappUsersStatusIndex.validate("+919999999999"));
+    }
+
+    @Test
+    public void testRecordOverridesLoadedStatus() {
+        when(whatsappUsersRepository.getWhatsappUsersPage(0, 10)).thenReturn(Collections.singletonList(
+                whatsappUsers(1L, optInMobile, WhatsappUsers.WhatsAppStatus.OPT_IN, Timestamp.valueOf(LocalDateTime.now()))));
+        assertTrue(whatsappUsersStatusIndex.load(10));
+
+        whatsappUsersStatusIndex.record(optInMobile, WhatsappUsers.WhatsAppStatus.OPT_OUT);
+        whatsappUsersStatusIndex.record(optOutMobile, WhatsappUsers.WhatsAppStatus.OPT_IN);
+
+        assertEquals(WhatsappUsersStatusIndex.Decision.INVALID, whatsappUsersStatusIndex.validate(optInMobile));
+        assertEquals(WhatsappUsersStatusIndex.Decision.VALID, whatsappUsersStatusIndex.validate(optOutMobile));
+    }
+
+    @Test
+    public void testStaleRefreshDoesNotRollBackSameDayRecord() {
+        Timestamp earlier = Timestamp.valueOf(LocalDateTime.now().minusSeconds(2));
+        when(whatsappUsersRepository.getWhatsappUsersPage(0, 10)).thenReturn(Collections.singletonList(
+                whatsappUsers(1L, optInMobile, WhatsappUsers.WhatsAppStatus.OPT_IN, earlier)));
+        when(whatsappUsersRepository.getWhatsappUsersUpdatedSince(any(Timestamp.class), anyLong(), eq(10))).thenReturn(
+                Collections.singletonList(whatsappUsers(1L, optInMobile, WhatsappUsers.WhatsAppStatus.OPT_IN, earlier)));
+        assertTrue(whatsappUsersStatusIndex.load(10));
+
+        whatsappUsersStatusIndex.record(optInMobile, WhatsappUsers.WhatsAppStatus.OPT_OUT);
+        whatsappUsersStatusIndex.refresh(10, 0);
+
+        assertEquals(WhatsappUsersStatusIndex.Decision.INVALID, whatsappUsersStatusIndex.validate(optInMobile));
+    }
+
+    @Test
+    public void testLoadFailureKeepsIndexUnused() {
+        when(whatsappUsersRepository.getWhatsappUsersPage(0, 10)).thenReturn(null);
+
+        assertFalse(whatsappUsersStatusIndex.load(10));
+        assertFalse(whatsappUsersStatusIndex.isLoaded());
+        assertEquals(WhatsappUsersStatusIndex.Decision.UNKNOWN, whatsappUsersStatusIndex.validate(optInMobile));
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() {
+        for (int i = 0; i < 5000; i++) {
+            whatsappUsersStatusIndex.record(String.valueOf(9000000000L + i), WhatsappUsers.WhatsAppStatus.OPT_IN);
+        }
+        when(whatsappUsersRepository.getWhatsappUsersPage(0, 10)).thenReturn(Collections.emptyList());
+        assertTrue(whatsappUsersStatusIndex.load(10));
+
+        assertEquals(5000, whatsappUsersStatusIndex.size());
+        assertEquals(WhatsappUsersStatusIndex.Decision.VALID, whatsappUsersStatusIndex.validate("9000004999"));
+    }
+
+    @Test
+    public void testEncodeKeepsLeadingZeros() {
+        assertNotEquals(WhatsappUsersStatusIndex.encode("09999999999"), WhatsappUsersStatusIndex.encode("9999999999"));
+        assertEquals(WhatsappUsersStatusIndex.NOT_ENCODABLE, WhatsappUsersStatusIndex.encode("99999-99999"));
+        assertEquals(WhatsappUsersStatusIndex.NOT_ENCODABLE, WhatsappUsersStatusIndex.encode(""));
+    }
+
+    private WhatsappUsers whatsappUsers(Long id, String mobileNumber, WhatsappUsers.WhatsAppStatus status, Timestamp updatedAt) {
+        WhatsappUsers whatsappUsers = WhatsappUsers.builder().mobileNumber(mobileNumber).status(status).build();
+        whatsappUsers.setId(id);
+        whatsappUsers.setUpdatedAt(updatedAt);
+        return whatsappUsers;
+    }
+}
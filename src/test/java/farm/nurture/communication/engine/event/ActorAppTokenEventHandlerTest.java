@@ -17,6 +17,7 @@
 package farm.nurture.communication.engine.event;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import farm.nurture.communication.engine.cache.ActorAppTokenCache;
 import farm.nurture.communication.engine.cache.MobileAppDetailsCache;
 import farm.nurture.communication.engine.models.ActorAppToken;
 import farm.nurture.communication.engine.models.MobileAppDetails;
@@ -48,6 +49,9 @@ public class ActorAppTokenEventHandlerTest {
     @Mock
     private ActorAppTokenRepository repository;
 
+    @Mock
+    private ActorAppTokenCache actorAppTokenCache;
+
     @InjectMocks
     private ActorAppTokenEventHandler eventHandler;
 
@@ -92,6 +96,7 @@ public class ActorAppTokenEventHandlerTest {
         ArgumentCaptor<ActorAppToken> captor = ArgumentCaptor.forClass(ActorAppToken.class);
         verify(repository).updateActorAppToken(captor.capture());
         ActorAppToken actualAppToken = captor.getValue();
+        verify(actorAppTokenCache).invalidate(appToken.getActorId(), appToken.getActorType(), details.getId());
 
         assertEquals(Consumer.Status.success, status);
         assertEquals(appToken.getActorId(), actualAppToken.getActorId());
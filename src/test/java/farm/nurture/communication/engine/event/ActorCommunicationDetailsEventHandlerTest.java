@@ -19,6 +19,7 @@ package farm.nurture.communication.engine.event;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import farm.nurture.communication.engine.cache.ActorCommunicationDetailsCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.models.ActorCommunicationDetails;
 import farm.nurture.communication.engine.models.Language;
@@ -60,6 +61,9 @@ public class ActorCommunicationDetailsEventHandlerTest {
     @Mock
     private ActorCommunicationDetailsRepository repository;
 
+    @Mock
+    private ActorCommunicationDetailsCache actorCommunicationDetailsCache;
+
     @InjectMocks
     private ActorCommunicationDetailsEventHandler eventHandler;
 
@@ -82,6 +86,7 @@ public class ActorCommunicationDetailsEventHandlerTest {
             verify(repository).insertActorCommunicationDetails(captor.capture());
         }
         ActorCommunicationDetails actorCommunicationDetails = captor.getValue();
+        verify(actorCommunicationDetailsCache).invalidate(actorId, ActorType.FARMER);
 
         assertEquals(Consumer.Status.success, status);
         assertEquals(communicationDetailsEvent.getActorId(), actorCommunicationDetails.getActorId());
@@ -23,8 +23,6 @@ import farm.nurture.communication.engine.models.ActorAppToken;
 import farm.nurture.communication.engine.models.ActorCommunicationDetails;
 import farm.nurture.communication.engine.models.Language;
 import farm.nurture.communication.engine.models.MobileAppDetails;
-import farm.nurture.communication.engine.repository.ActorAppTokenRepository;
-import farm.nurture.communication.engine.repository.ActorCommunicationDetailsRepository;
 import farm.nurture.communication.engine.service.PushNotificationService;
 import farm.nurture.communication.engine.service.SMSService;
 import farm.nurture.core.contracts.common.ActorID;
@@ -50,10 +48,10 @@ import static org.mockito.Mockito.when;
 public class CommunicationEventHandlerTest {
 
     @Mock
-    private ActorCommunicationDetailsRepository actorCommDetailRepository;
+    private ActorCommunicationDetailsCache actorCommDetailsCache;
 
     @Mock
-    private ActorAppTokenRepository actorAppTokenRepository;
+    private ActorAppTokenCache actorAppTokenCache;
 
     @Mock
     private LanguageCache languageCache;
@@ -115,7 +113,7 @@ public class CommunicationEventHandlerTest {
         Long actorId = -1L;
         ActorID actorID = ActorID.newBuilder().setActorId(actorId).setActorType(ActorType.FARMER).build();
         CommunicationEvent communicationEvent = CommunicationEvent.newBuilder().setReceiverActor(actorID).build();
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId,ActorType.FARMER)).thenReturn(null);
+        when(actorCommDetailsCache.get(actorId,ActorType.FARMER)).thenReturn(null);
         when(afsService.getActorCommunicationDetails("/"+ActorType.FARMER.name()+"/"+actorId.toString())).thenReturn(null);
 
         Event<byte[], byte[]> event = new Event<>(String.valueOf(1).getBytes(),communicationEvent.toByteArray());
@@ -132,8 +130,8 @@ public class CommunicationEventHandlerTest {
         CommunicationEvent communicationEvent = CommunicationEvent.newBuilder().setReceiverActor(actorID).addChannel(CommunicationChannel.APP_NOTIFICATION).build();
 
         ActorCommunicationDetails actorCommunicationDetails = new ActorCommunicationDetails();
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId,ActorType.FARMER)).thenReturn(actorCommunicationDetails);
-        when(actorAppTokenRepository.getByActorAndMobileApp(actorId,ActorType.FARMER, Arrays.asList((short) 6, (short) 7))).thenReturn(null);
+        when(actorCommDetailsCache.get(actorId,ActorType.FARMER)).thenReturn(actorCommunicationDetails);
+        when(actorAppTokenCache.getByActorAndMobileApp(actorId,ActorType.FARMER, Arrays.asList((short) 6, (short) 7))).thenReturn(null);
         when(afsService.getActorAppToken("/" + ActorType.FARMER.name() + "/" + actorId.toString())).thenReturn(null);
         when(appDetailsCache.getMobileAppDetailsById(null)).thenReturn(null);
 
@@ -151,7 +149,7 @@ public class CommunicationEventHandlerTest {
         CommunicationEvent communicationEvent = CommunicationEvent.newBuilder().setReceiverActor(actorID).addChannel(CommunicationChannel.SMS).build();
 
         ActorCommunicationDetails actorCommunicationDetails = new ActorCommunicationDetails();
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId,ActorType.FARMER)).thenReturn(actorCommunicationDetails);
+        when(actorCommDetailsCache.get(actorId,ActorType.FARMER)).thenReturn(actorCommunicationDetails);
         when(languageCache.getLanguageByCode("hi-in")).thenReturn(Language.builder().id((short) 1).build());
 
         Event<byte[], byte[]> event = new Event<>(String.valueOf(1).getBytes(),communicationEvent.toByteArray());
@@ -167,7 +165,7 @@ public class CommunicationEventHandlerTest {
                 .addChannel(CommunicationChannel.SMS).build();
         ActorCommunicationDetails actorCommunicationDetails = new ActorCommunicationDetails();
 
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
+        when(actorCommDetailsCache.get(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
         when(languageCache.getLanguageByCode("hi-in")).thenReturn(Language.builder().id((short) 1).unicode(true).build());
         when(templateCache.getCompiledTemplateByCacheKey(any(TemplateCacheKey.class))).thenReturn(templateCacheValue);
         when(templateCacheValue.getCompiledTemplate()).thenReturn(mustache);
@@ -187,13 +185,13 @@ public class CommunicationEventHandlerTest {
         ActorCommunicationDetails actorCommunicationDetails = new ActorCommunicationDetails();
         ActorAppToken appToken = ActorAppToken.builder().mobileAppDetailsId((short) 6).actorId(actorId).actorType(ActorType.FARMER).build();
 
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
+        when(actorCommDetailsCache.get(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
         when(languageCache.getLanguageByCode("hi-in")).thenReturn(Language.builder().id((short) 1).unicode(true).build());
         when(templateCache.getCompiledTemplateByCacheKey(any(TemplateCacheKey.class))).thenReturn(templateCacheValue);
         when(templateCacheValue.getCompiledTemplate()).thenReturn(mustache);
         when(mustache.execute(any(Writer.class), any(Map.class))).thenReturn(writer);
         when(appDetailsCache.getMobileAppDetailsById(appToken.getMobileAppDetailsId())).thenReturn(mobileAppDetails);
-        when(actorAppTokenRepository.getByActorAndMobileApp(actorId, ActorType.FARMER, Arrays.asList((short) 6, (short) 7)))
+        when(actorAppTokenCache.getByActorAndMobileApp(actorId, ActorType.FARMER, Arrays.asList((short) 6, (short) 7)))
                 .thenReturn(Arrays.asList(appToken));
 
         Event<byte[], byte[]> event = new Event<>(String.valueOf(1).getBytes(), communicationEvent.toByteArray());
@@ -209,7 +207,7 @@ public class CommunicationEventHandlerTest {
                 .addChannel(CommunicationChannel.EMAIL).build();
         ActorCommunicationDetails actorCommunicationDetails = new ActorCommunicationDetails();
 
-        when(actorCommDetailRepository.getByActorIdAndActorType(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
+        when(actorCommDetailsCache.get(actorId, ActorType.FARMER)).thenReturn(actorCommunicationDetails);
         when(languageCache.getLanguageByCode("hi-in")).thenReturn(Language.builder().id((short) 1).unicode(true).build());
         when(templateCache.getCompiledTemplateByCacheKey(any(TemplateCacheKey.class))).thenReturn(templateCacheValue);
         when(templateCacheValue.getCompiledTemplate()).thenReturn(mustache);
@@ -0,0 +1,69 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.kafka.Consumer;
+import farm.nurture.kafka.Event;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class TemplateChangeEventHandlerTest {
+    private static final String templateName = "farmer_booking_creation";
+    private static final Short languageId = 1;
+    private static final String topic = "communication_template_changes";
+
+    @Spy
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Mock
+    private TemplateCache templateCache;
+
+    @InjectMocks
+    private TemplateChangeEventHandler eventHandler;
+
+    @Test
+    public void testTemplateChange() throws JsonProcessingException {
+        String message = mapper.writeValueAsString(new TemplateChangeEvent(templateName, languageId, 1672653600000L));
+        Consumer.Status status = eventHandler.handle(topic, new Event<>(templateName + ":" + languageId, message));
+
+        assertEquals(Consumer.Status.success, status);
+        verify(templateCache).applyChange(templateName, languageId, 1672653600000L);
+    }
+
+    @Test
+    public void testInvalidTemplateChange() {
+        Consumer.Status status = eventHandler.handle(topic, new Event<>(templateName, "{\"name\": "));
+
+        assertEquals(Consumer.Status.failure, status);
+        verify(templateCache, never()).applyChange(any(), any(), anyLong());
+    }
+}
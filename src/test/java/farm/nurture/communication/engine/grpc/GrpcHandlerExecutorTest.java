@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.grpc;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class GrpcHandlerExecutorTest {
+
+    @Test
+    public void testConcurrencyLimitIsPerMethodAndHeldUntilCompletion() {
+        GrpcHandlerExecutor executor = new GrpcHandlerExecutor(2, 10, 1, 1);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = executor.submit("activate_template", () -> pending);
+        CompletableFuture<String> second = executor.submit("activate_template", () -> CompletableFuture.completedFuture("second"));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusOf(second));
+        assertEquals("other", executor.submit("add_template", () -> CompletableFuture.completedFuture("other")).join());
+
+        pending.complete("first");
+        assertEquals("first", first.join());
+        assertEquals("third", executor.submit("activate_template", () -> CompletableFuture.completedFuture("third")).join());
+    }
+
+    @Test
+    public void testFullQueueIsRejected() throws Exception {
+        GrpcHandlerExecutor executor = new GrpcHandlerExecutor(1, 1, 10, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> running = executor.submit("search", () -> {
+            started.countDown();
+            await(release);
+            return CompletableFuture.completedFuture("running");
+        });
+        started.await();
+        CompletableFuture<String> queued = executor.submit("search", () -> CompletableFuture.completedFuture("queued"));
+        CompletableFuture<String> rejected = executor.submit("search", () -> CompletableFuture.completedFuture("rejected"));
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, statusOf(rejected));
+
+        release.countDown();
+        assertEquals("running", running.join());
+        assertEquals("queued", queued.join());
+    }
+
+    @Test
+    public void testCancelledCallIsNotStarted() throws Exception {
+        GrpcHandlerExecutor executor = new GrpcHandlerExecutor(1, 10, 10, 1);
+        AtomicBoolean invoked = new AtomicBoolean();
+        Context.CancellableContext context = Context.current().withCancellation();
+        context.cancel(null);
+
+        CompletableFuture<String> future = context.call(() -> executor.submit("search", () -> {
+            invoked.set(true);
+            return CompletableFuture.completedFuture("search");
+        }));
+        assertEquals(Status.Code.CANCELLED, statusOf(future));
+        assertFalse(invoked.get());
+    }
+
+    @Test
+    public void testRemainingMillisWithoutDeadline() {
+        assertEquals(7000, GrpcHandlerExecutor.remainingMillis(7000));
+    }
+
+    private static Status.Code statusOf(CompletableFuture<?> future) {
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        return Status.fromThrowable(e).getCode();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
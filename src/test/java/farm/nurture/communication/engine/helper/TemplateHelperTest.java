@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.helper;
+
+import farm.nurture.communication.engine.cache.LanguageCache;
+import farm.nurture.communication.engine.cache.TemplateCache;
+import farm.nurture.communication.engine.cache.TemplateCacheKey;
+import farm.nurture.communication.engine.cache.TemplateCacheValue;
+import farm.nurture.communication.engine.models.Language;
+import farm.nurture.communication.engine.models.Template;
+import farm.nurture.util.http.NFException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TemplateHelperTest {
+    private final static String templateName = "farmer_booking_creation";
+    private final static Language english = Language.builder().id((short) 1).code("en-us").name("English").build();
+    private final static Language marathi = Language.builder().id((short) 2).code("mr-in").name("Marathi").build();
+    private final static Language hindi = Language.builder().id((short) 3).code("hi-in").name("Hindi").build();
+
+    @Mock
+    private TemplateCache templateCache;
+
+    @Mock
+    private LanguageCache languageCache;
+
+    @InjectMocks
+    private TemplateHelper templateHelper;
+
+    @Test
+    public void testFallbackIsResolvedOnce() {
+        TemplateCacheValue value = new TemplateCacheValue(Template.builder().name(templateName).languageId(english.getId()).build(), null, null);
+        when(templateCache.getVersion()).thenReturn(1L);
+        when(templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey(templateName, marathi.getId()))).thenReturn(null);
+        when(templateCache.getCompiledTemplateByCacheKey(new TemplateCacheKey(templateName, english.getId()))).thenReturn(value);
+
+        assertSame(value, templateHelper.getTemplateFromNameAndLangId(templateName, marathi, english));
+        assertSame(value, templateHelper.getTemplateFromNameAndLangId(templateName, marathi, english));
+
+        verify(templateCache, times(1)).getTemplateDetails(templateName, marathi.getId());
+        verify(templateCache, times(2)).getCompiledTemplateByCacheKey(any());
+    }
+
+    @Test
+    public void testMissingTemplateIsCached() {
+        when(templateCache.getVersion()).thenReturn(1L);
+        when(languageCache.getLanguageByCode("hi-in")).thenReturn(hindi);
+        when(languageCache.getLanguageById(marathi.getId())).thenReturn(marathi);
+
+        assertThrows(NFException.class, () -> templateHelper.getTemplateFromNameAndLangId(templateName, marathi, null));
+        assertThrows(NFException.class, () -> templateHelper.getTemplateFromNameAndLangId(templateName, marathi, null));
+
+        verify(templateCache, times(1)).getTemplateDetails(templateName, marathi.getId());
+        verify(templateCache, times(2)).getCompiledTemplateByCacheKey(any());
+    }
+
+    @Test
+    public void testResolvesAgainWhenTemplatesChange() {
+        TemplateCacheValue value = new TemplateCacheValue(Template.builder().name(templateName).languageId(marathi.getId()).build(), null, null);
+        TemplateCacheKey cacheKey = new TemplateCacheKey(templateName, marathi.getId());
+        when(templateCache.getVersion()).thenReturn(1L, 2L);
+        when(templateCache.getCompiledTemplateByCacheKey(cacheKey)).thenReturn(value);
+
+        assertSame(value, templateHelper.getTemplateFromNameAndLangId(templateName, marathi, english));
+        assertSame(value, templateHelper.getTemplateFromNameAndLangId(templateName, marathi, english));
+
+        verify(templateCache, times(2)).getCompiledTemplateByCacheKey(cacheKey);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.kafka;
+
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AcknowledgementEventPublisherTest {
+    private final static String topic = "communication_message_acknowledgements";
+    private final static byte[] message = "ack".getBytes();
+
+    @TempDir
+    Path spillDirectory;
+
+    @Test
+    public void testPublishIsDrainedToProducer() throws Exception {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        AcknowledgementEventPublisher publisher = new AcknowledgementEventPublisher(producer, 10, 5, spillDirectory, 60000, 60000, 10, Long.MAX_VALUE);
+        publisher.init();
+
+        assertTrue(publisher.publish(topic, null, message));
+        for (int i = 0; i < 50 && producer.history().isEmpty(); i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(1, producer.history().size());
+        assertEquals(topic, producer.history().get(0).topic());
+        assertArrayEquals(message, producer.history().get(0).value());
+        publisher.close();
+    }
+
+    @Test
+    public void testFailedSendIsSpilledAndReplayed() throws Exception {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer());
+        AcknowledgementEventPublisher publisher = new AcknowledgementEventPublisher(producer, 10, 5, spillDirectory, 0, 60000, 10, Long.MAX_VALUE);
+
+        publisher.send(new AcknowledgementEventPublisher.PendingEvent(topic, null, message));
+        producer.errorNext(new RuntimeException("broker unavailable"));
+        assertEquals(1, publisher.pendingFailed());
+        assertEquals(0, spillFiles());
+
+        publisher.spillFailed();
+        assertEquals(0, publisher.pendingFailed());
+        assertEquals(1, spillFiles());
+
+        producer.clear();
+        publisher.replaySpilled();
+        producer.completeNext();
+
+        assertEquals(1, producer.history().size());
+        assertArrayEquals(message, producer.history().get(0).value());
+        assertEquals(0, spillFiles());
+    }
+
+    @Test
+    public void testQueueOverflowIsSpilled() throws Exception {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        AcknowledgementEventPublisher publisher = new AcknowledgementEventPublisher(producer, 1, 5, spillDirectory, 60000, 60000, 10, Long.MAX_VALUE);
+
+        assertTrue(publisher.publish(topic, null, message));
+        assertTrue(publisher.publish(topic, null, message));
+
+        assertEquals(1, publisher.pending());
+        assertEquals(1, spillFiles());
+    }
+
+    @Test
+    public void testFailedQueueAndSpillFilesAreBounded() throws Exception {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(false, new ByteArraySerializer(), new ByteArraySerializer());
+        AcknowledgementEventPublisher publisher = new AcknowledgementEventPublisher(producer, 10, 5, spillDirectory, 60000, 60000, 1, 1);
+
+        publisher.send(new AcknowledgementEventPublisher.PendingEvent(topic, null, message));
+        publisher.send(new AcknowledgementEventPublisher.PendingEvent(topic, null, message));
+        producer.errorNext(new RuntimeException("broker unavailable"));
+        producer.errorNext(new RuntimeException("broker unavailable"));
+        assertEquals(1, publisher.pendingFailed());
+
+        publisher.spillFailed();
+        assertTrue(Files.size(onlySpillFile()) > 0);
+        assertFalse(publisher.spill(new AcknowledgementEventPublisher.PendingEvent(topic, null, message)));
+        assertEquals(1, spillFiles());
+    }
+
+    private Path onlySpillFile() throws Exception {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.findFirst().get();
+        }
+    }
+
+    private long spillFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            return files.count();
+        }
+    }
+}
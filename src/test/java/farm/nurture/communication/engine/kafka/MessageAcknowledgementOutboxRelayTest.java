@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.kafka;
+
+import farm.nurture.communication.engine.models.MessageAcknowledgementOutbox;
+import farm.nurture.communication.engine.repository.MessageAcknowledgementOutboxRepository;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MessageAcknowledgementOutboxRelayTest {
+    private final static String topic = "communication_message_acknowledgements";
+    private final static String referenceId = "c3b1a0c4-6a5e-4b8e-9d64-0e2f5f0b7a11";
+
+    @Mock
+    private MessageAcknowledgementOutboxRepository outboxRepository;
+
+    @Test
+    public void testRelayPublishesInOrderAndMarksPublished() {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        MessageAcknowledgementOutboxRelay relay = new MessageAcknowledgementOutboxRelay(producer, outboxRepository, 10, 30, 5000);
+        when(outboxRepository.acquireLease(eq(MessageAcknowledgementOutboxRepository.ACKNOWLEDGEMENT_RELAY_LEASE), anyString(), eq(30))).thenReturn(true);
+        when(outboxRepository.getUnpublished(10)).thenReturn(Arrays.asList(outbox(1L, "first"), outbox(2L, "second")));
+        when(outboxRepository.markPublished(Arrays.asList(1L, 2L))).thenReturn(true);
+
+        relay.relay();
+
+        assertEquals(2, producer.history().size());
+        assertArrayEquals("first".getBytes(), producer.history().get(0).value());
+        assertArrayEquals("second".getBytes(), producer.history().get(1).value());
+        assertArrayEquals(referenceId.getBytes(), producer.history().get(0).key());
+        verify(outboxRepository).markPublished(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testRelayStopsMarkingAtFirstFailure() {
+        Producer<byte[], byte[]> producer = mock(Producer.class);
+        CompletableFuture<RecordMetadata> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException("broker unavailable"));
+        when(producer.send(any(ProducerRecord.class))).thenReturn(CompletableFuture.completedFuture(null), failed,
+                CompletableFuture.completedFuture(null));
+        MessageAcknowledgementOutboxRelay relay = new MessageAcknowledgementOutboxRelay(producer, outboxRepository, 10, 30, 5000);
+        when(outboxRepository.acquireLease(anyString(), anyString(), anyInt())).thenReturn(true);
+        when(outboxRepository.getUnpublished(10)).thenReturn(Arrays.asList(outbox(1L, "first"), outbox(2L, "second"), outbox(3L, "third")));
+        when(outboxRepository.markPublished(Collections.singletonList(1L))).thenReturn(true);
+
+        relay.relay();
+
+        verify(outboxRepository).markPublished(Collections.singletonList(1L));
+        verify(producer, never()).flush();
+    }
+
+    @Test
+    public void testRelaySkipsWithoutLease() {
+        MockProducer<byte[], byte[]> producer = new MockProducer<>(true, new ByteArraySerializer(), new ByteArraySerializer());
+        MessageAcknowledgementOutboxRelay relay = new MessageAcknowledgementOutboxRelay(producer, outboxRepository, 10, 30, 5000);
+        when(outboxRepository.acquireLease(anyString(), anyString(), anyInt())).thenReturn(false);
+
+        relay.relay();
+
+        verify(outboxRepository, never()).getUnpublished(anyInt());
+        assertEquals(0, producer.history().size());
+    }
+
+    private MessageAcknowledgementOutbox outbox(Long id, String payload) {
+        MessageAcknowledgementOutbox outbox = MessageAcknowledgementOutbox.builder().referenceId(referenceId).topic(topic)
+                .payload(payload.getBytes()).build();
+        outbox.setId(id);
+        return outbox;
+    }
+}
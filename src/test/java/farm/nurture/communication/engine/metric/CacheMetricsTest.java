@@ -0,0 +1,51 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.metric;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CacheMetricsTest {
+
+    @Test
+    public void testCollectExportsCacheStats() {
+        CacheMetrics cacheMetrics = new CacheMetrics();
+        LoadingCache<String, String> cache = Caffeine.newBuilder()
+                .recordStats()
+                .maximumSize(10)
+                .build(key -> key.toUpperCase());
+        cacheMetrics.addCache("test", cache);
+
+        cache.get("a");
+        cache.get("a");
+        cache.get("b");
+
+        List<Collector.MetricFamilySamples> samples = cacheMetrics.collect();
+        assertEquals(1.0, CollectorSamples.value(samples, "NF_CE_cache_hit_total", "test"));
+        assertEquals(2.0, CollectorSamples.value(samples, "NF_CE_cache_miss_total", "test"));
+        assertEquals(3.0, CollectorSamples.value(samples, "NF_CE_cache_requests_total", "test"));
+        assertEquals(2.0, CollectorSamples.value(samples, "NF_CE_cache_load_duration_seconds_count", "test"));
+        assertEquals(2.0, CollectorSamples.value(samples, "NF_CE_cache_estimated_size", "test"));
+    }
+}
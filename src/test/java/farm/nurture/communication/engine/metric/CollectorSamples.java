@@ -0,0 +1,39 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.Collector;
+
+import java.util.List;
+
+final class CollectorSamples {
+
+    private CollectorSamples() {
+    }
+
+    /**
+     * Value of the sample with the given name and label value, or -1 when there is none.
+     */
+    static double value(List<Collector.MetricFamilySamples> samples, String name, String labelValue) {
+        for (Collector.MetricFamilySamples metricFamilySamples : samples) {
+            for (Collector.MetricFamilySamples.Sample sample : metricFamilySamples.samples) {
+                if (sample.name.equals(name) && sample.labelValues.contains(labelValue)) return sample.value;
+            }
+        }
+        return -1;
+    }
+}
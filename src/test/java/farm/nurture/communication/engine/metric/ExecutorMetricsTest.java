@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.Collector;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ExecutorMetricsTest {
+
+    @Test
+    public void testCollectExportsExecutorStats() throws Exception {
+        ExecutorMetrics executorMetrics = new ExecutorMetrics();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(4));
+        executorMetrics.addExecutor("callback", executor);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(() -> { });
+        started.await();
+
+        List<Collector.MetricFamilySamples> samples = executorMetrics.collect();
+
+        assertEquals(1.0, CollectorSamples.value(samples, "NF_CE_executor_active", "callback"));
+        assertEquals(1.0, CollectorSamples.value(samples, "NF_CE_executor_pool_size", "callback"));
+        assertEquals(1.0, CollectorSamples.value(samples, "NF_CE_executor_queued", "callback"));
+        assertEquals(3.0, CollectorSamples.value(samples, "NF_CE_executor_queue_remaining", "callback"));
+        release.countDown();
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.metric;
+
+import io.prometheus.client.Collector;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class HttpPoolMetricsTest {
+
+    @Test
+    public void testCollectExportsPoolStats() throws Exception {
+        HttpPoolMetrics httpPoolMetrics = new HttpPoolMetrics();
+        PoolingNHttpClientConnectionManager connectionManager =
+                new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        connectionManager.setMaxTotal(25);
+        httpPoolMetrics.addPool("karix", connectionManager);
+
+        List<Collector.MetricFamilySamples> samples = httpPoolMetrics.collect();
+
+        assertEquals(25.0, CollectorSamples.value(samples, "NF_CE_http_pool_max", "karix"));
+        assertEquals(0.0, CollectorSamples.value(samples, "NF_CE_http_pool_leased", "karix"));
+        assertEquals(0.0, CollectorSamples.value(samples, "NF_CE_http_pool_pending", "karix"));
+        connectionManager.shutdown();
+    }
+}
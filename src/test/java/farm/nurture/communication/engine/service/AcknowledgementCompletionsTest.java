@@ -0,0 +1,67 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import farm.nurture.communication.engine.models.MessageAcknowledgement;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AcknowledgementCompletionsTest {
+
+    @Test
+    public void testResolvedStateCompletesWaiter() {
+        AcknowledgementCompletions completions = new AcknowledgementCompletions();
+        CompletableFuture<MessageAcknowledgement.State> future = completions.await("ref-1", 10_000);
+
+        completions.signal("ref-1", MessageAcknowledgement.State.VENDOR_DELIVERED);
+        assertFalse(future.isDone());
+
+        completions.signal("ref-1", MessageAcknowledgement.State.CUSTOMER_DELIVERED);
+        assertEquals(MessageAcknowledgement.State.CUSTOMER_DELIVERED, future.join());
+
+        completions.signal("ref-1", MessageAcknowledgement.State.CUSTOMER_READ);
+        assertEquals(MessageAcknowledgement.State.CUSTOMER_DELIVERED, future.join());
+    }
+
+    @Test
+    public void testUnresolvedWaiterTimesOut() {
+        AcknowledgementCompletions completions = new AcknowledgementCompletions();
+        CompletableFuture<MessageAcknowledgement.State> future = completions.await("ref-2", 50);
+
+        assertNull(future.join());
+        completions.signal("ref-2", MessageAcknowledgement.State.VENDOR_UNDELIVERED);
+        assertNull(future.join());
+    }
+
+    @Test
+    public void testUnknownReferenceIsIgnored() {
+        AcknowledgementCompletions completions = new AcknowledgementCompletions();
+        CompletableFuture<MessageAcknowledgement.State> future = completions.await("ref-3", 10_000);
+
+        completions.signal("other", MessageAcknowledgement.State.CUSTOMER_SENT);
+        completions.signal(null, MessageAcknowledgement.State.CUSTOMER_SENT);
+        assertFalse(future.isDone());
+        assertTrue(AcknowledgementCompletions.isResolved(MessageAcknowledgement.State.VENDOR_UNDELIVERED));
+        assertFalse(AcknowledgementCompletions.isResolved(null));
+    }
+}
@@ -16,6 +16,7 @@
 
 package farm.nurture.communication.engine.service;
 
+import farm.nurture.communication.engine.cache.AttachmentCache;
 import farm.nurture.communication.engine.cache.LanguageCache;
 import farm.nurture.communication.engine.cache.TemplateCache;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
@@ -58,6 +59,9 @@ public class EmailServiceTest extends BaseServiceTest {
     @Spy
     private MessageAcknowledgementRepository messageAcknowledgementRepository;
 
+    @Mock
+    private AttachmentCache attachmentCache;
+
     @InjectMocks
     private EmailService emailService;
 
@@ -0,0 +1,188 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import farm.nurture.communication.engine.cache.LanguageCache;
+import farm.nurture.communication.engine.dto.HttpClientRequest;
+import farm.nurture.communication.engine.dto.KarixSmsRequest;
+import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
+import farm.nurture.communication.engine.models.Language;
+import farm.nurture.communication.engine.models.MessageAcknowledgement;
+import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.utils.VendorLoadBalancer;
+import farm.nurture.communication.engine.vendor.KarixVendor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.util.http.client.NFAsyncHttpClient;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class KarixSmsBatcherTest {
+
+    @Mock
+    private KarixVendor karixVendor;
+
+    @Mock
+    private VendorHttpClients vendorHttpClients;
+
+    @Mock
+    private VendorRateLimiter vendorRateLimiter;
+
+    @Mock
+    private VendorLoadBalancer vendorLoadBalancer;
+
+    @Mock
+    private NFAsyncHttpClient nfAsyncHttpClient;
+
+    @InjectMocks
+    private KarixSmsBatcher karixSmsBatcher;
+
+    @BeforeEach
+    public void setUp() {
+        lenient().when(karixVendor.requestForSendSms(any(), anyString(), anyBoolean())).thenReturn(new HttpClientRequest<KarixSmsRequest>());
+        lenient().when(vendorHttpClients.get(VendorType.KARIX)).thenReturn(nfAsyncHttpClient);
+        lenient().when(vendorRateLimiter.dispatch(any(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+    }
+
+    private static DerivedCommunicationEvent event(String mobileNumber, String content) {
+        DerivedCommunicationEvent event = DerivedCommunicationEvent.builder().content(content).isUnicode(false)
+                .vendor(VendorType.KARIX).build();
+        event.setSmsAttributes(new DerivedCommunicationEvent.SMSAttributes(mobileNumber));
+        return event;
+    }
+
+    @Test
+    public void testDisabledBatcherDoesNotAcceptSms() {
+        assertFalse(karixSmsBatcher.add(event("9999999991", "Offer"), mock(SMSServiceCallback.class)));
+    }
+
+    @Test
+    public void testSameTextIsSentAsOneRequestWhenBatchIsFull() {
+        karixSmsBatcher.start(3, 60_000);
+
+        assertTrue(karixSmsBatcher.add(event("9999999991", "Offer"), mock(SMSServiceCallback.class)));
+        assertTrue(karixSmsBatcher.add(event("9999999992", "Other"), mock(SMSServiceCallback.class)));
+        assertTrue(karixSmsBatcher.add(event("9999999993", "Offer"), mock(SMSServiceCallback.class)));
+        verify(karixVendor, never()).requestForSendSms(any(), anyString(), anyBoolean());
+
+        assertTrue(karixSmsBatcher.add(event("9999999994", "Offer"), mock(SMSServiceCallback.class)));
+        verify(karixVendor).requestForSendSms(Arrays.asList("9999999991", "9999999993", "9999999994"), "Offer", false);
+    }
+
+    @Test
+    public void testRepeatedDestinationFlushesOpenBatch() {
+        karixSmsBatcher.start(10, 60_000);
+
+        karixSmsBatcher.add(event("9999999991", "Offer"), mock(SMSServiceCallback.class));
+        karixSmsBatcher.add(event("919999999991", "Offer"), mock(SMSServiceCallback.class));
+
+        verify(karixVendor).requestForSendSms(Collections.singletonList("9999999991"), "Offer", false);
+    }
+
+    @Test
+    public void testOpenBatchIsSentWhenWindowElapses() {
+        karixSmsBatcher.start(10, 10);
+
+        karixSmsBatcher.add(event("9999999991", "Offer"), mock(SMSServiceCallback.class));
+
+        verify(karixVendor, timeout(5000)).requestForSendSms(Collections.singletonList("9999999991"), "Offer", false);
+    }
+
+    @Test
+    public void testRejectedBatchIsRetriedWithoutWaiting() {
+        SMSServiceCallback first = mock(SMSServiceCallback.class);
+        SMSServiceCallback second = mock(SMSServiceCallback.class);
+        doReturn(false).when(vendorRateLimiter).dispatch(any(), any(), any(), anyBoolean());
+        karixSmsBatcher.start(2, 60_000);
+
+        karixSmsBatcher.add(event("9999999991", "Offer"), first);
+        karixSmsBatcher.add(event("9999999992", "Offer"), second);
+
+        verify(vendorRateLimiter).dispatch(eq("SMS"), eq(VendorType.KARIX), any(), eq(false));
+        verify(first).rejected();
+        verify(second).rejected();
+        verify(first, never()).failed(any());
+    }
+
+    @Test
+    public void testBatchResponseIsSharedWithEverySms() throws Exception {
+        SMSServiceCallback first = mock(SMSServiceCallback.class);
+        SMSServiceCallback second = mock(SMSServiceCallback.class);
+        String result = "{\"ackid\":\"123\",\"status\":{\"code\":200}}";
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new StringEntity(result));
+
+        new KarixSmsBatchCallback(Arrays.asList(first, second), vendorLoadBalancer).completed(response);
+
+        verify(first).completed(200, result);
+        verify(second).completed(200, result);
+        verify(vendorLoadBalancer).recordSuccess(eq("SMS"), eq(VendorType.KARIX), any(Long.class));
+    }
+
+    @Test
+    public void testOnlyBatchedSmsAreStoredUnderRecipientMessageId() throws Exception {
+        MessageAcknowledgementRepository repository = mock(MessageAcknowledgementRepository.class);
+        LanguageCache languageCache = mock(LanguageCache.class);
+        Language language = new Language();
+        language.setName("English");
+        lenient().when(languageCache.getLanguageById(any())).thenReturn(language);
+        String result = "{\"ackid\":\"123\",\"status\":{\"code\":200}}";
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new StringEntity(result));
+
+        new SMSServiceCallback(mock(SMSService.class), null, event("9999999991", "Offer"), repository, "single", languageCache, null).completed(response);
+        new SMSServiceCallback(mock(SMSService.class), null, event("9999999992", "Offer"), repository, "batched", languageCache, null).completed(200, result);
+
+        verify(repository).updateMessageAcknowledgementVenodrDelivery(eq(MessageAcknowledgement.State.VENDOR_DELIVERED), any(), eq("123"), eq("single"), any(), any());
+        verify(repository).updateMessageAcknowledgementVenodrDelivery(eq(MessageAcknowledgement.State.VENDOR_DELIVERED), any(), eq("123-9999999992"), eq("batched"), any(), any());
+    }
+
+    @Test
+    public void testRecipientMessageIdIgnoresCountryCode() {
+        assertEquals("123-9999999991", KarixVendor.recipientMessageId("123", "9999999991"));
+        assertEquals("123-9999999991", KarixVendor.recipientMessageId("123", "919999999991"));
+    }
+}
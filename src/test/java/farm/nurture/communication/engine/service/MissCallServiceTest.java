@@ -17,6 +17,7 @@
 package farm.nurture.communication.engine.service;
 
 import farm.nurture.communication.engine.H2Extension;
+import farm.nurture.communication.engine.cache.WhatsappUsersStatusIndex;
 import farm.nurture.communication.engine.models.ActorAttributes;
 import farm.nurture.communication.engine.models.ActorCommunicationDetails;
 import farm.nurture.communication.engine.models.WhatsappUsers;
@@ -51,6 +52,9 @@ public class MissCallServiceTest {
     @Mock
     private ActorAttributesRepository actorAttributesRepository;
 
+    @Mock
+    private WhatsappUsersStatusIndex whatsappUsersStatusIndex;
+
     @Mock
     private ActorCommunicationDetails actorCommunicationDetails;
 
@@ -21,7 +21,9 @@ import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
 import farm.nurture.core.contracts.common.ActorID;
 import farm.nurture.core.contracts.common.enums.ActorType;
 import farm.nurture.core.contracts.common.enums.CommunicationChannel;
+import farm.nurture.core.contracts.common.enums.PushNotificationType;
 import farm.nurture.core.contracts.communication.engine.CommunicationEvent;
+import farm.nurture.core.contracts.communication.engine.Placeholder;
 import farm.nurture.kafka.Event;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.HttpUtils;
@@ -39,8 +41,11 @@ import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 import org.mockserver.model.MediaType;
 
+import java.util.Collections;
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
@@ -144,4 +149,31 @@ public class PushNotificationServiceTest extends BaseServiceTest {
 //        verify(nfAsyncHttpClient, times(1)).sendMessage(eq(HttpUtils.HttpMethod.POST), eq("http://localhost:1080/GatewayAPI/send"),
 //                eq(null), any(Map.class), any(FCMData.class), any(PushNotificationServiceCallback.class));
 //    }
+
+    private static DerivedCommunicationEvent pushNotificationEvent(PushNotificationType type) {
+        DerivedCommunicationEvent event = DerivedCommunicationEvent.builder().content("Rain expected today")
+                .metaData(Collections.singletonList(Placeholder.newBuilder().setKey("screen").setValue("weather").build())).build();
+        event.setPNAttributes(new DerivedCommunicationEvent.PNAttributes("Weather", "fcm-token", "api-key", type, (short) 1));
+        return event;
+    }
+
+    @Test
+    public void testFcmV1NotificationMessageCarriesMetadataAsData() {
+        FcmV1Message.Message message = pushNotificationService.getFcmV1Message(pushNotificationEvent(PushNotificationType.NOTIFICATION)).getMessage();
+
+        assertEquals("fcm-token", message.getToken());
+        assertEquals("HIGH", message.getAndroid().getPriority());
+        assertEquals(new FcmV1Message.Notification("Weather", "Rain expected today"), message.getNotification());
+        assertEquals(Collections.singletonMap("screen", "weather"), message.getData());
+    }
+
+    @Test
+    public void testFcmV1DataMessageHasNoNotification() {
+        FcmV1Message.Message message = pushNotificationService.getFcmV1Message(pushNotificationEvent(PushNotificationType.DATA)).getMessage();
+
+        assertNull(message.getNotification());
+        assertEquals("Weather", message.getData().get("title"));
+        assertEquals("Rain expected today", message.getData().get("body"));
+        assertEquals("weather", message.getData().get("screen"));
+    }
 }
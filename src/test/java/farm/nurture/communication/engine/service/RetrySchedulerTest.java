@@ -0,0 +1,84 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
+import farm.nurture.communication.engine.vendor.VendorType;
+import farm.nurture.kafka.Producer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class RetrySchedulerTest {
+
+    @Mock
+    private Producer producer;
+
+    @InjectMocks
+    private RetryScheduler retryScheduler;
+
+    @Test
+    public void testBackoffGrowsExponentiallyWithJitterUpToMax() {
+        for (int i = 0; i < 100; i++) {
+            long first = retryScheduler.backoffMillis("karix", 1);
+            long second = retryScheduler.backoffMillis("karix", 2);
+            long capped = retryScheduler.backoffMillis("karix", 30);
+            assertTrue(first >= 250 && first <= 500, "first : " + first);
+            assertTrue(second >= 500 && second <= 1000, "second : " + second);
+            assertTrue(capped >= 15000 && capped <= 30000, "capped : " + capped);
+        }
+    }
+
+    @Test
+    public void testRetryIsSentAfterBackoff() throws InterruptedException {
+        DerivedCommunicationEvent event = DerivedCommunicationEvent.builder().vendor(VendorType.KARIX).build();
+        CountDownLatch latch = new CountDownLatch(1);
+        long scheduledAt = System.currentTimeMillis();
+
+        retryScheduler.retry(event, VendorType.KARIX, retried -> latch.countDown());
+
+        assertEquals(1, event.getRetryCount());
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - scheduledAt >= 200);
+        verify(producer, never()).send(any(), any());
+    }
+
+    @Test
+    public void testEventOutOfRetriesGoesToDlq() {
+        DerivedCommunicationEvent event = DerivedCommunicationEvent.builder().vendor(VendorType.GUPSHUP).retryCount(2).build();
+
+        retryScheduler.retry(event, VendorType.GUPSHUP, retried -> {
+            throw new AssertionError("Event out of retries was sent again");
+        });
+
+        verify(producer).send(eq("test_communication_events_DL"), any());
+        assertEquals(0, retryScheduler.getPending());
+    }
+}
@@ -20,6 +20,9 @@ import farm.nurture.communication.engine.Constants;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent;
 import farm.nurture.communication.engine.event.DerivedCommunicationEvent.SMSAttributes;
 import farm.nurture.communication.engine.repository.MessageAcknowledgementRepository;
+import farm.nurture.communication.engine.vendor.CallbackExecutor;
+import farm.nurture.communication.engine.vendor.VendorHttpClients;
+import farm.nurture.communication.engine.vendor.VendorRateLimiter;
 import farm.nurture.communication.engine.vendor.VendorType;
 import farm.nurture.core.contracts.common.ActorID;
 import farm.nurture.core.contracts.common.enums.ActorType;
@@ -29,10 +32,13 @@ import farm.nurture.kafka.Event;
 import farm.nurture.kafka.Producer;
 import farm.nurture.util.http.HttpUtils;
 import farm.nurture.util.http.client.NFAsyncHttpClient;
+import org.apache.http.concurrent.FutureCallback;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockserver.integration.ClientAndServer;
@@ -42,8 +48,10 @@ import org.mockserver.model.HttpRequest;
 import org.mockserver.model.HttpResponse;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.Mockito.*;
 import static org.mockserver.model.HttpRequest.request;
 
@@ -66,6 +74,27 @@ public class SMSServiceTest extends BaseServiceTest {
     @Spy
     private NFAsyncHttpClient nfAsyncHttpClient = buildAsyncHttpClient();
 
+    @Mock
+    private VendorHttpClients vendorHttpClients;
+
+    @Mock
+    private VendorRateLimiter vendorRateLimiter;
+
+    @Mock
+    private KarixSmsBatcher karixSmsBatcher;
+
+    @Mock
+    private RetryScheduler retryScheduler;
+
+    @Mock
+    private SmsHedger smsHedger;
+
+    @Mock
+    private CallbackExecutor callbackExecutor;
+
+    @Mock
+    private AcknowledgementCompletions acknowledgementCompletions;
+
     @InjectMocks
     private SMSService smsService;
 
@@ -74,6 +103,24 @@ public class SMSServiceTest extends BaseServiceTest {
         this.client = client;
     }
 
+    @BeforeEach
+    public void setUp() {
+        lenient().when(vendorHttpClients.get(any())).thenReturn(nfAsyncHttpClient);
+        lenient().when(vendorRateLimiter.dispatch(any(), any(), any(), anyBoolean())).thenAnswer(invocation -> {
+            invocation.<Runnable>getArgument(2).run();
+            return true;
+        });
+        lenient().doAnswer(invocation -> {
+            FutureCallback<Object> callback = invocation.getArgument(0);
+            try {
+                invocation.<Consumer<FutureCallback<Object>>>getArgument(1).accept(callback);
+            } catch (Exception e) {
+                callback.failed(e);
+            }
+            return null;
+        }).when(callbackExecutor).send(any(), any());
+    }
+
     @AfterEach
     public void reset() {
         smsService = null;
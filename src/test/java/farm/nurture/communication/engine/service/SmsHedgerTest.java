@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package farm.nurture.communication.engine.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SmsHedgerTest {
+
+    @Test
+    public void testTemplatePatternsFollowLikeSyntax() {
+        List<Pattern> patterns = SmsHedger.compile("%otp%, login_code");
+
+        assertTrue(patterns.get(0).matcher("farmer_OTP_hindi").matches());
+        assertFalse(patterns.get(0).matcher("order_placed").matches());
+        assertTrue(patterns.get(1).matcher("login-code").matches());
+        assertFalse(patterns.get(1).matcher("login.code.v2").matches());
+    }
+
+    @Test
+    public void testFirstAcceptedLegWins() {
+        SmsHedger.Hedge hedge = new SmsHedger.Hedge();
+        assertTrue(hedge.fire());
+
+        assertTrue(hedge.accept());
+        assertFalse(hedge.accept());
+        assertFalse(hedge.fire());
+    }
+
+    @Test
+    public void testFailureIsHandledByLastPendingLeg() {
+        SmsHedger.Hedge hedge = new SmsHedger.Hedge();
+        assertTrue(hedge.fire());
+
+        assertFalse(hedge.fail());
+        assertTrue(hedge.fail());
+        assertTrue(hedge.isSettled());
+    }
+
+    @Test
+    public void testFailedLegDefersToPendingAcceptedLeg() {
+        SmsHedger.Hedge hedge = new SmsHedger.Hedge();
+        assertTrue(hedge.fire());
+
+        assertFalse(hedge.fail());
+        assertTrue(hedge.accept());
+    }
+
+    @Test
+    public void testPrimaryFailureBeforeHedgeStopsHedge() {
+        SmsHedger.Hedge hedge = new SmsHedger.Hedge();
+
+        assertTrue(hedge.fail());
+        assertFalse(hedge.fire());
+    }
+
+    @Test
+    public void testBudgetLimitsFiredToRatioOfEligible() {
+        SmsHedger.Budget budget = new SmsHedger.Budget(0.5, 2);
+        assertTrue(budget.withdraw());
+        assertTrue(budget.withdraw());
+        assertFalse(budget.withdraw());
+
+        budget.deposit();
+        assertFalse(budget.withdraw());
+        budget.deposit();
+        assertTrue(budget.withdraw());
+        assertFalse(budget.withdraw());
+    }
+
+    @Test
+    public void testBudgetDoesNotGrowPastBurst() {
+        SmsHedger.Budget budget = new SmsHedger.Budget(0.5, 1);
+        for (int i = 0; i < 10; i++) {
+            budget.deposit();
+        }
+        budget.refund();
+
+        assertTrue(budget.withdraw());
+        assertFalse(budget.withdraw());
+    }
+
+    @Test
+    public void testLatencyWindowPercentile() {
+        SmsHedger.LatencyWindow window = new SmsHedger.LatencyWindow(100);
+        assertEquals(-1, window.percentile(0.95, 20));
+
+        for (int i = 1; i <= 100; i++) {
+            window.add(i * 10L);
+        }
+        assertEquals(950, window.percentile(0.95, 20));
+
+        for (int i = 0; i < 100; i++) {
+            window.add(100L);
+        }
+        assertEquals(100, window.percentile(0.95, 20));
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ *  Copyright 2023 NURTURE AGTECH PVT LTD
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package farm.nurture.communication.engine.utils;
+
+import farm.nurture.communication.engine.vendor.VendorType;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VendorLoadBalancerTest {
+
+    private static final VendorLoadBalancer.Settings SETTINGS = new VendorLoadBalancer.Settings(0.2, 5, 0.5, 20, 1000, 0.05);
+
+    private static VendorLoadBalancer.Route route() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("GUPSHUP", 50);
+        weights.put("KARIX", 50);
+        return VendorLoadBalancer.Route.of("SMS", weights, SETTINGS, null, null);
+    }
+
+    @Test
+    public void testOpenCircuitGetsNoTraffic() {
+        VendorLoadBalancer.Route route = route();
+        VendorLoadBalancer.VendorHealth gupshup = route.health(VendorType.GUPSHUP);
+        for (int i = 0; i < 4; i++) {
+            assertFalse(gupshup.onFailure(5000, 0, 0));
+        }
+        assertTrue(gupshup.onFailure(5000, 0, 0));
+        route.rebuild(0);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VendorType.KARIX, route.select(500).vendor);
+        }
+    }
+
+    @Test
+    public void testSelectionFollowsWeights() {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("GUPSHUP", 20);
+        weights.put("KARIX", 80);
+        VendorLoadBalancer.Route route = VendorLoadBalancer.Route.of("WHATSAPP", weights, SETTINGS, null, null);
+        route.rebuild(0);
+
+        int karix = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (route.select(0).vendor == VendorType.KARIX) karix++;
+        }
+        assertEquals(8000, karix, 300);
+    }
+
+    @Test
+    public void testUpdatedWeightsKeepHealth() {
+        VendorLoadBalancer.Route route = route();
+        VendorLoadBalancer.VendorHealth gupshup = route.health(VendorType.GUPSHUP);
+        for (int i = 0; i < 5; i++) {
+            gupshup.onFailure(5000, 0, 0);
+        }
+
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        weights.put("GUPSHUP", 90);
+        weights.put("KARIX", 10);
+        VendorLoadBalancer.Route updated = VendorLoadBalancer.Route.of("SMS", weights, SETTINGS, route, null);
+        updated.rebuild(500);
+
+        assertEquals(gupshup, updated.health(VendorType.GUPSHUP));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(VendorType.KARIX, updated.select(500).vendor);
+        }
+    }
+
+    @Test
+    public void testHalfOpenProbeClosesCircuit() {
+        VendorLoadBalancer.Route route = route();
+        VendorLoadBalancer.VendorHealth gupshup = route.health(VendorType.GUPSHUP);
+        for (int i = 0; i < 5; i++) {
+            gupshup.onFailure(5000, 0, 0);
+        }
+
+        assertEquals(VendorLoadBalancer.CircuitState.HALF_OPEN, gupshup.state(1000));
+        assertTrue(gupshup.routingWeight(1000, 100) > 0);
+        assertTrue(gupshup.onRouted(1000));
+        assertFalse(gupshup.onRouted(1000));
+        assertEquals(0.0, gupshup.routingWeight(1001, 100));
+
+        assertTrue(gupshup.onSuccess(100, 1000, 1100));
+        assertEquals(VendorLoadBalancer.CircuitState.CLOSED, gupshup.state(1102));
+    }
+
+    @Test
+    public void testFailedProbeReopensCircuit() {
+        VendorLoadBalancer.VendorHealth karix = route().health(VendorType.KARIX);
+        for (int i = 0; i < 5; i++) {
+            karix.onFailure(5000, 0, 0);
+        }
+
+        assertEquals(VendorLoadBalancer.CircuitState.HALF_OPEN, karix.state(1000));
+        assertTrue(karix.onRouted(1000));
+        assertTrue(karix.onFailure(5000, 1000, 1000));
+        assertEquals(VendorLoadBalancer.CircuitState.OPEN, karix.state(1500));
+    }
+
+    @Test
+    public void testLateOutcomesDoNotFlipCircuit() {
+        VendorLoadBalancer.VendorHealth gupshup = route().health(VendorType.GUPSHUP);
+        for (int i = 0; i < 5; i++) {
+            gupshup.onFailure(5000, 100, 100);
+        }
+
+        assertFalse(gupshup.onSuccess(400, 50, 450));
+        assertEquals(VendorLoadBalancer.CircuitState.OPEN, gupshup.state(500));
+        assertFalse(gupshup.onSuccess(1150, 50, 1200));
+        assertEquals(VendorLoadBalancer.CircuitState.HALF_OPEN, gupshup.state(1200));
+
+        assertTrue(gupshup.onRouted(1300));
+        assertFalse(gupshup.onSuccess(100, 1250, 1350));
+        assertEquals(VendorLoadBalancer.CircuitState.HALF_OPEN, gupshup.state(1350));
+        assertTrue(gupshup.onSuccess(100, 1300, 1400));
+
+        for (int i = 0; i < 5; i++) {
+            assertFalse(gupshup.onFailure(5000, 1250, 1450));
+        }
+        assertEquals(VendorLoadBalancer.CircuitState.CLOSED, gupshup.state(1500));
+    }
+
+    @Test
+    public void testSlowVendorGetsLessWeight() {
+        VendorLoadBalancer.Route route = route();
+        VendorLoadBalancer.VendorHealth gupshup = route.health(VendorType.GUPSHUP);
+        VendorLoadBalancer.VendorHealth karix = route.health(VendorType.KARIX);
+        for (int i = 0; i < 10; i++) {
+            gupshup.onSuccess(1000, 0, 0);
+            karix.onSuccess(100, 0, 0);
+        }
+
+        double bestLatency = Math.min(gupshup.latency(), karix.latency());
+        assertEquals(50.0, karix.routingWeight(0, bestLatency), 0.001);
+        assertTrue(gupshup.routingWeight(0, bestLatency) < 10);
+    }
+}